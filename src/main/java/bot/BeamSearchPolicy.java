@@ -0,0 +1,574 @@
+package bot;
+
+import game.GameState;
+import model.Tetrimino;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Searches several pieces deep through the preview queue and hold, keeping the best few boards at every depth.
+ * Nodes live in preallocated arrays, a beam's boards are packed back to back in one int array and children are
+ * only scored into candidate slots, then just the ones that make the next beam get their boards built, so the
+ * search doesn't allocate per node. Expanding a beam is split across a fork join pool when one is given.
+ * Boards carry Zobrist hashes: board evaluations are cached in a transposition table across moves and searches,
+ * and children that reach the same board, piece, hold and queue position through different orders are kept once
+ */
+public class BeamSearchPolicy implements BotPolicy {
+    public static final int DEFAULT_BEAM_WIDTH = 64;
+    public static final int DEFAULT_DEPTH = 4;
+    public static final int DEFAULT_TABLE_MEGABYTES = 2;
+    // Move columns and rows are stored offset by this so piece boxes hanging past the wall or floor stay positive
+    private static final int MOVE_OFFSET = Tetrimino.MAX_SIZE;
+    // Expansion work is cut into this many pieces per pool thread so stealing can even it out
+    private static final int CHUNKS_PER_THREAD = 4;
+    // Parents expanded between checks for cancellation
+    private static final int CANCEL_CHECK_INTERVAL = 8;
+
+    private final BoardEvaluator evaluator;
+    private final ForkJoinPool pool;
+    private final int beamWidth;
+    private final int depth;
+    private final TranspositionTable table;
+
+    private int width;
+    private int height;
+    private int fullRowMask;
+    private int maxChildren;
+    private int[] queue = new int[0];
+    private int queueLength;
+    private final int[] spawnY = new int[Tetrimino.PIECE_COUNT];
+
+    // Current and next beam, boards are height ints per node
+    private Beam beam;
+    private Beam nextBeam;
+
+    // Children are scored into slots parent * maxChildren + child, NaN for an empty slot
+    private double[] candidateScores = new double[0];
+    private int[] candidateMoves = new int[0];
+    private long[] candidateHashes = new long[0];
+    private int[] order = new int[0];
+    // Open addressing map from the state hashes kept in the next beam to their index, a 0 key is empty
+    private long[] keptKeys = new long[0];
+    private int[] keptIndices = new int[0];
+
+    private final Worker[] workers;
+    // Set for the length of a cancellable choose
+    private BooleanSupplier cancelled;
+
+    public BeamSearchPolicy() {
+        this(new BoardEvaluator(), null, DEFAULT_BEAM_WIDTH, DEFAULT_DEPTH);
+    }
+
+    /**
+     * Searches on the calling thread when the pool is null, which is what batch simulations want since they already
+     * run a game per core
+     */
+    public BeamSearchPolicy(BoardEvaluator evaluator, ForkJoinPool pool, int beamWidth, int depth) {
+        this(evaluator, pool, beamWidth, depth, new TranspositionTable(DEFAULT_TABLE_MEGABYTES));
+    }
+
+    /**
+     * The table caches board evaluations, it can be shared with other searches using the same evaluator weights or
+     * be null to evaluate every board
+     */
+    public BeamSearchPolicy(BoardEvaluator evaluator, ForkJoinPool pool, int beamWidth, int depth, TranspositionTable table) {
+        if (beamWidth < 1 || depth < 1) {
+            throw new IllegalArgumentException("Invalid beam width or depth: " + beamWidth + ", " + depth);
+        }
+        this.evaluator = evaluator;
+        this.pool = pool;
+        this.beamWidth = beamWidth;
+        this.depth = depth;
+        this.table = table;
+        int workerCount = (pool == null) ? 1 : pool.getParallelism() * CHUNKS_PER_THREAD;
+        workers = new Worker[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Worker(new BoardEvaluator(evaluator));
+        }
+    }
+
+    @Override
+    public Placement choose(GameState state) {
+        return choose(state, null);
+    }
+
+    /**
+     * Same as choose but gives up with null once cancelled returns true, which is checked at every level and every
+     * few parents while a level is expanded
+     */
+    public Placement choose(GameState state, BooleanSupplier cancelled) {
+        this.cancelled = cancelled;
+        try {
+            return search(state);
+        } finally {
+            this.cancelled = null;
+        }
+    }
+
+    private Placement search(GameState state) {
+        prepare(state);
+        Beam root = beam;
+        BoardOps.copyRows(state, root.boards);
+        Tetrimino piece = state.getGamePiece();
+        root.current[0] = piece.getId();
+        root.held[0] = state.getHeldPiece();
+        root.next[0] = 0;
+        root.reward[0] = 0.0;
+        root.firstMove[0] = -1;
+        root.boardHash[0] = Zobrist.hashRows(root.boards, 0, height);
+        root.count = 1;
+
+        for (int level = 0; level < depth && beam.count > 0; level++) {
+            // The first piece may already have fallen or used its hold
+            int rootY = (level == 0) ? piece.getY() : -1;
+            boolean rootHold = level != 0 || state.isAllowHold();
+            expand(rootY, rootHold);
+            // A cancelled expansion may have stopped partway, so its candidates aren't worth selecting from
+            if (isCancelled()) {
+                return null;
+            }
+            if (!select(level)) {
+                break;
+            }
+        }
+
+        int best = -1;
+        for (int i = 0; i < beam.count; i++) {
+            if (beam.firstMove[i] >= 0 && (best < 0 || beam.score[i] > beam.score[best])) {
+                best = i;
+            }
+        }
+        if (best < 0) {
+            return null;
+        }
+        int move = beam.firstMove[best];
+        return new Placement(getMoveHold(move), getMoveRotation(move), getMoveX(move));
+    }
+
+    /**
+     * Total child boards scored since the policy was created
+     */
+    public long getNodesEvaluated() {
+        long nodes = 0;
+        for (Worker worker : workers) {
+            nodes += worker.nodes;
+        }
+        return nodes;
+    }
+
+    /**
+     * How many of the evaluated boards were found in the transposition table
+     */
+    public long getCacheHits() {
+        long hits = 0;
+        for (Worker worker : workers) {
+            hits += worker.cacheHits;
+        }
+        return hits;
+    }
+
+    private void prepare(GameState state) {
+        width = state.getBoardWidth();
+        height = state.getBoardHeight();
+        fullRowMask = BoardOps.getFullRowMask(width);
+        // Hold or not, 4 rotations and at most one column per board column each
+        maxChildren = 2 * 4 * width;
+        if (beam == null || beam.boards.length < beamWidth * height) {
+            beam = new Beam(beamWidth, height);
+            nextBeam = new Beam(beamWidth, height);
+            int slots = beamWidth * maxChildren;
+            candidateScores = new double[slots];
+            candidateMoves = new int[slots];
+            candidateHashes = new long[slots];
+            order = new int[slots];
+            keptKeys = new long[Integer.highestOneBit(beamWidth) * 4];
+            keptIndices = new int[keptKeys.length];
+            for (Worker worker : workers) {
+                worker.heights = new int[width];
+                worker.rows = new int[height];
+            }
+        }
+        for (int id = 0; id < Tetrimino.PIECE_COUNT; id++) {
+            spawnY[id] = state.getSpawnY(id);
+        }
+        queueLength = state.getPreviewCount();
+        if (queue.length < queueLength) {
+            queue = new int[queueLength];
+        }
+        for (int i = 0; i < queueLength; i++) {
+            queue[i] = state.getNextPiece(i);
+        }
+    }
+
+    private void expand(int rootY, boolean rootHold) {
+        int chunks = Math.min(workers.length, beam.count);
+        if (pool == null || chunks <= 1) {
+            expandRange(workers[0], 0, beam.count, rootY, rootHold);
+        } else {
+            pool.invoke(new ExpandTask(0, chunks, chunks, rootY, rootHold));
+        }
+    }
+
+    private boolean isCancelled() {
+        return cancelled != null && cancelled.getAsBoolean();
+    }
+
+    private void expandRange(Worker worker, int from, int to, int rootY, boolean rootHold) {
+        for (int parent = from; parent < to; parent++) {
+            if ((parent - from) % CANCEL_CHECK_INTERVAL == CANCEL_CHECK_INTERVAL - 1 && isCancelled()) {
+                return;
+            }
+            int base = parent * maxChildren;
+            for (int slot = 0; slot < maxChildren; slot++) {
+                candidateScores[base + slot] = Double.NaN;
+            }
+            int current = beam.current[parent];
+            if (current == GameState.NO_PIECE) {
+                // Ran out of known pieces after a hold, the node carries over as it is
+                candidateScores[base] = beam.score[parent];
+                candidateMoves[base] = -1;
+                candidateHashes[base] = beam.boardHash[parent];
+                continue;
+            }
+            computeHeights(beam.boards, parent * height, worker.heights);
+            worker.nodes += expandPiece(worker, parent, base, current, false, rootY);
+            if (rootHold) {
+                int held = beam.held[parent];
+                int holdPiece = (held == GameState.NO_PIECE) ? peekQueue(beam.next[parent]) : held;
+                if (holdPiece != GameState.NO_PIECE) {
+                    worker.nodes += expandPiece(worker, parent, base + maxChildren / 2, holdPiece, true, -1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Scores every rotation and column of one piece dropped from its spawn row, returns how many boards it scored.
+     * Pieces fall straight down from above the stack, so the landing row comes from the parent's column heights
+     * instead of stepping the piece down, and a piece that starts at or above it can't collide on the way
+     */
+    private int expandPiece(Worker worker, int parent, int base, int pieceId, boolean hold, int y) {
+        int startY = (y < 0) ? spawnY[pieceId] : y;
+        int evaluated = 0;
+        int offset = parent * height;
+        int[] boards = beam.boards;
+        int[] heights = worker.heights;
+        int[] rows = worker.rows;
+        double reward = beam.reward[parent];
+        long parentHash = beam.boardHash[parent];
+        int slot = base;
+        for (int rotation = 0; rotation < 4; rotation++) {
+            int minX = Tetrimino.getMinX(pieceId, rotation);
+            int maxX = Tetrimino.getMaxX(pieceId, rotation);
+            for (int x = -minX; x + maxX < width; x++, slot++) {
+                int landY = Integer.MIN_VALUE;
+                for (int column = minX; column <= maxX; column++) {
+                    landY = Math.max(landY, heights[x + column] - Tetrimino.getColumnBottom(pieceId, rotation, column));
+                }
+                if (landY > startY || startY + Tetrimino.getMaxY(pieceId, rotation) >= height) {
+                    continue;
+                }
+                int lines = countLines(boards, offset, pieceId, x, landY, rotation);
+                long hash = 0;
+                long entry = TranspositionTable.MISS;
+                if (lines == 0) {
+                    // Without a clear the child's hash is known before its board is built, a hit skips building it
+                    hash = parentHash ^ Zobrist.hashCells(pieceId, x, landY, rotation);
+                    entry = probe(hash);
+                }
+                float score;
+                if (entry != TranspositionTable.MISS) {
+                    score = Float.intBitsToFloat(TranspositionTable.getValue(entry));
+                    worker.cacheHits++;
+                } else {
+                    System.arraycopy(boards, offset, rows, 0, height);
+                    BoardOps.place(rows, height, fullRowMask, pieceId, x, landY, rotation);
+                    if (lines != 0) {
+                        hash = Zobrist.hashRows(rows, 0, height);
+                        entry = probe(hash);
+                    }
+                    if (entry != TranspositionTable.MISS) {
+                        score = Float.intBitsToFloat(TranspositionTable.getValue(entry));
+                        worker.cacheHits++;
+                    } else {
+                        // Scores are rounded to what the table holds so a hit and a miss rank boards the same
+                        score = (float) worker.evaluator.evaluate(rows, width, height, 0);
+                        if (table != null) {
+                            table.store(hash, Float.floatToRawIntBits(score), 0, 0);
+                        }
+                    }
+                }
+                candidateScores[slot] = reward + evaluateLines(lines) + score;
+                candidateMoves[slot] = packMove(hold, rotation, x, landY);
+                candidateHashes[slot] = hash;
+                evaluated++;
+            }
+        }
+        return evaluated;
+    }
+
+    private long probe(long hash) {
+        return (table == null) ? TranspositionTable.MISS : table.probe(hash);
+    }
+
+    /**
+     * Lines a piece would complete at a position, without writing it into the board
+     */
+    private int countLines(int[] boards, int offset, int pieceId, int x, int y, int rotation) {
+        int lines = 0;
+        int maxRow = Tetrimino.getMaxY(pieceId, rotation);
+        for (int row = Tetrimino.getMinY(pieceId, rotation); row <= maxRow; row++) {
+            int mask = Tetrimino.getRowMask(pieceId, rotation, row);
+            int shifted = (x >= 0) ? mask << x : mask >>> -x;
+            if ((boards[offset + y + row] | shifted) == fullRowMask) {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    private double evaluateLines(int lines) {
+        return evaluator.getLinesWeight() * lines;
+    }
+
+    private void computeHeights(int[] boards, int offset, int[] heights) {
+        int seen = 0;
+        for (int x = 0; x < width; x++) {
+            heights[x] = 0;
+        }
+        for (int y = height - 1; y >= 0 && seen != fullRowMask; y--) {
+            int newColumns = boards[offset + y] & ~seen;
+            while (newColumns != 0) {
+                heights[Integer.numberOfTrailingZeros(newColumns)] = y + 1;
+                newColumns &= newColumns - 1;
+            }
+            seen |= boards[offset + y];
+        }
+    }
+
+    /**
+     * Keeps the best children as the next beam and builds their boards. Returns false if no child was valid, the
+     * current beam is then the answer
+     */
+    private boolean select(int level) {
+        int slots = beam.count * maxChildren;
+        int count = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            if (!Double.isNaN(candidateScores[slot])) {
+                order[count++] = slot;
+            }
+        }
+        if (count == 0) {
+            return false;
+        }
+        int selected = Math.min(count, beamWidth);
+        if (count > selected) {
+            selectTop(count, selected);
+        }
+        for (int i = 0; i < keptKeys.length; i++) {
+            keptKeys[i] = 0;
+        }
+
+        Beam next = nextBeam;
+        int kept = 0;
+        for (int i = 0; i < selected; i++) {
+            int slot = order[i];
+            int parent = slot / maxChildren;
+            int move = candidateMoves[slot];
+            int pieceId = beam.current[parent];
+            int held = beam.held[parent];
+            int queueIndex = beam.next[parent];
+            if (move >= 0) {
+                if (getMoveHold(move)) {
+                    held = pieceId;
+                    if (beam.held[parent] == GameState.NO_PIECE) {
+                        pieceId = peekQueue(queueIndex);
+                        queueIndex++;
+                    } else {
+                        pieceId = beam.held[parent];
+                    }
+                }
+            }
+            int current = (move >= 0) ? peekQueue(queueIndex) : pieceId;
+            int nextIndex = (move >= 0) ? queueIndex + 1 : queueIndex;
+            long key = candidateHashes[slot] ^ ((current == GameState.NO_PIECE) ? 0 : Zobrist.hashPiece(current))
+                    ^ Zobrist.hashHold(held) ^ Zobrist.hashQueuePosition(nextIndex);
+            // The same state reached through another move order only keeps its best scoring copy
+            int keySlot = findKeptKey(key);
+            int index;
+            if (keptKeys[keySlot] == key && key != 0) {
+                index = keptIndices[keySlot];
+                if (candidateScores[slot] <= next.score[index]) {
+                    continue;
+                }
+            } else {
+                index = kept++;
+                keptKeys[keySlot] = key;
+                keptIndices[keySlot] = index;
+            }
+
+            System.arraycopy(beam.boards, parent * height, next.boards, index * height, height);
+            next.score[index] = candidateScores[slot];
+            next.reward[index] = beam.reward[parent];
+            next.current[index] = current;
+            next.held[index] = held;
+            next.next[index] = nextIndex;
+            next.boardHash[index] = candidateHashes[slot];
+            next.firstMove[index] = beam.firstMove[parent];
+            if (move >= 0) {
+                int lines = BoardOps.place(next.boards, index * height, height, fullRowMask, pieceId, getMoveX(move),
+                        getMoveY(move), getMoveRotation(move));
+                next.reward[index] += evaluateLines(lines);
+                if (level == 0) {
+                    next.firstMove[index] = move;
+                }
+            }
+        }
+        next.count = kept;
+        nextBeam = beam;
+        beam = next;
+        return true;
+    }
+
+    /**
+     * Slot of the key in the kept map, or the empty slot it would go in
+     */
+    private int findKeptKey(long key) {
+        int mask = keptKeys.length - 1;
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        while (keptKeys[slot] != 0 && keptKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Partitions order[0, count) so the k highest scoring slots come first, quickselect on the primitive arrays
+     */
+    private void selectTop(int count, int k) {
+        int left = 0;
+        int right = count - 1;
+        while (left < right) {
+            double pivot = candidateScores[order[(left + right) >>> 1]];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (candidateScores[order[i]] > pivot) {
+                    i++;
+                }
+                while (candidateScores[order[j]] < pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int swap = order[i];
+                    order[i] = order[j];
+                    order[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+            if (k - 1 <= j) {
+                right = j;
+            } else if (k - 1 >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private int peekQueue(int index) {
+        return (index < queueLength) ? queue[index] : GameState.NO_PIECE;
+    }
+
+    // Moves pack the hold flag, rotation, column and landing row into an int so candidates need no objects
+    private static int packMove(boolean hold, int rotation, int x, int y) {
+        return (hold ? 1 << 30 : 0) | (rotation << 24) | ((x + MOVE_OFFSET) << 12) | (y + MOVE_OFFSET);
+    }
+
+    private static boolean getMoveHold(int move) {
+        return (move & (1 << 30)) != 0;
+    }
+
+    private static int getMoveRotation(int move) {
+        return (move >>> 24) & 3;
+    }
+
+    private static int getMoveX(int move) {
+        return ((move >>> 12) & 0xFFF) - MOVE_OFFSET;
+    }
+
+    private static int getMoveY(int move) {
+        return (move & 0xFFF) - MOVE_OFFSET;
+    }
+
+    private static class Beam {
+        final int[] boards;
+        final int[] current;
+        final int[] held;
+        final int[] next;
+        final int[] firstMove;
+        final long[] boardHash;
+        final double[] reward;
+        final double[] score;
+        int count;
+
+        Beam(int width, int height) {
+            boards = new int[width * height];
+            current = new int[width];
+            held = new int[width];
+            next = new int[width];
+            firstMove = new int[width];
+            boardHash = new long[width];
+            reward = new double[width];
+            score = new double[width];
+        }
+    }
+
+    /**
+     * Scratch space for one slice of an expansion
+     */
+    private static class Worker {
+        final BoardEvaluator evaluator;
+        int[] rows = new int[0];
+        int[] heights = new int[0];
+        long nodes;
+        long cacheHits;
+
+        Worker(BoardEvaluator evaluator) {
+            this.evaluator = evaluator;
+        }
+    }
+
+    private class ExpandTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int fromChunk;
+        private final int toChunk;
+        private final int chunks;
+        private final int rootY;
+        private final boolean rootHold;
+
+        ExpandTask(int fromChunk, int toChunk, int chunks, int rootY, boolean rootHold) {
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+            this.chunks = chunks;
+            this.rootY = rootY;
+            this.rootHold = rootHold;
+        }
+
+        @Override
+        protected void compute() {
+            if (toChunk - fromChunk == 1) {
+                int count = beam.count;
+                expandRange(workers[fromChunk], fromChunk * count / chunks, (fromChunk + 1) * count / chunks, rootY, rootHold);
+                return;
+            }
+            int mid = (fromChunk + toChunk) >>> 1;
+            invokeAll(new ExpandTask(fromChunk, mid, chunks, rootY, rootHold),
+                    new ExpandTask(mid, toChunk, chunks, rootY, rootHold));
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package bot;
+
+import model.ClearResult;
+
+/**
+ * Scores a board after a placement, higher is better. Works straight on the row bitmasks with a reused heights
+ * array so it can be called for every candidate move without allocating. Weights default to the well known
+ * height, lines, holes and bumpiness set plus a small penalty for deep wells and a bonus for T-spin slots
+ */
+public class BoardEvaluator {
+    private double heightWeight = -0.510066;
+    private double linesWeight = 0.760666;
+    private double holesWeight = -0.35663;
+    private double bumpinessWeight = -0.184483;
+    private double wellWeight = -0.05;
+    private double tSlotWeight = 0.3;
+    private double tSpinWeight = 0.5;
+
+    private final int[] heights = new int[Integer.SIZE];
+
+    public BoardEvaluator() {
+    }
+
+    /**
+     * Copies the weights, evaluators keep scratch space so every thread needs its own
+     */
+    public BoardEvaluator(BoardEvaluator other) {
+        heightWeight = other.heightWeight;
+        linesWeight = other.linesWeight;
+        holesWeight = other.holesWeight;
+        bumpinessWeight = other.bumpinessWeight;
+        wellWeight = other.wellWeight;
+        tSlotWeight = other.tSlotWeight;
+        tSpinWeight = other.tSpinWeight;
+    }
+
+    public double evaluate(int[] rows, int width, int height, int linesCleared) {
+        int fullRowMask = BoardOps.getFullRowMask(width);
+        int top = height - 1;
+        while (top >= 0 && rows[top] == 0) {
+            top--;
+        }
+
+        // Walk down from the top, a column's height is set the first time it's seen and every empty cell below a
+        // seen column is a hole
+        int seen = 0;
+        int holes = 0;
+        for (int x = 0; x < width; x++) {
+            heights[x] = 0;
+        }
+        for (int y = top; y >= 0; y--) {
+            int row = rows[y];
+            int newColumns = row & ~seen;
+            while (newColumns != 0) {
+                heights[Integer.numberOfTrailingZeros(newColumns)] = y + 1;
+                newColumns &= newColumns - 1;
+            }
+            seen |= row;
+            holes += Integer.bitCount(~row & seen & fullRowMask);
+        }
+
+        int aggregateHeight = 0;
+        int bumpiness = 0;
+        int wells = 0;
+        for (int x = 0; x < width; x++) {
+            aggregateHeight += heights[x];
+            if (x > 0) {
+                bumpiness += Math.abs(heights[x] - heights[x - 1]);
+            }
+            int left = (x > 0) ? heights[x - 1] : Integer.MAX_VALUE;
+            int right = (x < width - 1) ? heights[x + 1] : Integer.MAX_VALUE;
+            int depth = Math.min(left, right) - heights[x];
+            // Anything up to two deep gets filled by the next few pieces, deeper wells wait for an I piece
+            if (depth > 2) {
+                wells += depth - 2;
+            }
+        }
+
+        return heightWeight * aggregateHeight + linesWeight * linesCleared + holesWeight * holes
+                + bumpinessWeight * bumpiness + wellWeight * wells + tSlotWeight * countTSlotLines(rows, width, height, top);
+    }
+
+    /**
+     * Bonus on top of evaluate for clearing lines with a full T-spin, one of the ClearResult.TSPIN_ kinds
+     */
+    public double evaluateSpin(int tSpin, int linesCleared) {
+        return (tSpin == ClearResult.TSPIN_FULL) ? tSpinWeight * linesCleared : 0.0;
+    }
+
+    /**
+     * Finds T-spin slots, an empty cell with both sides filled under three empty cells with a roof on one side, and
+     * counts the lines a T dropped into them would clear. All columns of a row are checked at once with shifts
+     */
+    private static int countTSlotLines(int[] rows, int width, int height, int top) {
+        int fullRowMask = BoardOps.getFullRowMask(width);
+        int innerMask = fullRowMask & ~1 & ~(1 << (width - 1));
+        int slotLines = 0;
+        for (int y = 0; y <= top && y + 2 < height; y++) {
+            int bottom = rows[y];
+            int middle = rows[y + 1];
+            int roof = rows[y + 2];
+            int centers = ~bottom & (bottom << 1) & (bottom >>> 1)
+                    & ~middle & ~(middle << 1) & ~(middle >>> 1)
+                    & ~roof & ((roof << 1) | (roof >>> 1)) & innerMask;
+            while (centers != 0) {
+                int center = Integer.numberOfTrailingZeros(centers);
+                centers &= centers - 1;
+                if ((bottom | (1 << center)) == fullRowMask) {
+                    slotLines++;
+                }
+                if ((middle | (7 << (center - 1))) == fullRowMask) {
+                    slotLines++;
+                }
+            }
+        }
+        return slotLines;
+    }
+
+    public double getHeightWeight() {
+        return heightWeight;
+    }
+
+    public void setHeightWeight(double heightWeight) {
+        this.heightWeight = heightWeight;
+    }
+
+    public double getLinesWeight() {
+        return linesWeight;
+    }
+
+    public void setLinesWeight(double linesWeight) {
+        this.linesWeight = linesWeight;
+    }
+
+    public double getHolesWeight() {
+        return holesWeight;
+    }
+
+    public void setHolesWeight(double holesWeight) {
+        this.holesWeight = holesWeight;
+    }
+
+    public double getBumpinessWeight() {
+        return bumpinessWeight;
+    }
+
+    public void setBumpinessWeight(double bumpinessWeight) {
+        this.bumpinessWeight = bumpinessWeight;
+    }
+
+    public double getWellWeight() {
+        return wellWeight;
+    }
+
+    public void setWellWeight(double wellWeight) {
+        this.wellWeight = wellWeight;
+    }
+
+    public double getTSlotWeight() {
+        return tSlotWeight;
+    }
+
+    public void setTSlotWeight(double tSlotWeight) {
+        this.tSlotWeight = tSlotWeight;
+    }
+
+    public double getTSpinWeight() {
+        return tSpinWeight;
+    }
+
+    public void setTSpinWeight(double tSpinWeight) {
+        this.tSpinWeight = tSpinWeight;
+    }
+}
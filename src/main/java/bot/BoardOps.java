@@ -0,0 +1,70 @@
+package bot;
+
+import game.GameState;
+import model.Tetrimino;
+
+/**
+ * Piece placement on a bare copy of the board's row bitmasks, so bots can try moves without touching the game
+ */
+public class BoardOps {
+    private BoardOps() {
+    }
+
+    /**
+     * Copies the board's rows into the array, which has to be at least as long as the board is high
+     */
+    public static void copyRows(GameState state, int[] rows) {
+        for (int y = 0; y < state.getBoardHeight(); y++) {
+            rows[y] = state.getRow(y);
+        }
+    }
+
+    public static int getFullRowMask(int width) {
+        return (1 << width) - 1;
+    }
+
+    /**
+     * GameState's collision rule against the given rows
+     */
+    public static boolean fits(int[] rows, int height, int fullRowMask, int pieceId, int x, int y, int rotation) {
+        return GameState.fits(rows, height, fullRowMask, pieceId, x, y, rotation);
+    }
+
+    /**
+     * Lowest y the piece falls to from a valid position
+     */
+    public static int dropY(int[] rows, int height, int fullRowMask, int pieceId, int x, int y, int rotation) {
+        while (fits(rows, height, fullRowMask, pieceId, x, y - 1, rotation)) {
+            y--;
+        }
+        return y;
+    }
+
+    /**
+     * Writes the piece into the rows and removes the lines it completes, returns how many were cleared
+     */
+    public static int place(int[] rows, int height, int fullRowMask, int pieceId, int x, int y, int rotation) {
+        return place(rows, 0, height, fullRowMask, pieceId, x, y, rotation);
+    }
+
+    /**
+     * Same as place for a board stored at an offset in a larger array
+     */
+    public static int place(int[] rows, int offset, int height, int fullRowMask, int pieceId, int x, int y, int rotation) {
+        int minRow = Math.max(0, y + Tetrimino.getMinY(pieceId, rotation));
+        int maxRow = Math.min(height - 1, y + Tetrimino.getMaxY(pieceId, rotation));
+        for (int boardY = minRow; boardY <= maxRow; boardY++) {
+            rows[offset + boardY] |= (int) GameState.shiftRowMask(Tetrimino.getRowMask(pieceId, rotation, boardY - y), x);
+        }
+        int cleared = 0;
+        for (int boardY = minRow; boardY <= maxRow; boardY++) {
+            int row = offset + boardY - cleared;
+            if (rows[row] == fullRowMask) {
+                System.arraycopy(rows, row + 1, rows, row, offset + height - 1 - row);
+                rows[offset + height - 1] = 0;
+                cleared++;
+            }
+        }
+        return cleared;
+    }
+}
@@ -0,0 +1,187 @@
+package bot;
+
+import game.BoardDriver;
+import game.Controls;
+import game.GameState;
+import game.InputEvent;
+import model.Tetrimino;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Plays a game by turning a policy's placements into key taps. One tap per step. Placements with an input path are
+ * played back tap by tap, the rest are steered to by looking at where the piece actually is each step, and the
+ * piece is hard dropped once it's in place
+ */
+public class BotDriver implements BoardDriver {
+    public static final double DEFAULT_TAP_RATE = 60.0;
+
+    private final BotPolicy policy;
+    private final Controls controls;
+    private final PositionState position = new PositionState();
+    // Runs the policy off the stepping thread when set, otherwise it runs in step
+    private Executor searchExecutor;
+    // Set while the policy is searching the copied position, the placement it found once it's done
+    private volatile boolean searching;
+    private volatile Placement searched;
+    // Pieces placed when the position was copied
+    private int searchPiece = -1;
+    private Placement plan;
+    // Pieces placed when the plan was made, a change means the planned piece has locked
+    private int planPiece = -1;
+    private boolean holdDone;
+    private int pathStep;
+    // Soft drop is held down while following a path until the piece lands
+    private boolean softDropping;
+    private int lastPieceState;
+    private double tapInterval = 1.0 / DEFAULT_TAP_RATE;
+    private double nextStepTime = Double.NEGATIVE_INFINITY;
+
+    public BotDriver(BotPolicy policy, Controls controls) {
+        this.policy = policy;
+        this.controls = controls;
+    }
+
+    /**
+     * Sets how many inputs a second the bot sends when it's stepped with stepIfDue
+     */
+    public void setTapRate(double rate) {
+        if (!(rate > 0)) {
+            throw new IllegalArgumentException("Invalid bot tap rate: " + rate);
+        }
+        tapInterval = 1.0 / rate;
+    }
+
+    /**
+     * Searches on the executor instead of the stepping thread, null to search in step
+     */
+    public void setSearchExecutor(Executor searchExecutor) {
+        this.searchExecutor = searchExecutor;
+    }
+
+    public double getNextStepTime() {
+        return nextStepTime;
+    }
+
+    /**
+     * Steps if the next input is due by the state's clock. Inputs go through the same queue as the keyboard, so this
+     * has to be called from the thread that produces the player's input
+     */
+    @Override
+    public double stepIfDue(GameState state) {
+        double time = state.getClock().getTime();
+        if (time < nextStepTime) {
+            return nextStepTime;
+        }
+        nextStepTime = Math.max(nextStepTime + tapInterval, time);
+        step(state);
+        return nextStepTime;
+    }
+
+    /**
+     * Sends the next input for the active piece, if there is one. Has to be called from the thread that produces
+     * the engine's input, between the engine's ticks when it's driven by hand. A new piece's position is copied out
+     * with the state locked and searched after it's unlocked, on the search executor when there is one, and the
+     * piece is only steered once the plan is in
+     */
+    public void step(GameState state) {
+        state.lock.lock();
+        try {
+            if (state.isGameOver() || state.getPhase() != GameState.Phase.ACTIVE) {
+                return;
+            }
+            if (plan == null || planPiece != state.getPiecesPlaced()) {
+                if (softDropping) {
+                    controls.sendInput(InputEvent.SOFT_DROP, false);
+                    softDropping = false;
+                }
+                if (searching) {
+                    return;
+                }
+                if (searchPiece != state.getPiecesPlaced()) {
+                    position.load(state, policy.getQueueLength(state));
+                    searchPiece = state.getPiecesPlaced();
+                    searching = true;
+                } else {
+                    plan = searched;
+                    planPiece = searchPiece;
+                    holdDone = false;
+                    pathStep = 0;
+                    lastPieceState = -1;
+                    if (plan == null) {
+                        tap(InputEvent.HARD_DROP);
+                        return;
+                    }
+                }
+            }
+            if (!searching) {
+                steer(state);
+                return;
+            }
+        } finally {
+            state.lock.unlock();
+        }
+
+        if (searchExecutor == null) {
+            search();
+            step(state);
+        } else {
+            searchExecutor.execute(this::search);
+        }
+    }
+
+    private void search() {
+        try {
+            searched = null;
+            searched = policy.choose(position.getState());
+        } finally {
+            searching = false;
+        }
+    }
+
+    private void steer(GameState state) {
+        Tetrimino piece = state.getGamePiece();
+        if (softDropping) {
+            if (!state.isPieceBlockedBelow()) {
+                return;
+            }
+            controls.sendInput(InputEvent.SOFT_DROP, false);
+            softDropping = false;
+            lastPieceState = -1;
+            return;
+        }
+
+        // A tap that didn't move the piece means the path is blocked, drop it rather than stall the game
+        int pieceState = piece.getState();
+        if (pieceState == lastPieceState) {
+            tap(InputEvent.HARD_DROP);
+            return;
+        }
+        lastPieceState = pieceState;
+
+        if (plan.isHold() && !holdDone) {
+            holdDone = true;
+            tap(InputEvent.HOLD);
+        } else if (pathStep < plan.getInputCount()) {
+            int input = plan.getInput(pathStep++);
+            if (input == InputEvent.SOFT_DROP) {
+                controls.sendInput(InputEvent.SOFT_DROP, true);
+                softDropping = true;
+            } else {
+                tap(input);
+            }
+        } else if (piece.getRotation() != plan.getRotation()) {
+            int turns = (plan.getRotation() - piece.getRotation()) & 3;
+            tap((turns == 3) ? InputEvent.ROTATE_CCW : InputEvent.ROTATE_CW);
+        } else if (piece.getX() != plan.getX()) {
+            tap((piece.getX() < plan.getX()) ? InputEvent.MOVE_RIGHT : InputEvent.MOVE_LEFT);
+        } else {
+            tap(InputEvent.HARD_DROP);
+        }
+    }
+
+    private void tap(int action) {
+        controls.sendInput(action, true);
+        controls.sendInput(action, false);
+    }
+}
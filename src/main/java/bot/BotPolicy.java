@@ -0,0 +1,46 @@
+package bot;
+
+import game.GameState;
+import game.RotationSystem;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Picks a placement for the active piece. Gets a copy of the game's position rather than the game itself, so it can
+ * take its time without holding the game up, but shouldn't keep references to it
+ */
+public interface BotPolicy {
+    /**
+     * Returns null to give up on the piece, the driver then hard drops it where it is
+     */
+    Placement choose(GameState state);
+
+    /**
+     * Queued pieces the policy reads, only these are copied into the state it's given
+     */
+    default int getQueueLength(GameState state) {
+        return state.getPreviewCount();
+    }
+
+    /**
+     * Policy by name, "greedy", "beam" or "pc" for perfect clears. Beam search and the perfect clear solver get the
+     * common pool when parallel is set. The rotation system has to be the one the engine plays with, paths to tucks
+     * and spins are worked out with its kicks
+     */
+    static BotPolicy create(String name, boolean parallel, RotationSystem rotationSystem) {
+        switch (name) {
+            case "greedy":
+                return new GreedyPolicy(new BoardEvaluator(), rotationSystem);
+            case "beam":
+                return parallel ? new BeamSearchPolicy(new BoardEvaluator(), ForkJoinPool.commonPool(),
+                        BeamSearchPolicy.DEFAULT_BEAM_WIDTH, BeamSearchPolicy.DEFAULT_DEPTH) : new BeamSearchPolicy();
+            case "pc":
+                PerfectClearSolver solver = parallel ? new PerfectClearSolver(ForkJoinPool.commonPool(),
+                        new TranspositionTable(PerfectClearSolver.DEFAULT_TABLE_MEGABYTES)) : new PerfectClearSolver();
+                return new PerfectClearPolicy(solver, new GreedyPolicy(new BoardEvaluator(), rotationSystem),
+                        rotationSystem, PerfectClearPolicy.PREVIEW_QUEUE_LENGTH, PerfectClearSolver.DEFAULT_MAX_LINES);
+            default:
+                throw new IllegalArgumentException("Unknown bot policy: " + name);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package bot;
+
+import game.GameState;
+import game.RotationSystem;
+
+import java.util.Arrays;
+
+/**
+ * One piece lookahead: tries every placement the move generator can reach for the current piece and the hold
+ * piece, tucks and spins included, and takes the best board by the evaluator
+ */
+public class GreedyPolicy implements BotPolicy {
+    private final BoardEvaluator evaluator;
+    private final MoveGenerator moveGenerator;
+    private int[] rows = new int[0];
+    private int[] scratch = new int[0];
+    private int[] bestPath = new int[16];
+
+    public GreedyPolicy(BoardEvaluator evaluator, RotationSystem rotationSystem) {
+        this.evaluator = evaluator;
+        moveGenerator = new MoveGenerator(rotationSystem);
+    }
+
+    @Override
+    public Placement choose(GameState state) {
+        int width = state.getBoardWidth();
+        int height = state.getBoardHeight();
+        if (rows.length < height) {
+            rows = new int[height];
+            scratch = new int[height];
+        }
+        BoardOps.copyRows(state, rows);
+        int fullRowMask = BoardOps.getFullRowMask(width);
+
+        int bestRotation = -1;
+        int bestX = 0;
+        int bestPathLength = 0;
+        boolean bestHold = false;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int option = 0; option < 2; option++) {
+            boolean hold = option == 1;
+            int pieceId;
+            int count;
+            if (hold) {
+                if (!state.isAllowHold()) {
+                    break;
+                }
+                pieceId = (state.getHeldPiece() == GameState.NO_PIECE) ? state.getNextPiece(0) : state.getHeldPiece();
+                count = moveGenerator.generate(rows, width, height, pieceId, state.getSpawnX(pieceId), state.getSpawnY(pieceId), 0);
+            } else {
+                pieceId = state.getGamePiece().getId();
+                count = moveGenerator.generate(state);
+            }
+            for (int i = 0; i < count; i++) {
+                System.arraycopy(rows, 0, scratch, 0, height);
+                int lines = BoardOps.place(scratch, height, fullRowMask, pieceId, moveGenerator.getX(i), moveGenerator.getY(i),
+                        moveGenerator.getRotation(i));
+                double score = evaluator.evaluate(scratch, width, height, lines)
+                        + evaluator.evaluateSpin(moveGenerator.getSpin(i), lines);
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestHold = hold;
+                    bestRotation = moveGenerator.getRotation(i);
+                    bestX = moveGenerator.getX(i);
+                    if (bestPath.length < moveGenerator.getPathLength(i)) {
+                        bestPath = new int[moveGenerator.getPathLength(i) * 2];
+                    }
+                    bestPathLength = moveGenerator.getPath(i, bestPath);
+                }
+            }
+        }
+        return (bestRotation < 0) ? null : new Placement(bestHold, bestRotation, bestX, Arrays.copyOf(bestPath, bestPathLength));
+    }
+}
@@ -0,0 +1,157 @@
+package bot;
+
+import game.HintExchange;
+import game.RotationSystem;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Works out hints on its own thread for positions published to a HintExchange. Each position is searched with
+ * iterative deepening, a beam search one piece deeper on every pass, and each pass's placement is published as soon
+ * as it's done, so a hint shows up quickly and improves while the player thinks. A pass gives up within a level once
+ * the game has moved on, and the engine never waits for any of it
+ */
+public class HintSearcher implements Runnable {
+    public static final int DEFAULT_BEAM_WIDTH = 32;
+    public static final int DEFAULT_MAX_DEPTH = 5;
+
+    private final HintExchange exchange;
+    // Pass i searches i + 1 pieces deep
+    private final BeamSearchPolicy[] passes;
+    private final MoveGenerator moveGenerator;
+    private final PositionState positionState = new PositionState();
+
+    private final LongAdder hintCount = new LongAdder();
+    private final LongAdder cancelledCount = new LongAdder();
+    private final LongAdder depthTotal = new LongAdder();
+    private final LongAdder firstLatencyTotal = new LongAdder();
+    private final AtomicLong firstLatencyMax = new AtomicLong();
+    private final LongAdder finalLatencyTotal = new LongAdder();
+    private final AtomicLong finalLatencyMax = new AtomicLong();
+
+    public HintSearcher(HintExchange exchange, RotationSystem rotationSystem) {
+        this(exchange, rotationSystem, new BoardEvaluator(), DEFAULT_BEAM_WIDTH, DEFAULT_MAX_DEPTH);
+    }
+
+    public HintSearcher(HintExchange exchange, RotationSystem rotationSystem, BoardEvaluator evaluator, int beamWidth,
+                        int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("Invalid hint depth: " + maxDepth);
+        }
+        this.exchange = exchange;
+        moveGenerator = new MoveGenerator(rotationSystem);
+        // The passes share a table, so deeper passes reuse the board evaluations of the shallower ones
+        TranspositionTable table = new TranspositionTable(BeamSearchPolicy.DEFAULT_TABLE_MEGABYTES);
+        passes = new BeamSearchPolicy[maxDepth];
+        for (int i = 0; i < maxDepth; i++) {
+            passes[i] = new BeamSearchPolicy(evaluator, null, beamWidth, i + 1, table);
+        }
+    }
+
+    /**
+     * Searches positions as they come in until the thread is interrupted
+     */
+    @Override
+    public void run() {
+        long generation = 0;
+        try {
+            while (true) {
+                HintExchange.Request request = exchange.awaitRequest(generation);
+                generation = request.getGeneration();
+                search(request);
+            }
+        } catch (InterruptedException e) {
+            // Hints were turned off
+        }
+    }
+
+    private void search(HintExchange.Request request) {
+        long generation = request.getGeneration();
+        int[] queue = new int[request.getQueueLength()];
+        for (int i = 0; i < queue.length; i++) {
+            queue[i] = request.getQueuePiece(i);
+        }
+        positionState.load(request.getRows(), request.getPieceId(), request.getHeldPiece(), request.isAllowHold(), queue);
+
+        // Deeper than the current piece and the preview there's nothing to search
+        int maxDepth = Math.min(passes.length, 1 + queue.length);
+        BooleanSupplier stale = () -> !exchange.isCurrent(generation);
+        int depth = 0;
+        long latency = 0;
+        while (depth < maxDepth && exchange.isCurrent(generation)) {
+            Placement placement = passes[depth].choose(positionState.getState(), stale);
+            if (placement == null) {
+                break;
+            }
+            int y = positionState.getLandingY(placement, moveGenerator);
+            if (y == PositionState.NO_LANDING) {
+                break;
+            }
+            exchange.publishResult(new HintExchange.Result(generation, positionState.getPieceId(placement),
+                    placement.getX(), y, placement.getRotation(), depth + 1));
+            latency = System.nanoTime() - request.getPublishTime();
+            if (depth == 0) {
+                firstLatencyTotal.add(latency);
+                firstLatencyMax.accumulateAndGet(latency, Math::max);
+            }
+            depth++;
+        }
+        if (depth > 0) {
+            hintCount.increment();
+            depthTotal.add(depth);
+            finalLatencyTotal.add(latency);
+            finalLatencyMax.accumulateAndGet(latency, Math::max);
+        }
+        if (!exchange.isCurrent(generation)) {
+            cancelledCount.increment();
+        }
+    }
+
+    /**
+     * Positions that got at least one hint
+     */
+    public long getHintCount() {
+        return hintCount.sum();
+    }
+
+    /**
+     * Positions the game moved on from before the search was through with them
+     */
+    public long getCancelledCount() {
+        return cancelledCount.sum();
+    }
+
+    /**
+     * Average pieces deep the last hint for a position searched
+     */
+    public double getAverageDepth() {
+        long count = hintCount.sum();
+        return (count == 0) ? 0.0 : (double) depthTotal.sum() / count;
+    }
+
+    /**
+     * Average seconds from the engine publishing a position to its first hint
+     */
+    public double getAverageFirstLatency() {
+        long count = hintCount.sum();
+        return (count == 0) ? 0.0 : firstLatencyTotal.sum() * 1e-9 / count;
+    }
+
+    public double getMaxFirstLatency() {
+        return firstLatencyMax.get() * 1e-9;
+    }
+
+    /**
+     * Average seconds from the engine publishing a position to its deepest hint
+     */
+    public double getAverageFinalLatency() {
+        long count = hintCount.sum();
+        return (count == 0) ? 0.0 : finalLatencyTotal.sum() * 1e-9 / count;
+    }
+
+    public double getMaxFinalLatency() {
+        return finalLatencyMax.get() * 1e-9;
+    }
+}
@@ -0,0 +1,399 @@
+package bot;
+
+import game.GameState;
+import game.InputEvent;
+import game.RotationSystem;
+import model.ClearResult;
+import model.Tetrimino;
+
+/**
+ * Finds every placement a piece can reach from where it is: shifts, drops to the floor and rotations with the
+ * rotation system's kicks, so tucks and spins are included. It's a breadth first search over (x, y, rotation) with
+ * a bitset of visited states and parent links, so each placement comes with the shortest list of inputs that gets
+ * there. Soft drop in a path means holding it until the piece lands, gravity isn't modelled.
+ * Results stay valid until the next generate call, everything is reused between calls
+ */
+public class MoveGenerator {
+    // States are offset by this so boxes hanging past the left wall or the floor get non-negative indices
+    private static final int OFFSET = Tetrimino.MAX_SIZE;
+    private static final int T_PIECE = 5;
+    private static final int[] moveInputs = {
+            InputEvent.MOVE_LEFT, InputEvent.MOVE_RIGHT, InputEvent.ROTATE_CW, InputEvent.ROTATE_CCW, InputEvent.SOFT_DROP,
+    };
+
+    private final RotationSystem rotationSystem;
+
+    private int[] rows = new int[0];
+    private int width;
+    private int height;
+    private int fullRowMask;
+    private int pieceId;
+    private int spanX;
+    private int spanY;
+
+    private long[] visited = new long[0];
+    private int[] queue = new int[0];
+    private int[] parent = new int[0];
+    // Input that led to each state, with the kick index in the upper bits for rotations
+    private byte[] move = new byte[0];
+    private short[] depth = new short[0];
+
+    private int count;
+    private int[] resultState = new int[0];
+    private int[] resultSpin = new int[0];
+    // Rotation the placement is entered by when that's a better spin than the shortest path's last input
+    private int[] resultSpinParent = new int[0];
+    private byte[] resultSpinMove = new byte[0];
+
+    public MoveGenerator(RotationSystem rotationSystem) {
+        this.rotationSystem = rotationSystem;
+    }
+
+    /**
+     * Generates placements for the state's active piece from its current position
+     */
+    public int generate(GameState state) {
+        Tetrimino piece = state.getGamePiece();
+        if (rows.length < state.getBoardHeight()) {
+            rows = new int[state.getBoardHeight()];
+        }
+        BoardOps.copyRows(state, rows);
+        return generate(rows, state.getBoardWidth(), state.getBoardHeight(), piece.getId(), piece.getX(), piece.getY(),
+                piece.getRotation());
+    }
+
+    /**
+     * Path to the piece at the given position as a placement, null if it can't get there. When it holds, the held
+     * piece, or the next one with nothing held, is searched from its spawn
+     */
+    public Placement findPlacement(GameState state, boolean hold, int x, int y, int rotation) {
+        if (hold) {
+            if (!state.isAllowHold()) {
+                return null;
+            }
+            int held = state.getHeldPiece();
+            int pieceId = (held == GameState.NO_PIECE) ? state.getNextPiece(0) : held;
+            if (rows.length < state.getBoardHeight()) {
+                rows = new int[state.getBoardHeight()];
+            }
+            BoardOps.copyRows(state, rows);
+            generate(rows, state.getBoardWidth(), state.getBoardHeight(), pieceId, state.getSpawnX(pieceId),
+                    state.getSpawnY(pieceId), 0);
+        } else {
+            generate(state);
+        }
+        int result = findResult(x, y, rotation);
+        if (result < 0) {
+            return null;
+        }
+        int[] path = new int[getPathLength(result)];
+        getPath(result, path);
+        return new Placement(hold, getRotation(result), getX(result), path);
+    }
+
+    /**
+     * Generates placements for a piece starting at the given position, returns how many were found. The rows are
+     * read during the call only
+     */
+    public int generate(int[] board, int boardWidth, int boardHeight, int id, int startX, int startY, int startRotation) {
+        prepare(board, boardWidth, boardHeight, id);
+        count = 0;
+        if (!BoardOps.fits(rows, height, fullRowMask, pieceId, startX, startY, startRotation)) {
+            return 0;
+        }
+
+        int start = getIndex(startX, startY, startRotation);
+        visit(start);
+        parent[start] = -1;
+        depth[start] = 0;
+        queue[0] = start;
+        int head = 0;
+        int tail = 1;
+        while (head < tail) {
+            int index = queue[head++];
+            int x = getIndexX(index);
+            int y = getIndexY(index);
+            int rotation = getIndexRotation(index);
+            for (int input = 0; input < moveInputs.length; input++) {
+                int nextX = x;
+                int nextY = y;
+                int nextRotation = rotation;
+                int kick = 0;
+                boolean shift = false;
+                switch (moveInputs[input]) {
+                    case InputEvent.MOVE_LEFT:
+                        nextX--;
+                        shift = true;
+                        break;
+                    case InputEvent.MOVE_RIGHT:
+                        nextX++;
+                        shift = true;
+                        break;
+                    case InputEvent.SOFT_DROP:
+                        nextY = BoardOps.dropY(rows, height, fullRowMask, pieceId, x, y, rotation);
+                        break;
+                    default:
+                        nextRotation = (rotation + ((moveInputs[input] == InputEvent.ROTATE_CW) ? 1 : 3)) & 3;
+                        kick = rotationSystem.findKick(rows, height, fullRowMask, pieceId, x, y, rotation,
+                                nextRotation);
+                        if (kick < 0) {
+                            continue;
+                        }
+                        nextX += rotationSystem.getKickX(pieceId, rotation, nextRotation, kick);
+                        nextY += rotationSystem.getKickY(pieceId, rotation, nextRotation, kick);
+                        break;
+                }
+                if (nextY == y && nextX == x && nextRotation == rotation) {
+                    continue;
+                }
+                if (shift && !BoardOps.fits(rows, height, fullRowMask, pieceId, nextX, nextY, nextRotation)) {
+                    continue;
+                }
+                int next = getIndex(nextX, nextY, nextRotation);
+                if (isVisited(next)) {
+                    continue;
+                }
+                visit(next);
+                parent[next] = index;
+                move[next] = (byte) (input | (kick << 4));
+                depth[next] = (short) (depth[index] + 1);
+                queue[tail++] = next;
+            }
+        }
+
+        // The search order is by path length, so the first state found for a set of cells has the shortest path
+        for (int i = 0; i < tail; i++) {
+            int index = queue[i];
+            int x = getIndexX(index);
+            int y = getIndexY(index);
+            int rotation = getIndexRotation(index);
+            if (BoardOps.fits(rows, height, fullRowMask, pieceId, x, y - 1, rotation) || isDuplicate(index)) {
+                continue;
+            }
+            resultState[count] = index;
+            resultSpin[count] = ClearResult.TSPIN_NONE;
+            resultSpinParent[count] = -1;
+            if (pieceId == T_PIECE) {
+                classifySpin(count);
+            }
+            count++;
+        }
+        return count;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getX(int result) {
+        return getIndexX(resultState[result]);
+    }
+
+    public int getY(int result) {
+        return getIndexY(resultState[result]);
+    }
+
+    public int getRotation(int result) {
+        return getIndexRotation(resultState[result]);
+    }
+
+    /**
+     * One of the ClearResult.TSPIN_ kinds the engine will score the placement as when its path is followed
+     */
+    public int getSpin(int result) {
+        return resultSpin[result];
+    }
+
+    /**
+     * Number of inputs in the placement's path, not counting the hard drop at the end
+     */
+    public int getPathLength(int result) {
+        int spinParent = resultSpinParent[result];
+        if (spinParent >= 0) {
+            return depth[spinParent] + 1;
+        }
+        int index = resultState[result];
+        return isDropped(index) ? depth[index] - 1 : depth[index];
+    }
+
+    /**
+     * Copies the placement's path into the array as InputEvent actions, returns the path length. Paths never end in
+     * a soft drop, the hard drop lands the piece in the same place, so soft drops only come before tucks and spins
+     */
+    public int getPath(int result, int[] inputs) {
+        int length = getPathLength(result);
+        int index = resultState[result];
+        int step = length;
+        if (resultSpinParent[result] >= 0) {
+            inputs[--step] = moveInputs[resultSpinMove[result] & 0xF];
+            index = resultSpinParent[result];
+        } else if (isDropped(index)) {
+            index = parent[index];
+        }
+        while (step > 0) {
+            inputs[--step] = moveInputs[move[index] & 0xF];
+            index = parent[index];
+        }
+        return length;
+    }
+
+    /**
+     * Whether the state was reached by soft dropping, which also clears the engine's last rotation like a hard drop
+     */
+    private boolean isDropped(int index) {
+        return depth[index] > 0 && moveInputs[move[index] & 0xF] == InputEvent.SOFT_DROP;
+    }
+
+    private void prepare(int[] board, int boardWidth, int boardHeight, int id) {
+        if (rows != board) {
+            if (rows.length < boardHeight) {
+                rows = new int[boardHeight];
+            }
+            System.arraycopy(board, 0, rows, 0, boardHeight);
+        }
+        width = boardWidth;
+        height = boardHeight;
+        fullRowMask = BoardOps.getFullRowMask(width);
+        pieceId = id;
+        spanX = width + OFFSET;
+        spanY = height + OFFSET;
+        int states = 4 * spanX * spanY;
+        if (parent.length < states) {
+            visited = new long[(states + 63) >>> 6];
+            queue = new int[states];
+            parent = new int[states];
+            move = new byte[states];
+            depth = new short[states];
+            resultState = new int[states];
+            resultSpin = new int[states];
+            resultSpinParent = new int[states];
+            resultSpinMove = new byte[states];
+        } else {
+            for (int i = 0; i < (states + 63) >>> 6; i++) {
+                visited[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * Finds the best spin a T placement can be entered with. Every reachable state that rotates into it counts,
+     * not just the one on the shortest path, the shortest of the best kind wins
+     */
+    private void classifySpin(int result) {
+        int index = resultState[result];
+        int x = getIndexX(index);
+        int y = getIndexY(index);
+        int rotation = getIndexRotation(index);
+        int corners = (isBlocked(x, y) ? 1 : 0) | (isBlocked(x, y + 2) ? 2 : 0)
+                | (isBlocked(x + 2, y) ? 4 : 0) | (isBlocked(x + 2, y + 2) ? 8 : 0);
+        int bestSpin = (parent[index] >= 0 && isRotation(move[index] & 0xF))
+                ? ClearResult.classifyTSpin(rotation, corners, move[index] >> 4) : ClearResult.TSPIN_NONE;
+        int bestLength = depth[index];
+        for (int input = 0; input < moveInputs.length; input++) {
+            if (!isRotation(input)) {
+                continue;
+            }
+            int from = (rotation + ((moveInputs[input] == InputEvent.ROTATE_CW) ? 3 : 1)) & 3;
+            int kicks = rotationSystem.getKickCount(pieceId, from, rotation);
+            for (int kick = 0; kick < kicks; kick++) {
+                int fromX = x - rotationSystem.getKickX(pieceId, from, rotation, kick);
+                int fromY = y - rotationSystem.getKickY(pieceId, from, rotation, kick);
+                if (fromX < -OFFSET || fromX >= width || fromY < -OFFSET || fromY >= height) {
+                    continue;
+                }
+                int source = getIndex(fromX, fromY, from);
+                if (!isVisited(source)
+                        || rotationSystem.findKick(rows, height, fullRowMask, pieceId, fromX, fromY, from, rotation) != kick) {
+                    continue;
+                }
+                int spin = ClearResult.classifyTSpin(rotation, corners, kick);
+                int length = depth[source] + 1;
+                if (spin > bestSpin || (spin == bestSpin && length < bestLength)) {
+                    bestSpin = spin;
+                    bestLength = length;
+                    resultSpinParent[result] = source;
+                    resultSpinMove[result] = (byte) (input | (kick << 4));
+                }
+            }
+        }
+        resultSpin[result] = bestSpin;
+    }
+
+    private static boolean isRotation(int input) {
+        return moveInputs[input] == InputEvent.ROTATE_CW || moveInputs[input] == InputEvent.ROTATE_CCW;
+    }
+
+    private boolean isBlocked(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return true;
+        }
+        return (rows[y] & (1 << x)) != 0;
+    }
+
+    /**
+     * Index of the result that covers the same cells as the piece at the given position, -1 if it can't get there
+     */
+    public int findResult(int x, int y, int rotation) {
+        for (int i = 0; i < count; i++) {
+            if (isSameCells(x, y, rotation, resultState[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks if an earlier result covers the same cells, S, Z, I and O pieces reach the same cells in two rotations
+     */
+    private boolean isDuplicate(int index) {
+        return findResult(getIndexX(index), getIndexY(index), getIndexRotation(index)) >= 0;
+    }
+
+    private boolean isSameCells(int x, int y, int rotation, int other) {
+        int otherX = getIndexX(other);
+        int otherY = getIndexY(other);
+        int otherRotation = getIndexRotation(other);
+        int bottom = y + Tetrimino.getMinY(pieceId, rotation);
+        if (otherY + Tetrimino.getMinY(pieceId, otherRotation) != bottom) {
+            return false;
+        }
+        for (int row = 0; row < Tetrimino.MAX_SIZE; row++) {
+            if (getCells(x, rotation, bottom - y + row) != getCells(otherX, otherRotation, bottom - otherY + row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long getCells(int x, int rotation, int row) {
+        if (row < 0 || row >= Tetrimino.getSize(pieceId)) {
+            return 0;
+        }
+        long mask = Tetrimino.getRowMask(pieceId, rotation, row);
+        return (x >= 0) ? mask << x : mask >>> -x;
+    }
+
+    private int getIndex(int x, int y, int rotation) {
+        return (rotation * spanY + y + OFFSET) * spanX + x + OFFSET;
+    }
+
+    private int getIndexX(int index) {
+        return index % spanX - OFFSET;
+    }
+
+    private int getIndexY(int index) {
+        return (index / spanX) % spanY - OFFSET;
+    }
+
+    private int getIndexRotation(int index) {
+        return index / (spanX * spanY);
+    }
+
+    private boolean isVisited(int index) {
+        return (visited[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private void visit(int index) {
+        visited[index >>> 6] |= 1L << index;
+    }
+}
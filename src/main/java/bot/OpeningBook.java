@@ -0,0 +1,120 @@
+package bot;
+
+import model.Tetrimino;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Precomputed placements for early game positions, read from a file built by OpeningBookBuilder. The file is memory
+ * mapped and looked up in place: a header, then entries sorted by the position's Zobrist hash, each the hash and a
+ * packed placement. Lookups are a binary search over the mapping, nothing is copied onto the heap, and a book can be
+ * shared by any number of threads
+ */
+public class OpeningBook {
+    public static final int MAGIC = 0x54424B31; // "TBK1"
+    public static final int VERSION = 1;
+    public static final int NOT_FOUND = -1;
+    // Magic, version, queue length, pieces deep and entry count
+    public static final int HEADER_SIZE = 5 * Integer.BYTES;
+    public static final int ENTRY_SIZE = Long.BYTES + Integer.BYTES;
+    // Positions are stored offset by this so boxes hanging past the left wall or the floor pack as non-negative
+    private static final int OFFSET = Tetrimino.MAX_SIZE;
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final int queueLength;
+    private final int pieces;
+    private final int count;
+
+    public OpeningBook(Path path) throws IOException {
+        this.path = path;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Not an opening book: " + path);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not an opening book: " + path);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported opening book version " + buffer.getInt(4) + ": " + path);
+        }
+        queueLength = buffer.getInt(8);
+        pieces = buffer.getInt(12);
+        count = buffer.getInt(16);
+        if (count < 0 || buffer.capacity() != HEADER_SIZE + (long) count * ENTRY_SIZE) {
+            throw new IOException("Truncated opening book: " + path);
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Queued pieces that go into a position's hash, as given to Zobrist.hashState
+     */
+    public int getQueueLength() {
+        return queueLength;
+    }
+
+    /**
+     * How many pieces into the game the book goes
+     */
+    public int getPieces() {
+        return pieces;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the packed placement for the hash, or NOT_FOUND
+     */
+    public int lookup(long hash) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int position = HEADER_SIZE + mid * ENTRY_SIZE;
+            long key = buffer.getLong(position);
+            if (key < hash) {
+                low = mid + 1;
+            } else if (key > hash) {
+                high = mid - 1;
+            } else {
+                return buffer.getInt(position + Long.BYTES);
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Packs where a piece lands, after holding or not, its box position and rotation
+     */
+    public static int packMove(boolean hold, int rotation, int x, int y) {
+        return ((hold ? 1 : 0) << 24) | (rotation << 16) | ((x + OFFSET) << 8) | (y + OFFSET);
+    }
+
+    public static boolean isMoveHold(int move) {
+        return (move & (1 << 24)) != 0;
+    }
+
+    public static int getMoveRotation(int move) {
+        return (move >> 16) & 0x3;
+    }
+
+    public static int getMoveX(int move) {
+        return ((move >> 8) & 0xFF) - OFFSET;
+    }
+
+    public static int getMoveY(int move) {
+        return (move & 0xFF) - OFFSET;
+    }
+}
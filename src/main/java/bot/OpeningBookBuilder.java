@@ -0,0 +1,257 @@
+package bot;
+
+import game.GameState;
+import game.ManualClock;
+import game.RotationSystem;
+import model.Tetrimino;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Builds an opening book offline. It starts from every way the first 7-bag can fill the current piece and the
+ * preview, has the policy place each position's piece and follows every way the bag can deal the pieces that come
+ * into view, for the given number of pieces. It goes a piece at a time so a position reached by different sequences
+ * is searched once, spread over worker threads that each have their own policy and state.
+ * Usage: OpeningBookBuilder file [pieces] [threads]
+ * The policy is picked with -Dtetris.bot=greedy or beam, beam by default, and the rotation system the book is
+ * played with by -Dtetris.rotationSystem=SRS, SRS+ or ARS, SRS by default
+ */
+public class OpeningBookBuilder {
+    public static final int DEFAULT_PIECES = 3;
+    private static final int FULL_BAG = (1 << Tetrimino.PIECE_COUNT) - 1;
+
+    private final int pieces;
+    private final Supplier<BotPolicy> policyFactory;
+    private final RotationSystem rotationSystem;
+    private final int width;
+    private final int height;
+    private final int queueLength;
+    private final TreeMap<Long, Integer> entries = new TreeMap<>();
+
+    public OpeningBookBuilder(int pieces, Supplier<BotPolicy> policyFactory, RotationSystem rotationSystem) {
+        this.pieces = pieces;
+        this.policyFactory = policyFactory;
+        this.rotationSystem = rotationSystem;
+        GameState state = new GameState(new ManualClock());
+        width = state.getBoardWidth();
+        height = state.getBoardHeight();
+        queueLength = state.getPreviewCount();
+    }
+
+    public int getCount() {
+        return entries.size();
+    }
+
+    /**
+     * Searches every position of the opening on the given number of threads
+     */
+    public void build(int threads) throws InterruptedException {
+        BotPolicy[] policies = new BotPolicy[threads];
+        for (int i = 0; i < threads; i++) {
+            policies[i] = policyFactory.get();
+        }
+        List<Position> level = new ArrayList<>();
+        addPositions(new int[height], GameState.NO_PIECE, new int[0], 1 + queueLength, 0, new HashSet<>(), level);
+        for (int piece = 0; piece < pieces && !level.isEmpty(); piece++) {
+            // Positions with the same hash get the same placement, the bag only matters for what's dealt next
+            Map<Long, Position> unique = new LinkedHashMap<>();
+            for (Position position : level) {
+                unique.putIfAbsent(position.hash, position);
+            }
+            Position[] searched = unique.values().toArray(new Position[0]);
+            int[] moves = search(searched, policies);
+            Map<Long, Integer> levelMoves = new LinkedHashMap<>();
+            for (int i = 0; i < searched.length; i++) {
+                levelMoves.put(searched[i].hash, moves[i]);
+                if (moves[i] != OpeningBook.NOT_FOUND) {
+                    entries.put(searched[i].hash, moves[i]);
+                }
+            }
+            System.out.println("Piece " + (piece + 1) + ": " + level.size() + " positions, " + searched.length + " searched");
+            if (piece + 1 < pieces) {
+                level = expand(level, levelMoves);
+            }
+        }
+    }
+
+    /**
+     * Writes the book sorted by hash, the order OpeningBook's binary search needs
+     */
+    public void write(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(OpeningBook.MAGIC);
+            out.writeInt(OpeningBook.VERSION);
+            out.writeInt(queueLength);
+            out.writeInt(pieces);
+            out.writeInt(entries.size());
+            for (Map.Entry<Long, Integer> entry : entries.entrySet()) {
+                out.writeLong(entry.getKey());
+                out.writeInt(entry.getValue());
+            }
+        }
+    }
+
+    private int[] search(Position[] positions, BotPolicy[] policies) throws InterruptedException {
+        int[] moves = new int[positions.length];
+        AtomicInteger next = new AtomicInteger();
+        Thread[] workers = new Thread[policies.length];
+        for (int i = 0; i < policies.length; i++) {
+            BotPolicy policy = policies[i];
+            workers[i] = new Thread(() -> {
+                Worker worker = new Worker(policy);
+                int index;
+                while ((index = next.getAndIncrement()) < positions.length) {
+                    moves[index] = worker.search(positions[index]);
+                }
+            }, "Book builder " + i);
+            workers[i].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return moves;
+    }
+
+    private List<Position> expand(List<Position> level, Map<Long, Integer> moves) {
+        List<Position> nextLevel = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        int fullRowMask = BoardOps.getFullRowMask(width);
+        for (Position position : level) {
+            int move = moves.get(position.hash);
+            if (move == OpeningBook.NOT_FOUND) {
+                continue;
+            }
+            boolean hold = OpeningBook.isMoveHold(move);
+            boolean holdEmpty = position.hold == GameState.NO_PIECE;
+            int used = (hold && holdEmpty) ? 2 : 1;
+            int pieceId = hold ? (holdEmpty ? position.queue[0] : position.hold) : position.current;
+            int[] rows = position.rows.clone();
+            BoardOps.place(rows, height, fullRowMask, pieceId, OpeningBook.getMoveX(move), OpeningBook.getMoveY(move),
+                    OpeningBook.getMoveRotation(move));
+
+            // The current piece and the queue as one sequence, minus what was used
+            int[] known = new int[queueLength + 1 - used];
+            for (int i = 0; i < known.length; i++) {
+                known[i] = position.queue[i + used - 1];
+            }
+            addPositions(rows, hold ? position.current : position.hold, known, used, position.bagLeft, seen, nextLevel);
+        }
+        return nextLevel;
+    }
+
+    /**
+     * Adds a position for every way the bag can deal the missing pieces onto the end of the known ones
+     */
+    private void addPositions(int[] rows, int hold, int[] known, int missing, int bagLeft, Set<Long> seen,
+                              List<Position> out) {
+        if (missing == 0) {
+            Position position = new Position(rows, known[0], hold, Arrays.copyOfRange(known, 1, known.length),
+                    bagLeft);
+            if (seen.add(position.hash ^ (bagLeft * 0x9E3779B97F4A7C15L))) {
+                out.add(position);
+            }
+            return;
+        }
+        int bag = (bagLeft == 0) ? FULL_BAG : bagLeft;
+        for (int id = 0; id < Tetrimino.PIECE_COUNT; id++) {
+            if ((bag & (1 << id)) == 0) {
+                continue;
+            }
+            int[] dealt = Arrays.copyOf(known, known.length + 1);
+            dealt[known.length] = id;
+            addPositions(rows, hold, dealt, missing - 1, bag & ~(1 << id), seen, out);
+        }
+    }
+
+    /**
+     * A board with the pieces in view and what's left in the bag being dealt from
+     */
+    private class Position {
+        final int[] rows;
+        final int current;
+        final int hold;
+        final int[] queue;
+        final int bagLeft;
+        final long hash;
+
+        Position(int[] rows, int current, int hold, int[] queue, int bagLeft) {
+            this.rows = rows;
+            this.current = current;
+            this.hold = hold;
+            this.queue = queue;
+            this.bagLeft = bagLeft;
+            // Same as Zobrist.hashState on a game in this position
+            long positionHash = Zobrist.hashRows(rows, 0, height) ^ Zobrist.hashPiece(current) ^ Zobrist.hashHold(hold);
+            for (int i = 0; i < queue.length; i++) {
+                positionHash ^= Zobrist.hashQueuePiece(i, queue[i]);
+            }
+            hash = positionHash;
+        }
+    }
+
+    /**
+     * A policy with a state that positions are loaded into, and the move generator that works out where the
+     * policy's placement lands
+     */
+    private class Worker {
+        private final BotPolicy policy;
+        private final PositionState positionState = new PositionState();
+        private final MoveGenerator moveGenerator = new MoveGenerator(rotationSystem);
+
+        Worker(BotPolicy policy) {
+            this.policy = policy;
+        }
+
+        int search(Position position) {
+            positionState.load(position.rows, position.current, position.hold, true, position.queue);
+            Placement placement = policy.choose(positionState.getState());
+            if (placement == null) {
+                return OpeningBook.NOT_FOUND;
+            }
+            int y = positionState.getLandingY(placement, moveGenerator);
+            if (y == PositionState.NO_LANDING) {
+                return OpeningBook.NOT_FOUND;
+            }
+            return OpeningBook.packMove(placement.isHold(), placement.getRotation(), placement.getX(), y);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1 || args.length > 3) {
+            System.err.println("Usage: OpeningBookBuilder <file> [pieces] [threads]");
+            System.exit(2);
+        }
+        int pieces = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_PIECES;
+        int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        String bot = System.getProperty("tetris.bot", "beam");
+        // Book positions only know the preview, and the perfect clear bot's plans span pieces a book can't key on
+        if (!bot.equals("greedy") && !bot.equals("beam")) {
+            System.err.println("OpeningBookBuilder only builds with -Dtetris.bot=greedy or beam, not " + bot);
+            System.exit(2);
+        }
+        RotationSystem rotationSystem = RotationSystem.create(System.getProperty("tetris.rotationSystem", "SRS"));
+        // Positions already run one per thread, so the policies search on their own thread
+        OpeningBookBuilder builder = new OpeningBookBuilder(pieces, () -> BotPolicy.create(bot, false, rotationSystem),
+                rotationSystem);
+        long start = System.nanoTime();
+        builder.build(threads);
+        builder.write(Paths.get(args[0]));
+        System.out.printf("%d positions in %.2f s on %d threads%n", builder.getCount(),
+                (System.nanoTime() - start) * 1e-9, threads);
+    }
+}
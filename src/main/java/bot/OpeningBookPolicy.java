@@ -0,0 +1,58 @@
+package bot;
+
+import game.GameState;
+import game.RotationSystem;
+
+/**
+ * Plays placements from an opening book while the game is in it and asks the fallback policy, the live search, for
+ * everything else. Book placements are reached with paths from the move generator
+ */
+public class OpeningBookPolicy implements BotPolicy {
+    private final OpeningBook book;
+    private final BotPolicy fallback;
+    private final MoveGenerator moveGenerator;
+    private long bookHits;
+    private long bookMisses;
+
+    public OpeningBookPolicy(OpeningBook book, BotPolicy fallback, RotationSystem rotationSystem) {
+        this.book = book;
+        this.fallback = fallback;
+        moveGenerator = new MoveGenerator(rotationSystem);
+    }
+
+    /**
+     * Pieces placed from the book
+     */
+    public long getBookHits() {
+        return bookHits;
+    }
+
+    /**
+     * Pieces in the book's range that weren't in it and went to the fallback
+     */
+    public long getBookMisses() {
+        return bookMisses;
+    }
+
+    @Override
+    public Placement choose(GameState state) {
+        if (state.getPiecesPlaced() >= book.getPieces()) {
+            return fallback.choose(state);
+        }
+        int move = book.lookup(Zobrist.hashState(state, book.getQueueLength()));
+        Placement placement = (move == OpeningBook.NOT_FOUND) ? null : moveGenerator.findPlacement(state,
+                OpeningBook.isMoveHold(move), OpeningBook.getMoveX(move), OpeningBook.getMoveY(move),
+                OpeningBook.getMoveRotation(move));
+        if (placement == null) {
+            bookMisses++;
+            return fallback.choose(state);
+        }
+        bookHits++;
+        return placement;
+    }
+
+    @Override
+    public int getQueueLength(GameState state) {
+        return Math.max(book.getQueueLength(), fallback.getQueueLength(state));
+    }
+}
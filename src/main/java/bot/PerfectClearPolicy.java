@@ -0,0 +1,73 @@
+package bot;
+
+import game.GameState;
+import game.RotationSystem;
+
+/**
+ * Practice bot that goes for perfect clears. It solves from the board whenever it has no solution or the game
+ * stopped following the one it had, then plays it a piece at a time with paths from the move generator. While
+ * there's no perfect clear to be had it plays the fallback policy's moves instead
+ */
+public class PerfectClearPolicy implements BotPolicy {
+    // Solves with the pieces the preview shows, what a player could plan with
+    public static final int PREVIEW_QUEUE_LENGTH = 0;
+
+    private final PerfectClearSolver solver;
+    private final BotPolicy fallback;
+    private final MoveGenerator moveGenerator;
+    private final int queueLength;
+    private final int maxLines;
+    private PerfectClearSolution solution;
+    private int step;
+    // Pieces placed when the solution's next step is due
+    private int stepPiece = -1;
+
+    /**
+     * A queue length of PREVIEW_QUEUE_LENGTH solves over the preview. A longer one peeks that many pieces ahead in
+     * the randomizer, past what the game shows, which finds far more 4 line clears but isn't a fair practice partner
+     */
+    public PerfectClearPolicy(PerfectClearSolver solver, BotPolicy fallback, RotationSystem rotationSystem,
+                              int queueLength, int maxLines) {
+        this.solver = solver;
+        this.fallback = fallback;
+        this.queueLength = queueLength;
+        this.maxLines = maxLines;
+        moveGenerator = new MoveGenerator(rotationSystem);
+    }
+
+    @Override
+    public Placement choose(GameState state) {
+        if (solution == null || step >= solution.getLength() || stepPiece != state.getPiecesPlaced()
+                || !isPlayable(state)) {
+            solution = solver.solve(state, getQueueLength(state), maxLines);
+            step = 0;
+        }
+        if (solution != null && isPlayable(state)) {
+            Placement placement = moveGenerator.findPlacement(state, solution.isHold(step), solution.getX(step),
+                    solution.getY(step), solution.getRotation(step));
+            if (placement != null) {
+                step++;
+                stepPiece = state.getPiecesPlaced() + 1;
+                return placement;
+            }
+        }
+        solution = null;
+        return fallback.choose(state);
+    }
+
+    @Override
+    public int getQueueLength(GameState state) {
+        return (queueLength == PREVIEW_QUEUE_LENGTH) ? state.getPreviewCount() : queueLength;
+    }
+
+    /**
+     * Checks the next step's piece is the one it'll get after holding or not
+     */
+    private boolean isPlayable(GameState state) {
+        if (!solution.isHold(step)) {
+            return solution.getPiece(step) == state.getGamePiece().getId();
+        }
+        int held = state.getHeldPiece();
+        return state.isAllowHold() && solution.getPiece(step) == ((held == GameState.NO_PIECE) ? state.getNextPiece(0) : held);
+    }
+}
@@ -0,0 +1,71 @@
+package bot;
+
+/**
+ * Placements that empty the board, in the order they're made. Rows are board rows at the time each piece is placed,
+ * so they already account for lines cleared by earlier pieces
+ */
+public class PerfectClearSolution {
+    private static final String PIECE_NAMES = "IJLOSTZ";
+
+    private final int[] pieces;
+    private final boolean[] holds;
+    private final int[] xs;
+    private final int[] ys;
+    private final int[] rotations;
+
+    PerfectClearSolution(int length) {
+        pieces = new int[length];
+        holds = new boolean[length];
+        xs = new int[length];
+        ys = new int[length];
+        rotations = new int[length];
+    }
+
+    void set(int step, int pieceId, boolean hold, int x, int y, int rotation) {
+        pieces[step] = pieceId;
+        holds[step] = hold;
+        xs[step] = x;
+        ys[step] = y;
+        rotations[step] = rotation;
+    }
+
+    public int getLength() {
+        return pieces.length;
+    }
+
+    public int getPiece(int step) {
+        return pieces[step];
+    }
+
+    /**
+     * Whether the step places the held piece, or the next one if nothing was held, and holds the current one
+     */
+    public boolean isHold(int step) {
+        return holds[step];
+    }
+
+    public int getX(int step) {
+        return xs[step];
+    }
+
+    public int getY(int step) {
+        return ys[step];
+    }
+
+    public int getRotation(int step) {
+        return rotations[step];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int step = 0; step < pieces.length; step++) {
+            if (step > 0) {
+                builder.append(", ");
+            }
+            builder.append(holds[step] ? "hold " : "").append(PIECE_NAMES.charAt(pieces[step]))
+                    .append(" r").append(rotations[step]).append(" ").append(xs[step]).append(",").append(ys[step]);
+        }
+        return builder.toString();
+    }
+}
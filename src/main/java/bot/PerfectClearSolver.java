@@ -0,0 +1,546 @@
+package bot;
+
+import game.GameState;
+import model.Tetrimino;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Searches for a sequence of placements from a known queue that empties the bottom lines of the board. The lines
+ * being solved fit in one long, a bit per cell, so placing a piece is an OR of a precomputed mask and a line clear
+ * is a shift. Placements are hard drops plus tucks slid in under overhangs, spins aren't tried.
+ * Branches are cut when the pieces left can't cover the empty cells or when the stack walls off a part of the board
+ * that isn't a multiple of four cells. Boards found to have no solution are kept in a
+ * transposition table keyed by the board and the pieces still to come, so they're skipped by other threads and by
+ * later solves with an overlapping queue.
+ * The first levels of the search are split into tasks on the pool when there is one, the rest is a depth first search
+ * on one thread. A solver can run one solve at a time, the table can be shared with other solvers
+ */
+public class PerfectClearSolver {
+    public static final int DEFAULT_MAX_LINES = 4;
+    public static final int DEFAULT_TABLE_MEGABYTES = 4;
+    private static final int DEAD = 1;
+    // Levels of the search split into tasks, after that a task searches on its own
+    private static final int SPLIT_DEPTH = 2;
+    // Two pieces to choose from, 4 rotations of up to 16 columns, with room for tucks
+    private static final int MAX_PLACEMENTS = 256;
+    private static final int I_PIECE = 0;
+    private static final int O_PIECE = 3;
+    private static final int S_PIECE = 4;
+    private static final int Z_PIECE = 6;
+
+    private final ForkJoinPool pool;
+    private final TranspositionTable table;
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    // Leaf tasks never fork or join, so a thread's scratch is only ever used by the one task it's running
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    public PerfectClearSolver() {
+        this(null, new TranspositionTable(DEFAULT_TABLE_MEGABYTES));
+    }
+
+    /**
+     * Searches on the pool when it isn't null
+     */
+    public PerfectClearSolver(ForkJoinPool pool, TranspositionTable table) {
+        this.pool = pool;
+        this.table = table;
+    }
+
+    /**
+     * Nodes searched in the last solve
+     */
+    public long getNodesSearched() {
+        return nodes.sum();
+    }
+
+    /**
+     * Boards in the last solve that were already known to have no solution
+     */
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * Solves for the game's board, active piece and hold. The queue length can be longer than the preview, pieces
+     * past it are peeked from the randomizer, which is fine for practice and analysis but isn't fair play
+     */
+    public PerfectClearSolution solve(GameState state, int queueLength, int maxLines) {
+        int height = state.getBoardHeight();
+        int[] rows = new int[height];
+        BoardOps.copyRows(state, rows);
+        int[] queue = new int[queueLength];
+        for (int i = 0; i < queueLength; i++) {
+            queue[i] = state.getNextPiece(i);
+        }
+        return solve(rows, state.getBoardWidth(), height, state.getGamePiece().getId(), state.getHeldPiece(),
+                state.isAllowHold(), queue, queueLength, maxLines);
+    }
+
+    /**
+     * Finds placements that clear the board without the stack going above maxLines, using the current piece, the
+     * held piece (GameState.NO_PIECE when there isn't one) and the queue. Can hold says if the current piece can
+     * still be swapped. Returns null when there's no solution with these pieces
+     */
+    public PerfectClearSolution solve(int[] rows, int width, int height, int current, int hold, boolean canHold,
+                                      int[] queue, int queueLength, int maxLines) {
+        if (width * maxLines > Long.SIZE || maxLines > height) {
+            throw new IllegalArgumentException("Can't solve " + maxLines + " lines of width " + width);
+        }
+        nodes.reset();
+        cacheHits.reset();
+
+        long field = 0;
+        int stackHeight = 0;
+        for (int y = 0; y < height; y++) {
+            if (rows[y] == 0) {
+                continue;
+            }
+            if (y >= maxLines) {
+                return null;
+            }
+            field |= (long) rows[y] << (y * width);
+            stackHeight = y + 1;
+        }
+
+        int[] pieces = new int[queueLength + 1];
+        pieces[0] = current;
+        System.arraycopy(queue, 0, pieces, 1, queueLength);
+        Search search = new Search(width, pieces, canHold);
+        int filled = Long.bitCount(field);
+        for (int lines = Math.max(stackHeight, 1); lines <= maxLines; lines++) {
+            int empty = lines * width - filled;
+            if (empty % Tetrimino.MINO_COUNT != 0 || empty / Tetrimino.MINO_COUNT > search.getAvailable(0, hold)) {
+                continue;
+            }
+            Task root = new Task(search, field, lines, 0, hold, new int[pieces.length + 1], 0);
+            if (pool != null) {
+                pool.invoke(root);
+            } else {
+                root.compute();
+            }
+            if (search.solution.get() != null) {
+                return search.solution.get();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * What a solve shares between its tasks: the pieces, the piece masks for the board width and the first solution
+     */
+    private class Search {
+        final int width;
+        final int rowMask;
+        final int[] pieces;
+        final boolean canHold;
+        // Piece cells with the box's bottom row on row 0, by piece, rotation and x
+        final long[][][] shapes = new long[Tetrimino.PIECE_COUNT][4][];
+        // Hash of the queue from each position on, so boards with the same pieces left share table entries
+        final long[] suffixHashes;
+        // Cells of the first n lines by n, and of each column over all the lines that fit in a long
+        final long[] lineMasks;
+        final long[] columnMasks;
+        final AtomicReference<PerfectClearSolution> solution = new AtomicReference<>();
+
+        Search(int width, int[] pieces, boolean canHold) {
+            this.width = width;
+            this.pieces = pieces;
+            this.canHold = canHold;
+            rowMask = BoardOps.getFullRowMask(width);
+            int maxLines = Long.SIZE / width;
+            lineMasks = new long[maxLines + 1];
+            columnMasks = new long[width];
+            for (int y = 0; y < maxLines; y++) {
+                lineMasks[y + 1] = lineMasks[y] | ((long) rowMask << (y * width));
+                for (int x = 0; x < width; x++) {
+                    columnMasks[x] |= 1L << (y * width + x);
+                }
+            }
+            for (int id = 0; id < Tetrimino.PIECE_COUNT; id++) {
+                for (int rotation = 0; rotation < 4; rotation++) {
+                    int minX = Tetrimino.getMinX(id, rotation);
+                    int maxX = Tetrimino.getMaxX(id, rotation);
+                    int minY = Tetrimino.getMinY(id, rotation);
+                    int maxY = Tetrimino.getMaxY(id, rotation);
+                    shapes[id][rotation] = new long[width];
+                    for (int x = -minX; x < width - maxX; x++) {
+                        long shape = 0;
+                        for (int row = minY; row <= maxY; row++) {
+                            long mask = Tetrimino.getRowMask(id, rotation, row);
+                            shape |= ((x >= 0) ? mask << x : mask >>> -x) << ((row - minY) * width);
+                        }
+                        shapes[id][rotation][x + minX] = shape;
+                    }
+                }
+            }
+            suffixHashes = new long[pieces.length + 1];
+            for (int i = 0; i < pieces.length; i++) {
+                long hash = (i == 0 && !canHold) ? Zobrist.hashQueuePosition(0) : 0;
+                for (int j = i; j < pieces.length; j++) {
+                    hash ^= Zobrist.hashQueuePiece(j - i, pieces[j]);
+                }
+                suffixHashes[i] = hash;
+            }
+        }
+
+        /**
+         * Most pieces that can still be placed
+         */
+        int getAvailable(int index, int hold) {
+            return pieces.length - index + ((hold == GameState.NO_PIECE) ? 0 : 1);
+        }
+
+        long getKey(long field, int lines, int index, int hold) {
+            // Only the first piece can be barred from holding, so that's in the first suffix hash alone
+            return mix(field ^ mix(lines * 64L + width)) ^ suffixHashes[index] ^ Zobrist.hashHold(hold);
+        }
+
+        boolean isFound() {
+            return solution.get() != null;
+        }
+    }
+
+    /**
+     * Arrays for every level of a depth first search, kept per thread and grown when a longer queue needs more
+     */
+    private static class Scratch {
+        long[][] placedFields = new long[0][];
+        int[][] placedMoves = new int[0][];
+        int[] dropBottoms = new int[0];
+
+        Scratch ensure(int levels, int width) {
+            if (placedFields.length < levels) {
+                placedFields = new long[levels][MAX_PLACEMENTS];
+                placedMoves = new int[levels][MAX_PLACEMENTS];
+            }
+            if (dropBottoms.length < width) {
+                dropBottoms = new int[width];
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Searches the subtree under one board. Above the split depth it forks a task per child, below it searches
+     * depth first with the thread's scratch arrays
+     */
+    private class Task extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Search search;
+        private final long field;
+        private final int lines;
+        private final int index;
+        private final int hold;
+        // Placements so far, packed by pack()
+        private final int[] path;
+        private final int depth;
+
+        private long[][] placedFields;
+        private int[][] placedMoves;
+        // Where the straight drop into each column lands, -1 when the column is blocked
+        private int[] dropBottoms;
+
+        Task(Search search, long field, int lines, int index, int hold, int[] path, int depth) {
+            this.search = search;
+            this.field = field;
+            this.lines = lines;
+            this.index = index;
+            this.hold = hold;
+            this.path = path;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            if (search.isFound()) {
+                return;
+            }
+            Scratch buffers = scratch.get().ensure(search.pieces.length + 1, search.width);
+            placedFields = buffers.placedFields;
+            placedMoves = buffers.placedMoves;
+            dropBottoms = buffers.dropBottoms;
+            if (pool == null || depth >= SPLIT_DEPTH) {
+                search(field, lines, index, hold, depth);
+                return;
+            }
+            // The expand below is done with the scratch before the joins, where this thread may run other tasks
+            long[] fields = new long[MAX_PLACEMENTS];
+            int[] moves = new int[MAX_PLACEMENTS];
+            int count = expand(field, lines, index, hold, fields, moves);
+            nodes.increment();
+            Task[] children = new Task[count];
+            int childCount = 0;
+            for (int i = 0; i < count; i++) {
+                int move = moves[i];
+                int[] childPath = path.clone();
+                childPath[depth] = move;
+                if (finish(fields[i], childPath, depth + 1)) {
+                    return;
+                }
+                int childLines = lines - getClearedLines(move);
+                int childIndex = getNextIndex(move, index, hold);
+                int childHold = getNextHold(move, index, hold);
+                if (isAlive(fields[i], childLines, childIndex, childHold)) {
+                    children[childCount++] = new Task(search, fields[i], childLines, childIndex, childHold, childPath,
+                            depth + 1);
+                }
+            }
+            for (int i = 0; i < childCount; i++) {
+                children[i].fork();
+            }
+            for (int i = childCount - 1; i >= 0; i--) {
+                children[i].join();
+            }
+        }
+
+        /**
+         * Depth first search below this task's board, returns true once this or another task finds a solution
+         */
+        private boolean search(long board, int boardLines, int boardIndex, int boardHold, int level) {
+            nodes.increment();
+            long[] fields = placedFields[level];
+            int[] moves = placedMoves[level];
+            int count = expand(board, boardLines, boardIndex, boardHold, fields, moves);
+            for (int i = 0; i < count; i++) {
+                if (search.isFound()) {
+                    return true;
+                }
+                int move = moves[i];
+                path[level] = move;
+                if (finish(fields[i], path, level + 1)) {
+                    return true;
+                }
+                int nextLines = boardLines - getClearedLines(move);
+                int nextIndex = getNextIndex(move, boardIndex, boardHold);
+                int nextHold = getNextHold(move, boardIndex, boardHold);
+                if (isAlive(fields[i], nextLines, nextIndex, nextHold)
+                        && search(fields[i], nextLines, nextIndex, nextHold, level + 1)) {
+                    return true;
+                }
+            }
+            // A search cut short by another task's solution didn't see everything, so it proves nothing
+            if (!search.isFound()) {
+                int empty = boardLines * search.width - Long.bitCount(board);
+                table.store(search.getKey(board, boardLines, boardIndex, boardHold), 0, empty / Tetrimino.MINO_COUNT, DEAD);
+            }
+            return search.isFound();
+        }
+
+        /**
+         * Publishes the path when the board is empty, returns true if it was
+         */
+        private boolean finish(long board, int[] moves, int length) {
+            if (board != 0) {
+                return false;
+            }
+            PerfectClearSolution solution = new PerfectClearSolution(length);
+            for (int step = 0; step < length; step++) {
+                int move = moves[step];
+                int id = getMovePiece(move);
+                int rotation = getMoveRotation(move);
+                solution.set(step, id, isMoveHold(move), getMoveX(move) - Tetrimino.getMinX(id, rotation),
+                        getMoveBottom(move) - Tetrimino.getMinY(id, rotation), rotation);
+            }
+            search.solution.compareAndSet(null, solution);
+            return true;
+        }
+
+        private boolean isAlive(long board, int boardLines, int boardIndex, int boardHold) {
+            int width = search.width;
+            int emptyCount = boardLines * width - Long.bitCount(board);
+            if (emptyCount / Tetrimino.MINO_COUNT > search.getAvailable(boardIndex, boardHold)) {
+                return false;
+            }
+
+            // Where no row has both cells on either side of a column boundary empty, no piece can cross it, and placing
+            // and clearing never opens it again. Every walled off part then has to take a whole number of pieces
+            long empty = ~board & search.lineMasks[boardLines];
+            int open = 0;
+            for (int y = 0; y < boardLines; y++) {
+                int row = (int) (empty >>> (y * width)) & search.rowMask;
+                open |= row & (row >>> 1);
+            }
+            int cells = 0;
+            for (int x = 0; x < width; x++) {
+                cells += Long.bitCount(empty & search.columnMasks[x]);
+                if ((open & (1 << x)) == 0) {
+                    if (cells % Tetrimino.MINO_COUNT != 0) {
+                        return false;
+                    }
+                    cells = 0;
+                }
+            }
+
+            if (TranspositionTable.getFlags(table.probe(search.getKey(board, boardLines, boardIndex, boardHold))) == DEAD) {
+                cacheHits.increment();
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Fills in the boards after every placement of the pieces that can go next, returns how many there are
+         */
+        private int expand(long board, int boardLines, int boardIndex, int boardHold, long[] fields, int[] moves) {
+            int[] pieces = search.pieces;
+            int count = 0;
+            if (boardIndex < pieces.length) {
+                count = addPlacements(board, boardLines, pieces[boardIndex], false, fields, moves, count);
+            }
+            if (boardIndex == 0 && !search.canHold) {
+                return count;
+            }
+            if (boardHold != GameState.NO_PIECE) {
+                if (boardIndex < pieces.length && boardHold != pieces[boardIndex]) {
+                    count = addPlacements(board, boardLines, boardHold, true, fields, moves, count);
+                }
+            } else if (boardIndex + 1 < pieces.length) {
+                count = addPlacements(board, boardLines, pieces[boardIndex + 1], true, fields, moves, count);
+            }
+            return count;
+        }
+
+        /**
+         * Adds the hard drop into every column and the tucks sideways from where those land
+         */
+        private int addPlacements(long board, int boardLines, int id, boolean hold, long[] fields, int[] moves, int count) {
+            int width = search.width;
+            int first = count;
+            // Rotations past these are the same cells as an earlier one
+            int rotations = (id == O_PIECE) ? 1 : (id == I_PIECE || id == S_PIECE || id == Z_PIECE) ? 2 : 4;
+            for (int rotation = 0; rotation < rotations; rotation++) {
+                long[] shapes = search.shapes[id][rotation];
+                int pieceHeight = Tetrimino.getMaxY(id, rotation) - Tetrimino.getMinY(id, rotation) + 1;
+                int columns = width - (Tetrimino.getMaxX(id, rotation) - Tetrimino.getMinX(id, rotation));
+                int top = boardLines - pieceHeight;
+                if (top < 0) {
+                    continue;
+                }
+                int drops = count;
+                for (int x = 0; x < columns; x++) {
+                    long shape = shapes[x];
+                    dropBottoms[x] = -1;
+                    // The drop comes in from above the lines being solved, cells shifted past the long are above too
+                    int bottom = boardLines;
+                    while (bottom > 0 && (board & (shape << ((bottom - 1) * width))) == 0) {
+                        bottom--;
+                    }
+                    if (bottom > top) {
+                        continue;
+                    }
+                    dropBottoms[x] = bottom;
+                    count = add(board, boardLines, id, hold, rotation, x, bottom, shape, fields, moves, count);
+                }
+                // Slide each drop along the stack until it falls or hits something
+                int dropEnd = count;
+                for (int drop = drops; drop < dropEnd; drop++) {
+                    int x = getMoveX(moves[drop]);
+                    int bottom = getMoveBottom(moves[drop]);
+                    for (int direction = -1; direction <= 1; direction += 2) {
+                        for (int tuckX = x + direction; tuckX >= 0 && tuckX < columns; tuckX += direction) {
+                            long shape = shapes[tuckX];
+                            if ((board & (shape << (bottom * width))) != 0) {
+                                break;
+                            }
+                            int tuckBottom = bottom;
+                            while (tuckBottom > 0 && (board & (shape << ((tuckBottom - 1) * width))) == 0) {
+                                tuckBottom--;
+                            }
+                            if (tuckBottom != dropBottoms[tuckX]
+                                    && !isPlaced(moves, first, count, hold, rotation, tuckX, tuckBottom)) {
+                                count = add(board, boardLines, id, hold, rotation, tuckX, tuckBottom, shape, fields, moves,
+                                        count);
+                            }
+                            if (tuckBottom != bottom) {
+                                break;
+                            }
+                        }
+                    }
+                }
+            }
+            return count;
+        }
+
+        private boolean isPlaced(int[] moves, int from, int to, boolean hold, int rotation, int x, int bottom) {
+            for (int i = from; i < to; i++) {
+                int move = moves[i];
+                if (getMoveX(move) == x && getMoveBottom(move) == bottom && getMoveRotation(move) == rotation
+                        && isMoveHold(move) == hold) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int add(long board, int boardLines, int id, boolean hold, int rotation, int x, int bottom, long shape,
+                        long[] fields, int[] moves, int count) {
+            int width = search.width;
+            long placed = board | (shape << (bottom * width));
+            int cleared = 0;
+            int rowMask = search.rowMask;
+            for (int y = boardLines - 1; y >= 0; y--) {
+                if ((int) (placed >>> (y * width) & rowMask) == rowMask) {
+                    long below = (y == 0) ? 0 : placed & (-1L >>> (Long.SIZE - y * width));
+                    long above = ((y + 1) * width >= Long.SIZE) ? 0 : placed >>> ((y + 1) * width) << (y * width);
+                    placed = below | above;
+                    cleared++;
+                }
+            }
+            fields[count] = placed;
+            moves[count] = pack(id, hold, rotation, x, bottom, cleared);
+            return count + 1;
+        }
+
+        private int getNextIndex(int move, int boardIndex, int boardHold) {
+            return (isMoveHold(move) && boardHold == GameState.NO_PIECE) ? boardIndex + 2 : boardIndex + 1;
+        }
+
+        private int getNextHold(int move, int boardIndex, int boardHold) {
+            return isMoveHold(move) ? search.pieces[boardIndex] : boardHold;
+        }
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        return value ^ (value >>> 33);
+    }
+
+    // Moves are packed as cleared lines << 20 | hold << 19 | piece << 16 | rotation << 12 | x << 6 | bottom, where x
+    // is the column of the piece's leftmost cell and bottom the row of its lowest
+    private static int pack(int id, boolean hold, int rotation, int x, int bottom, int cleared) {
+        return (cleared << 20) | ((hold ? 1 : 0) << 19) | (id << 16) | (rotation << 12) | (x << 6) | bottom;
+    }
+
+    private static int getClearedLines(int move) {
+        return move >>> 20;
+    }
+
+    private static boolean isMoveHold(int move) {
+        return (move & (1 << 19)) != 0;
+    }
+
+    private static int getMovePiece(int move) {
+        return (move >> 16) & 0x7;
+    }
+
+    private static int getMoveRotation(int move) {
+        return (move >> 12) & 0x3;
+    }
+
+    private static int getMoveX(int move) {
+        return (move >> 6) & 0x3F;
+    }
+
+    private static int getMoveBottom(int move) {
+        return move & 0x3F;
+    }
+}
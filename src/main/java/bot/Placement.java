@@ -0,0 +1,52 @@
+package bot;
+
+/**
+ * Where a bot wants the current piece to go: whether to hold first, then the rotation and column to hard drop at.
+ * Placements from a move generator also carry the inputs that reach them, for tucks and spins a straight drop
+ * can't get to
+ */
+public class Placement {
+    private final boolean hold;
+    private final int rotation;
+    private final int x;
+    private final int[] inputs;
+
+    public Placement(boolean hold, int rotation, int x) {
+        this(hold, rotation, x, null);
+    }
+
+    /**
+     * The inputs are InputEvent actions played after the hold, soft drop means hold it until the piece lands
+     */
+    public Placement(boolean hold, int rotation, int x, int[] inputs) {
+        this.hold = hold;
+        this.rotation = rotation;
+        this.x = x;
+        this.inputs = inputs;
+    }
+
+    public boolean isHold() {
+        return hold;
+    }
+
+    public int getRotation() {
+        return rotation;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getInputCount() {
+        return (inputs == null) ? 0 : inputs.length;
+    }
+
+    public int getInput(int index) {
+        return inputs[index];
+    }
+
+    @Override
+    public String toString() {
+        return (hold ? "hold, " : "") + "rotation " + rotation + ", x " + x;
+    }
+}
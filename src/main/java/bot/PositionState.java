@@ -0,0 +1,139 @@
+package bot;
+
+import game.GameState;
+import game.ManualClock;
+import game.PieceRandomizer;
+import model.Tetrimino;
+
+/**
+ * A game state that positions from outside a running game are loaded into so policies can be asked about them: a
+ * board, the piece at its spawn, hold and the queue. Also works out where a policy's placement lands
+ */
+class PositionState {
+    // Returned by getLandingY when the placement can't be reached
+    static final int NO_LANDING = Integer.MIN_VALUE;
+
+    private final PreviewRandomizer randomizer = new PreviewRandomizer();
+    private final GameState state = new GameState(new ManualClock(), randomizer);
+    private final int width = state.getBoardWidth();
+    private final int height = state.getBoardHeight();
+    private final int fullRowMask = BoardOps.getFullRowMask(width);
+    private int[] rows = new int[0];
+    private int current;
+    private int hold;
+
+    GameState getState() {
+        return state;
+    }
+
+    /**
+     * Sets the state up with the rows, the current piece at its spawn, the held piece and the queue, which is all
+     * the policy gets to see of what's coming
+     */
+    void load(int[] rows, int current, int hold, boolean allowHold, int[] queue) {
+        this.rows = rows;
+        this.current = current;
+        this.hold = hold;
+        state.setMode(GameState.Mode.GAME);
+        for (int y = 0; y < height; y++) {
+            for (int row = rows[y]; row != 0; row &= row - 1) {
+                state.setTile(Integer.numberOfTrailingZeros(row), y, Tetrimino.getTileType(current));
+            }
+        }
+        Tetrimino piece = new Tetrimino(current);
+        piece.setPosition(state.getSpawnX(current), state.getSpawnY(current));
+        state.setGamePiece(piece);
+        state.setHeldPiece(hold);
+        state.setAllowHold(allowHold);
+        randomizer.queue = queue;
+    }
+
+    /**
+     * Copies a running game's board, active piece where it is, hold, placed count and the first queueLength pieces
+     * of its queue. Called with the game locked, the copy can then be searched without holding it
+     */
+    void load(GameState source, int queueLength) {
+        int[] sourceRows = new int[height];
+        BoardOps.copyRows(source, sourceRows);
+        int[] queue = new int[queueLength];
+        for (int i = 0; i < queueLength; i++) {
+            queue[i] = source.getNextPiece(i);
+        }
+        load(sourceRows, source.getGamePiece().getId(), source.getHeldPiece(), source.isAllowHold(), queue);
+        state.getGamePiece().setState(source.getGamePiece().getState());
+        state.setPiecesPlaced(source.getPiecesPlaced());
+    }
+
+    /**
+     * The piece the placement puts down, the held or next one when it holds first
+     */
+    int getPieceId(Placement placement) {
+        if (!placement.isHold()) {
+            return current;
+        }
+        return (hold == GameState.NO_PIECE) ? randomizer.queue[0] : hold;
+    }
+
+    /**
+     * Row the placement's piece box comes to rest on in the loaded position, or NO_LANDING. Placements without
+     * inputs are straight drops from the spawn, the rest are matched against the move generator's paths
+     */
+    int getLandingY(Placement placement, MoveGenerator moveGenerator) {
+        int pieceId = getPieceId(placement);
+        int spawnY = state.getSpawnY(pieceId);
+        if (placement.getInputCount() == 0) {
+            // A straight drop, rotated and shifted at the top
+            if (!BoardOps.fits(rows, height, fullRowMask, pieceId, placement.getX(), spawnY, placement.getRotation())) {
+                return NO_LANDING;
+            }
+            return BoardOps.dropY(rows, height, fullRowMask, pieceId, placement.getX(), spawnY, placement.getRotation());
+        }
+        int count = moveGenerator.generate(rows, width, height, pieceId, state.getSpawnX(pieceId), spawnY, 0);
+        int[] path = new int[placement.getInputCount()];
+        for (int i = 0; i < count; i++) {
+            if (moveGenerator.getRotation(i) != placement.getRotation() || moveGenerator.getX(i) != placement.getX()
+                    || moveGenerator.getPathLength(i) != path.length) {
+                continue;
+            }
+            moveGenerator.getPath(i, path);
+            boolean same = true;
+            for (int step = 0; step < path.length && same; step++) {
+                same = path[step] == placement.getInput(step);
+            }
+            if (same) {
+                return moveGenerator.getY(i);
+            }
+        }
+        return NO_LANDING;
+    }
+
+    /**
+     * Deals the loaded queue, positions are only searched so nothing past it is known
+     */
+    private static class PreviewRandomizer implements PieceRandomizer {
+        int[] queue = new int[0];
+
+        @Override
+        public int next() {
+            throw new UnsupportedOperationException("Positions are only searched, never played");
+        }
+
+        @Override
+        public int peek(int ahead) {
+            if (ahead >= queue.length) {
+                throw new IllegalStateException("Only the queue is known for a loaded position");
+            }
+            return queue[ahead];
+        }
+
+        @Override
+        public long getSeed() {
+            return 0;
+        }
+
+        @Override
+        public String getName() {
+            return "Preview";
+        }
+    }
+}
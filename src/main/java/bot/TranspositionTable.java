@@ -0,0 +1,122 @@
+package bot;
+
+/**
+ * Fixed size hash table from 64 bit state hashes to a packed 32 bit value, a depth and flags, in two primitive
+ * arrays so its memory is set once when it's created. Each hash can go in one of a few slots after its home slot,
+ * a full bucket replaces its shallowest entry, or one from an older search, so deep results that took the most work
+ * are the ones kept. Threads share a table without locks: the key is stored XORed with the data and a probe only
+ * hits when both still match, so an entry torn by a concurrent write reads as a miss
+ */
+public class TranspositionTable {
+    public static final long MISS = 0;
+    public static final int MAX_DEPTH = 0xFF;
+    public static final int MAX_FLAGS = 0x3FFF;
+    private static final int BUCKET_SIZE = 4;
+    private static final int BYTES_PER_ENTRY = 16;
+    private static final int DEPTH_SHIFT = 32;
+    private static final int GENERATION_SHIFT = 40;
+    private static final int FLAGS_SHIFT = 48;
+    private static final long VALID_BIT = 1L << 62;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+    private volatile int generation;
+
+    /**
+     * Creates a table using at most the given number of megabytes, rounded down to a power of two entries
+     */
+    public TranspositionTable(int megabytes) {
+        long entries = Math.max((long) megabytes << 20, BYTES_PER_ENTRY * BUCKET_SIZE) / BYTES_PER_ENTRY;
+        int capacity = Integer.highestOneBit((int) Math.min(entries, 1 << 30));
+        keys = new long[capacity];
+        data = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    public int getCapacity() {
+        return keys.length;
+    }
+
+    /**
+     * Marks entries stored so far as older, they're replaced first but can still be hit
+     */
+    public void newSearch() {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    public void clear() {
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = 0;
+            data[i] = 0;
+        }
+    }
+
+    /**
+     * Returns the packed entry for the hash, or MISS
+     */
+    public long probe(long hash) {
+        int home = (int) hash & mask;
+        for (int i = 0; i < BUCKET_SIZE; i++) {
+            int slot = (home + i) & mask;
+            long entry = data[slot];
+            if (entry != 0 && (keys[slot] ^ entry) == hash) {
+                return entry;
+            }
+        }
+        return MISS;
+    }
+
+    /**
+     * Stores a value for the hash. An existing entry for the same hash is only replaced by one at least as deep.
+     * Flags are masked to MAX_FLAGS, higher bits would run into the valid bit
+     */
+    public void store(long hash, int value, int depth, int flags) {
+        int currentGeneration = generation;
+        long entry = VALID_BIT | ((long) (flags & MAX_FLAGS) << FLAGS_SHIFT)
+                | ((long) currentGeneration << GENERATION_SHIFT)
+                | ((long) Math.min(depth, MAX_DEPTH) << DEPTH_SHIFT) | (value & 0xFFFFFFFFL);
+        int home = (int) hash & mask;
+        int victim = home;
+        int victimScore = Integer.MAX_VALUE;
+        for (int i = 0; i < BUCKET_SIZE; i++) {
+            int slot = (home + i) & mask;
+            long existing = data[slot];
+            if (existing == 0) {
+                victim = slot;
+                break;
+            }
+            if ((keys[slot] ^ existing) == hash) {
+                if (depth < getDepth(existing) && getGeneration(existing) == currentGeneration) {
+                    return;
+                }
+                victim = slot;
+                break;
+            }
+            // Entries from older searches go first, then the shallowest
+            int score = getDepth(existing) + ((getGeneration(existing) == currentGeneration) ? MAX_DEPTH + 1 : 0);
+            if (score < victimScore) {
+                victimScore = score;
+                victim = slot;
+            }
+        }
+        keys[victim] = hash ^ entry;
+        data[victim] = entry;
+    }
+
+    public static int getValue(long entry) {
+        return (int) entry;
+    }
+
+    public static int getDepth(long entry) {
+        return (int) (entry >>> DEPTH_SHIFT) & MAX_DEPTH;
+    }
+
+    public static int getFlags(long entry) {
+        return (int) (entry >>> FLAGS_SHIFT) & MAX_FLAGS;
+    }
+
+    private static int getGeneration(long entry) {
+        return (int) (entry >>> GENERATION_SHIFT) & 0xFF;
+    }
+}
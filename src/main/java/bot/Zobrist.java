@@ -0,0 +1,123 @@
+package bot;
+
+import game.GameState;
+import model.Tetrimino;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zobrist keys for search states. A state's hash is the XOR of a key per filled cell, one for the current piece,
+ * one for the held piece and one per queued piece by position, so placing a piece only XORs in its four cells. The
+ * keys come from a fixed seed, hashes are the same in every run and can be stored in files
+ */
+public class Zobrist {
+    public static final int MAX_WIDTH = Integer.SIZE;
+    public static final int MAX_HEIGHT = 64;
+    public static final int MAX_QUEUE = 32;
+    private static final long SEED = 0x5A0B815754E7L;
+
+    private static final long[] cellKeys = new long[MAX_HEIGHT * MAX_WIDTH];
+    private static final long[] pieceKeys = new long[Tetrimino.PIECE_COUNT];
+    // Last one is for an empty hold
+    private static final long[] holdKeys = new long[Tetrimino.PIECE_COUNT + 1];
+    private static final long[] queueKeys = new long[MAX_QUEUE * Tetrimino.PIECE_COUNT];
+    private static final long[] queuePositionKeys = new long[MAX_QUEUE];
+
+    static {
+        SplittableRandom random = new SplittableRandom(SEED);
+        fill(random, cellKeys);
+        fill(random, pieceKeys);
+        fill(random, holdKeys);
+        fill(random, queueKeys);
+        fill(random, queuePositionKeys);
+    }
+
+    private Zobrist() {
+    }
+
+    private static void fill(SplittableRandom random, long[] keys) {
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * Hash of the filled cells of a board stored at an offset, empty rows hash to 0 so only the stack is walked
+     */
+    public static long hashRows(int[] rows, int offset, int height) {
+        long hash = 0;
+        for (int y = 0; y < height; y++) {
+            int row = rows[offset + y];
+            if (row != 0) {
+                hash ^= hashRow(y, row);
+            }
+        }
+        return hash;
+    }
+
+    public static long hashRow(int y, int mask) {
+        long hash = 0;
+        int base = y * MAX_WIDTH;
+        while (mask != 0) {
+            hash ^= cellKeys[base + Integer.numberOfTrailingZeros(mask)];
+            mask &= mask - 1;
+        }
+        return hash;
+    }
+
+    /**
+     * What a piece's cells add to the board hash, XOR it in when the piece is placed without clearing lines
+     */
+    public static long hashCells(int pieceId, int x, int y, int rotation) {
+        long hash = 0;
+        int maxRow = Tetrimino.getMaxY(pieceId, rotation);
+        for (int row = Tetrimino.getMinY(pieceId, rotation); row <= maxRow; row++) {
+            int mask = Tetrimino.getRowMask(pieceId, rotation, row);
+            hash ^= hashRow(y + row, (x >= 0) ? mask << x : mask >>> -x);
+        }
+        return hash;
+    }
+
+    public static long hashPiece(int pieceId) {
+        return pieceKeys[pieceId];
+    }
+
+    /**
+     * Key for the held piece, GameState.NO_PIECE for an empty hold
+     */
+    public static long hashHold(int pieceId) {
+        return holdKeys[(pieceId == GameState.NO_PIECE) ? Tetrimino.PIECE_COUNT : pieceId];
+    }
+
+    /**
+     * Key for a piece at a position of the queue, for hashes that have to tell queues apart
+     */
+    public static long hashQueuePiece(int position, int pieceId) {
+        return queueKeys[(position % MAX_QUEUE) * Tetrimino.PIECE_COUNT + pieceId];
+    }
+
+    /**
+     * Key for how far into a known queue a search is, when the queue itself is the same for every state
+     */
+    public static long hashQueuePosition(int position) {
+        return queuePositionKeys[position % MAX_QUEUE];
+    }
+
+    /**
+     * Hash of a game's board, current piece, hold and the given number of queued pieces
+     */
+    public static long hashState(GameState state, int queueLength) {
+        long hash = 0;
+        for (int y = 0; y < state.getBoardHeight(); y++) {
+            int row = state.getRow(y);
+            if (row != 0) {
+                hash ^= hashRow(y, row);
+            }
+        }
+        hash ^= hashPiece(state.getGamePiece().getId()) ^ hashHold(state.getHeldPiece());
+        for (int i = 0; i < queueLength; i++) {
+            hash ^= hashQueuePiece(i, state.getNextPiece(i));
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,19 @@
+package game;
+
+/**
+ * Arika style kicks, the piece only tries moving one column right and then one column left, the I and O pieces
+ * never kick. Pieces keep their SRS rotation states, only the kicks change
+ */
+public class ArsRotationSystem extends RotationSystem {
+    public ArsRotationSystem() {
+        for (int from = 0; from < 4; from++) {
+            setKicks(CLASS_JLSTZ, from, (from + 1) % 4, 0, 0, 1, 0, -1, 0);
+            setKicks(CLASS_JLSTZ, from, (from + 3) % 4, 0, 0, 1, 0, -1, 0);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "ARS";
+    }
+}
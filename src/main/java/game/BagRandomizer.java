@@ -0,0 +1,42 @@
+package game;
+
+import model.Tetrimino;
+
+/**
+ * Deals every piece a fixed number of times per bag, shuffled in place with Fisher-Yates
+ */
+public class BagRandomizer extends QueuedPieceRandomizer {
+    public static final String NAME_7_BAG = "7-bag";
+    public static final String NAME_14_BAG = "14-bag";
+
+    private final int[] bag;
+    private int bagIndex;
+
+    public BagRandomizer(long seed, int copies) {
+        super(seed);
+        bag = new int[Tetrimino.PIECE_COUNT * copies];
+        for (int i = 0; i < bag.length; i++) {
+            bag[i] = i % Tetrimino.PIECE_COUNT;
+        }
+        bagIndex = bag.length;
+    }
+
+    @Override
+    protected int generate() {
+        if (bagIndex == bag.length) {
+            for (int i = bag.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = bag[i];
+                bag[i] = bag[j];
+                bag[j] = swap;
+            }
+            bagIndex = 0;
+        }
+        return bag[bagIndex++];
+    }
+
+    @Override
+    public String getName() {
+        return (bag.length == Tetrimino.PIECE_COUNT * 2) ? NAME_14_BAG : NAME_7_BAG;
+    }
+}
@@ -0,0 +1,11 @@
+package game;
+
+/**
+ * Plays a board by sending input to its engine, stepped by whichever thread runs the board
+ */
+public interface BoardDriver {
+    /**
+     * Sends the input that's due by the state's clock, returns the clock time the next input is due at
+     */
+    double stepIfDue(GameState state);
+}
@@ -0,0 +1,8 @@
+package game;
+
+/**
+ * Source of time for the game rules, in seconds like GLFW.glfwGetTime()
+ */
+public interface Clock {
+    double getTime();
+}
@@ -1,30 +1,47 @@
 package game;
 
-import org.lwjgl.glfw.GLFW;
-import org.lwjgl.glfw.GLFWGamepadState;
-
-import java.nio.FloatBuffer;
-
 import static org.lwjgl.glfw.GLFW.*;
 
+/**
+ * Turns keyboard and gamepad input into timestamped events for the engine. Everything here runs on the main thread
+ * together with GamepadSampler, the engine only reads the event queue and the camera axes
+ */
 public class Controls {
-    public Controls() {
+    private static final int QUEUE_CAPACITY = 256;
+
+    private final Clock clock;
+    private final InputEventQueue inputQueue;
+    private Runnable inputListener;
+
+    public volatile float cameraX = 0.0f;
+    public volatile float cameraY = 0.0f;
+    public volatile boolean fullscreenToggle = false;
+
+    public Controls(Clock clock) {
+        this.clock = clock;
+        inputQueue = new InputEventQueue(QUEUE_CAPACITY);
     }
 
-    public boolean left = false;
-    public boolean right = false;
-    public boolean leftTap = false;
-    public boolean rightTap = false;
-    public boolean up = false;
-    public boolean down = false;
-    public boolean turnRight = false;
-    public boolean turnLeft = false;
-    public boolean holdPiece = false;
-    public float cameraX = 0.0f;
-    public float cameraY = 0.0f;
-    public boolean fullscreenToggle = false;
+    public InputEventQueue getInputQueue() {
+        return inputQueue;
+    }
+
+    /**
+     * Called after every queued event, the engine uses it to wake up
+     */
+    public void setInputListener(Runnable inputListener) {
+        this.inputListener = inputListener;
+    }
 
-    private GLFWGamepadState lastGamepadState = null;
+    /**
+     * Queues an InputEvent action stamped with the current clock time in nanoseconds
+     */
+    public void sendInput(int action, boolean pressed) {
+        inputQueue.offer(InputEvent.pack(action, pressed), (long) (clock.getTime() * 1e9));
+        if (inputListener != null) {
+            inputListener.run();
+        }
+    }
 
     public void getKeyInput(int key, int action) {
         boolean value = (action == GLFW_PRESS);
@@ -34,34 +51,32 @@ public class Controls {
         switch (key) {
             case GLFW_KEY_A:
             case GLFW_KEY_LEFT:
-                left = value;
-                leftTap = leftTap || left;
+                sendInput(InputEvent.MOVE_LEFT, value);
                 break;
             case GLFW_KEY_D:
             case GLFW_KEY_RIGHT:
-                right = value;
-                rightTap = rightTap || right;
+                sendInput(InputEvent.MOVE_RIGHT, value);
                 break;
             case GLFW_KEY_W:
             case GLFW_KEY_UP:
-                up = value;
+                sendInput(InputEvent.HARD_DROP, value);
                 break;
             case GLFW_KEY_S:
             case GLFW_KEY_DOWN:
-                down = value;
+                sendInput(InputEvent.SOFT_DROP, value);
                 break;
             case GLFW_KEY_E:
             case GLFW_KEY_SPACE:
             case GLFW_KEY_X:
-                turnRight = value || turnRight;
+                sendInput(InputEvent.ROTATE_CW, value);
                 break;
             case GLFW_KEY_Q:
             case GLFW_KEY_Z:
-                turnLeft = value || turnLeft;
+                sendInput(InputEvent.ROTATE_CCW, value);
                 break;
             case GLFW_KEY_R:
             case GLFW_KEY_C:
-                holdPiece = value || holdPiece;
+                sendInput(InputEvent.HOLD, value);
                 break;
             case GLFW_KEY_F:
             case GLFW_KEY_F11:
@@ -69,68 +84,4 @@ public class Controls {
                 break;
         }
     }
-
-    public void readGamepadInputs(int jid) {
-        if (!glfwJoystickIsGamepad(jid)) {
-            return;
-        }
-        GLFWGamepadState state = GLFWGamepadState.malloc();
-        if (!glfwGetGamepadState(jid, state)) {
-            return;
-        }
-        if (lastGamepadState == null) {
-            lastGamepadState = state;
-            return;
-        }
-        if (isGamepadButtonUpdated(state, GLFW_GAMEPAD_BUTTON_A)) {
-            turnLeft = isGamepadButtonPressed(state, GLFW_GAMEPAD_BUTTON_A);
-        }
-        if (isGamepadButtonUpdated(state, GLFW_GAMEPAD_BUTTON_B)) {
-            turnRight = isGamepadButtonPressed(state, GLFW_GAMEPAD_BUTTON_B);
-        }
-
-        if (isGamepadButtonUpdated(state, GLFW_GAMEPAD_BUTTON_DPAD_LEFT)) {
-            left = isGamepadButtonPressed(state, GLFW_GAMEPAD_BUTTON_DPAD_LEFT);
-            leftTap = leftTap || left;
-        }
-        if (isGamepadButtonUpdated(state, GLFW_GAMEPAD_BUTTON_DPAD_RIGHT)) {
-            right = isGamepadButtonPressed(state, GLFW_GAMEPAD_BUTTON_DPAD_RIGHT);
-            rightTap = rightTap || right;
-        }
-        if (isGamepadButtonUpdated(state, GLFW_GAMEPAD_BUTTON_DPAD_UP)) {
-            up = isGamepadButtonPressed(state, GLFW_GAMEPAD_BUTTON_DPAD_UP);
-        }
-        if (isGamepadButtonUpdated(state, GLFW_GAMEPAD_BUTTON_DPAD_DOWN)) {
-            down = isGamepadButtonPressed(state, GLFW_GAMEPAD_BUTTON_DPAD_DOWN);
-        }
-
-        if (isGamepadButtonUpdated(state, GLFW_GAMEPAD_BUTTON_Y)) {
-            holdPiece = isGamepadButtonPressed(state, GLFW_GAMEPAD_BUTTON_Y);
-        }
-        if (isGamepadButtonUpdated(state, GLFW_GAMEPAD_BUTTON_LEFT_BUMPER)) {
-            holdPiece = isGamepadButtonPressed(state, GLFW_GAMEPAD_BUTTON_LEFT_BUMPER);
-        }
-        if (isGamepadButtonUpdated(state, GLFW_GAMEPAD_BUTTON_RIGHT_BUMPER)) {
-            holdPiece = isGamepadButtonPressed(state, GLFW_GAMEPAD_BUTTON_RIGHT_BUMPER);
-        }
-
-        if (isGamepadAxisUpdated(state, GLFW_GAMEPAD_AXIS_RIGHT_X) || isGamepadAxisUpdated(state, GLFW_GAMEPAD_AXIS_RIGHT_Y)) {
-            cameraX = state.axes(GLFW_GAMEPAD_AXIS_RIGHT_X);
-            cameraY = -state.axes(GLFW_GAMEPAD_AXIS_RIGHT_Y);
-        }
-
-        lastGamepadState.close();
-        lastGamepadState = state;
-    }
-
-    private boolean isGamepadButtonUpdated(GLFWGamepadState state, int button) {
-        return state.buttons(button) != lastGamepadState.buttons(button);
-    }
-    private boolean isGamepadButtonPressed(GLFWGamepadState state, int button) {
-        return state.buttons(button) == GLFW_PRESS;
-    }
-
-    private boolean isGamepadAxisUpdated(GLFWGamepadState state, int axis) {
-        return state.axes(axis) != lastGamepadState.axes(axis);
-    }
 }
@@ -0,0 +1,161 @@
+package game;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntConsumer;
+
+/**
+ * Drives several boards from one thread. Boards are kept in a heap by deadline, an engine only gets ticked when its
+ * deadline has passed or it has input waiting, and the thread parks until the earliest deadline of all of them.
+ * Boards are referred to by their index in the group
+ */
+public class EngineGroup implements Runnable {
+    private static final double MAX_PARK_TIME = 0.1;
+
+    private final Clock clock;
+    private final GameEngine[] engines;
+    private final BoardDriver[] drivers;
+    private final double[] deadlines;
+    // Boards ordered by deadline as a binary heap, with each board's position in it
+    private final int[] heap;
+    private final int[] heapPositions;
+    // Bit per board with input waiting, set by whatever thread sends the input
+    private final AtomicLongArray ready;
+    private final boolean[] over;
+    private IntConsumer gameOverListener;
+    private volatile Thread thread;
+
+    public EngineGroup(Clock clock, GameEngine... engines) {
+        this.clock = clock;
+        this.engines = engines.clone();
+        int count = engines.length;
+        drivers = new BoardDriver[count];
+        deadlines = new double[count];
+        heap = new int[count];
+        heapPositions = new int[count];
+        ready = new AtomicLongArray((count + Long.SIZE - 1) / Long.SIZE);
+        over = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            int board = i;
+            deadlines[i] = Double.NEGATIVE_INFINITY;
+            heap[i] = i;
+            heapPositions[i] = i;
+            engines[i].getControls().setInputListener(() -> signal(board));
+        }
+    }
+
+    /**
+     * Has the board played by the driver, stepped on the group's thread. Must be set before the group runs
+     */
+    public void setDriver(int index, BoardDriver driver) {
+        drivers[index] = driver;
+    }
+
+    /**
+     * Called on the group's thread with the board's index when its game ends, it isn't ticked after that. Must be
+     * set before the group runs
+     */
+    public void setGameOverListener(IntConsumer gameOverListener) {
+        this.gameOverListener = gameOverListener;
+    }
+
+    private void signal(int index) {
+        int word = index / Long.SIZE;
+        long bit = 1L << index;
+        long current;
+        do {
+            current = ready.get(word);
+        } while ((current & bit) == 0 && !ready.compareAndSet(word, current, current | bit));
+        Thread groupThread = thread;
+        if (groupThread != null) {
+            LockSupport.unpark(groupThread);
+        }
+    }
+
+    @Override
+    public void run() {
+        thread = Thread.currentThread();
+        if (heap.length > 0) {
+            while (!thread.isInterrupted()) {
+                for (int word = 0; word < ready.length(); word++) {
+                    for (long bits = ready.getAndSet(word, 0); bits != 0; bits &= bits - 1) {
+                        tick(word * Long.SIZE + Long.numberOfTrailingZeros(bits));
+                    }
+                }
+                double time = clock.getTime();
+                while (deadlines[heap[0]] <= time) {
+                    tick(heap[0]);
+                }
+                double wait = Math.min(deadlines[heap[0]] - clock.getTime(), MAX_PARK_TIME);
+                if (wait > 0) {
+                    LockSupport.parkNanos(this, (long) (wait * 1e9));
+                }
+            }
+        }
+        thread = null;
+    }
+
+    public int getEngineCount() {
+        return engines.length;
+    }
+
+    public GameEngine getEngine(int index) {
+        return engines[index];
+    }
+
+    private void tick(int index) {
+        if (over[index]) {
+            update(index, Double.POSITIVE_INFINITY);
+            return;
+        }
+        GameEngine engine = engines[index];
+        double next = (drivers[index] == null) ? Double.POSITIVE_INFINITY : drivers[index].stepIfDue(engine.getState());
+        double deadline = engine.tick();
+        if (engine.getState().isGameOver()) {
+            over[index] = true;
+            update(index, Double.POSITIVE_INFINITY);
+            if (gameOverListener != null) {
+                gameOverListener.accept(index);
+            }
+            return;
+        }
+        update(index, Math.min(next, deadline));
+    }
+
+    /**
+     * Changes a board's deadline and moves it up or down the heap to match
+     */
+    private void update(int index, double deadline) {
+        double old = deadlines[index];
+        deadlines[index] = deadline;
+        int position = heapPositions[index];
+        if (deadline < old) {
+            while (position > 0 && deadlines[heap[(position - 1) / 2]] > deadline) {
+                int parent = (position - 1) / 2;
+                move(heap[parent], position);
+                position = parent;
+            }
+        } else {
+            while (true) {
+                int child = position * 2 + 1;
+                if (child >= heap.length) {
+                    break;
+                }
+                if (child + 1 < heap.length && deadlines[heap[child + 1]] < deadlines[heap[child]]) {
+                    child++;
+                }
+                if (deadlines[heap[child]] >= deadline) {
+                    break;
+                }
+                move(heap[child], position);
+                position = child;
+            }
+        }
+        move(index, position);
+    }
+
+    private void move(int index, int position) {
+        heap[position] = index;
+        heapPositions[index] = position;
+    }
+}
@@ -1,336 +1,566 @@
 package game;
 
-import model.Message;
+import model.ClearResult;
 import model.Tetrimino;
-import model.Tile;
-import org.joml.Vector2f;
-import org.joml.Vector3f;
 import org.lwjgl.glfw.GLFW;
 import org.lwjgl.glfw.GLFWKeyCallback;
 import render.Scene;
 import startup.GameWindow;
 
-import java.util.*;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntConsumer;
 
 /**
- * Runs independent of a consistent time interval, grabs time from GLFW.glfwGetTime()
+ * Runs independent of a consistent time interval, grabs time from the game state's Clock. Without a window the
+ * engine is headless and is driven by calling tick()
  */
 public class GameEngine implements Runnable {
-    private static final int MOVE_RESET_LIMIT = 15;
-    private static final double GAME_SPEED = 0.05;
-    private static final Set<LinkedList<Message>> difficultClears = new HashSet<>();
-    private static final Map<LinkedList<Message>, Integer> clearPoints = new HashMap<>();
-
-    static {
-        difficultClears.add(new LinkedList<>(Arrays.asList(Message.TETRIS)));
-        difficultClears.add(new LinkedList<>(Arrays.asList(Message.MINI, Message.TSPIN, Message.SINGLE)));
-        difficultClears.add(new LinkedList<>(Arrays.asList(Message.TSPIN, Message.SINGLE)));
-        difficultClears.add(new LinkedList<>(Arrays.asList(Message.MINI, Message.TSPIN, Message.DOUBLE)));
-        difficultClears.add(new LinkedList<>(Arrays.asList(Message.TSPIN, Message.DOUBLE)));
-        difficultClears.add(new LinkedList<>(Arrays.asList(Message.TSPIN, Message.TRIPLE)));
-
-        clearPoints.put(new LinkedList<>(Arrays.asList(Message.SINGLE)), 100);
-        clearPoints.put(new LinkedList<>(Arrays.asList(Message.DOUBLE)), 300);
-        clearPoints.put(new LinkedList<>(Arrays.asList(Message.TRIPLE)), 500);
-        clearPoints.put(new LinkedList<>(Arrays.asList(Message.TETRIS)), 800);
-        clearPoints.put(new LinkedList<>(Arrays.asList(Message.MINI, Message.TSPIN)), 100);
-        clearPoints.put(new LinkedList<>(Arrays.asList(Message.TSPIN)), 400);
-        clearPoints.put(new LinkedList<>(Arrays.asList(Message.MINI, Message.TSPIN, Message.SINGLE)), 200);
-        clearPoints.put(new LinkedList<>(Arrays.asList(Message.TSPIN, Message.SINGLE)), 800);
-        clearPoints.put(new LinkedList<>(Arrays.asList(Message.MINI, Message.TSPIN, Message.DOUBLE)), 400);
-        clearPoints.put(new LinkedList<>(Arrays.asList(Message.TSPIN, Message.DOUBLE)), 1200);
-        clearPoints.put(new LinkedList<>(Arrays.asList(Message.TSPIN, Message.TRIPLE)), 1600);
-    }
+    // 20G, a piece at this speed reaches the floor as soon as it spawns
+    private static final double MAX_GRAVITY = 20 * 60.0;
+    private static final double MAX_PARK_TIME = 0.1;
 
     private GameState state;
+    private Clock clock;
     private Scene scene;
     private Controls controls;
     private GameWindow window;
-    private double lastTime;
-    private double lastTimeStepFall;
-    private double lastTimeStepGame;
-    private int dirFramesHeld;
-    private int dirLast;
-    private int turnDirLast;
-    private int stepsPieceOnGround;
+    private Ruleset ruleset;
+    // Time the engine has simulated up to, timers and events are applied at their own time rather than the clock's
+    private double simTime;
+    // Gravity is applied lazily, rows owed since lastTimeFall are gravity * elapsed + fallProgress
+    private double lastTimeFall;
+    private double fallProgress;
+    private boolean fallBlocked;
+    private double lockTime;
+    private double nextShiftTime;
+    private double nextSoftDropTime;
+    private volatile Thread engineThread;
+    private int shiftDir;
+    private boolean autoShiftBlocked;
+    private boolean softDropBlocked;
+    private boolean leftHeld;
+    private boolean rightHeld;
+    // Initial rotation and hold pressed between pieces, applied when the next piece spawns
+    private int bufferedRotation;
+    private boolean bufferedHold;
+    private long inputEventCount;
+    private double inputLatencyTotal;
+    private double inputLatencyMax;
     private int moveResetCount;
     private boolean lastMoveIsRotate;
-    private int lastSrsNum;
+    private int lastKick;
+    private RotationSystem rotationSystem;
+    private InputRecorder inputRecorder;
+    // Versus only, garbage waiting to rise on this board and where the lines it sends go
+    private GarbageQueue garbageQueue;
+    private IntConsumer attackListener;
+    private boolean publishSnapshots = true;
+    private final double startTime;
     private boolean b2bViable;
 
+    /**
+     * Creates a headless engine, it doesn't touch GLFW and runs on the game state's clock
+     */
+    public GameEngine(GameState state) {
+        this(state, null, null);
+    }
+
     public GameEngine(GameState state, Scene scene, GameWindow window) {
-        controls = new Controls();
-        lastTime = GLFW.glfwGetTime();
-        lastTimeStepFall = lastTime;
-        lastTimeStepGame = lastTime;
-        dirLast = 0;
-        turnDirLast = 0;
-        stepsPieceOnGround = 0;
+        this.state = state;
+        this.clock = state.getClock();
+        this.scene = scene;
+        this.window = window;
+
+        controls = new Controls(clock);
+        controls.setInputListener(this::wake);
+        ruleset = new Ruleset();
+        startTime = clock.getTime();
+        simTime = startTime;
+        lastTimeFall = simTime;
+        lockTime = Double.POSITIVE_INFINITY;
+        nextShiftTime = Double.POSITIVE_INFINITY;
+        nextSoftDropTime = Double.POSITIVE_INFINITY;
+        shiftDir = 0;
         moveResetCount = 0;
         lastMoveIsRotate = false;
-        lastSrsNum = -1;
+        lastKick = 0;
+        rotationSystem = new SrsRotationSystem();
         b2bViable = false;
 
-        GLFW.glfwSetKeyCallback(window.getWindowId(), new GLFWKeyCallback() {
-            @Override
-            public void invoke(long window, int key, int scancode, int action, int mods) {
-                controls.getKeyInput(key, action);
-            }
-        });
+        if (window != null) {
+            GLFW.glfwSetKeyCallback(window.getWindowId(), new GLFWKeyCallback() {
+                @Override
+                public void invoke(long window, int key, int scancode, int action, int mods) {
+                    controls.getKeyInput(key, action);
+                }
+            });
+        }
 
-        this.state = state;
-        this.scene = scene;
-        this.window = window;
         respawnPiece();
         updateGameSpeed();
+        state.publishSnapshot();
     }
 
-    public synchronized void run() {
-        while (true) {
-            switch (state.getMode()) {
-                case GAME:
-                    if (state.isLineClear()) {
-                        try {
-                            this.wait(1000);
-                        } catch (InterruptedException ex) {
-                            break;
-                        }
-                        state.lock.lock();
-                        try {
-                            clearRows(state.getClearRows());
-                            respawnPiece();
-                            state.setLineClear(false);
-                            double time = GLFW.glfwGetTime();
-                            lastTimeStepFall = time;
-                            lastTimeStepGame = time;
-                        } finally {
-                            state.lock.unlock();
-                        }
-                    } else {
-                        gameLoop();
-                    }
+    /**
+     * Runs the engine on the current thread until it's interrupted. The thread parks until the next scheduled
+     * gravity step, auto shift, soft drop, lock or line clear end, and input wakes it up early through wake()
+     */
+    public void run() {
+        engineThread = Thread.currentThread();
+        while (!Thread.currentThread().isInterrupted()) {
+            double deadline = tick();
+            double wait = Math.min(deadline - clock.getTime(), MAX_PARK_TIME);
+            if (wait > 0) {
+                LockSupport.parkNanos(this, (long) (wait * 1e9));
             }
-            try {
-                this.wait(10);
-            } catch (InterruptedException ex) {
-                break;
+        }
+        engineThread = null;
+    }
+
+    /**
+     * Makes the engine thread process new input right away instead of waiting for its next deadline
+     */
+    public void wake() {
+        Thread thread = engineThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Advances the game to the clock's current time without blocking, returns the clock time the engine next has
+     * something to do at if no input arrives before then
+     */
+    public double tick() {
+        state.lock.lock();
+        try {
+            if (state.getMode() != GameState.Mode.GAME || state.isGameOver()) {
+                return Double.POSITIVE_INFINITY;
             }
-            if (Thread.currentThread().isInterrupted()) {
-                break;
+            double time = clock.getTime();
+            if (inputRecorder != null) {
+                inputRecorder.onTick(time);
             }
+            gameLoop(time);
+            return getNextDeadline();
+        } finally {
+            if (publishSnapshots) {
+                state.publishSnapshot();
+            }
+            state.lock.unlock();
+        }
+    }
+
+    private double getNextDeadline() {
+        if (state.isGameOver()) {
+            return Double.POSITIVE_INFINITY;
         }
+        if (state.getPhase() != GameState.Phase.ACTIVE) {
+            return state.getPhaseEnd();
+        }
+        return Math.min(Math.min(getNextFallTime(), lockTime), Math.min(nextShiftTime, nextSoftDropTime));
     }
 
+    /**
+     * Plays back queued input in order. Phase changes and the gravity, auto shift, soft drop and lock timers due
+     * before an event run first, so each event acts on the board as it was at the moment it was pressed
+     */
     public void gameLoop() {
+        gameLoop(clock.getTime());
+    }
+
+    private void gameLoop(double time) {
         state.lock.lock();
         try {
-            double time = GLFW.glfwGetTime();
-            double delta = time - lastTime;
-            int stepsFall = (int) ((time - lastTimeStepFall) / state.getGameSpeed());
-            lastTimeStepFall = lastTimeStepFall + stepsFall * state.getGameSpeed();
-            int stepsGame = (int) ((time - lastTimeStepGame) / GAME_SPEED);
-            lastTimeStepGame = lastTimeStepGame + stepsGame * GAME_SPEED;
-            lastTime = time;
+            InputEventQueue inputQueue = controls.getInputQueue();
+            while (!inputQueue.isEmpty() && !state.isGameOver()) {
+                double eventTime = inputQueue.peekTime() * 1e-9;
+                runTimers(Math.min(Math.max(eventTime, simTime), time));
+                if (state.isGameOver()) {
+                    break;
+                }
+                if (inputRecorder != null) {
+                    inputRecorder.onInput(inputQueue.peekEvent(), inputQueue.peekTime());
+                }
+                handleInput(inputQueue.peekEvent());
+                inputQueue.remove();
+                recordInputLatency(time - eventTime);
+            }
+            runTimers(time);
 
-            Tetrimino gamePiece = state.getGamePiece();
+            state.getCameraControls().set(controls.cameraX, controls.cameraY);
+        } finally {
+            state.lock.unlock();
+        }
+    }
 
-            controls.readGamepadInputs(GLFW.GLFW_JOYSTICK_1);
+    private boolean isPieceActive() {
+        return state.getPhase() == GameState.Phase.ACTIVE && !state.isGameOver();
+    }
 
-            if (controls.turnLeft) {
-                controls.turnLeft = false;
-                gamePiece.setRotation(gamePiece.getRotation() - 1);
-                if (tryWallKicks(-1)) {
-                    if (state.isPieceOnGround() && moveResetCount < MOVE_RESET_LIMIT) {
-                        moveResetCount++;
-                        stepsPieceOnGround = 0;
-                    }
-                    gamePiece.setY(gamePiece.getY() - 1);
-                    state.setPieceOnGround(!state.isValidTilePos());
-                    gamePiece.setY(gamePiece.getY() + 1);
-                    lastMoveIsRotate = true;
-                } else {
-                    gamePiece.setRotation(gamePiece.getRotation() + 1);
+    /**
+     * Fires every timer due up to the given time in the order they were scheduled. Auto shift and soft drop catch
+     * up on all their repeats before the next other timer in one go
+     */
+    private void runTimers(double time) {
+        while (!state.isGameOver()) {
+            if (state.getPhase() != GameState.Phase.ACTIVE) {
+                if (state.getPhaseEnd() > time) {
+                    break;
                 }
+                simTime = Math.max(simTime, state.getPhaseEnd());
+                advancePhase();
+                continue;
             }
-            if (controls.turnRight) {
-                controls.turnRight = false;
-                gamePiece.setRotation(gamePiece.getRotation() + 1);
-                if (tryWallKicks(1)) {
-                    if (state.isPieceOnGround() && moveResetCount < MOVE_RESET_LIMIT) {
-                        moveResetCount++;
-                        stepsPieceOnGround = 0;
-                    }
-                    gamePiece.setY(gamePiece.getY() - 1);
-                    state.setPieceOnGround(!state.isValidTilePos());
-                    gamePiece.setY(gamePiece.getY() + 1);
-                    lastMoveIsRotate = true;
-                } else {
-                    gamePiece.setRotation(gamePiece.getRotation() - 1);
-                }
+            double nextFall = getNextFallTime();
+            double next = Math.min(Math.min(nextFall, lockTime), Math.min(nextShiftTime, nextSoftDropTime));
+            if (next > time) {
+                break;
             }
-            if (controls.up) {
-                if (state.getPieceLowestPos() != state.getGamePiece().getY()) {
-                    lastMoveIsRotate = false;
-                }
-                controls.up = false;
-                state.setGameScore(state.getGameScore() + Math.max(gamePiece.getY() - state.getPieceLowestPos(), 0) * 2);
-                gamePiece.setY(state.getPieceLowestPos());
+            simTime = next;
+            if (next == lockTime) {
                 clearPiece();
+            } else if (next == nextShiftTime) {
+                runAutoShift(Math.min(time, Math.min(Math.min(nextFall, lockTime), nextSoftDropTime)));
+            } else if (next == nextSoftDropTime) {
+                runSoftDrop(Math.min(time, Math.min(Math.min(nextFall, lockTime), nextShiftTime)));
+            } else {
+                runGravity(Math.min(time, Math.min(lockTime, Math.min(nextShiftTime, nextSoftDropTime))));
             }
-            if (controls.holdPiece) {
-                controls.holdPiece = false;
-                if (state.isAllowHold()) {
-                    state.setAllowHold(false);
-                    Tetrimino newPiece;
-                    if (state.getHeldPiece() == null) {
-                        newPiece = getNewPiece();
+        }
+        simTime = Math.max(simTime, time);
+    }
+
+    private void handleInput(int event) {
+        boolean pressed = InputEvent.isPressed(event);
+        switch (InputEvent.getAction(event)) {
+            case InputEvent.MOVE_LEFT:
+                leftHeld = pressed;
+                updateShiftDirection();
+                break;
+            case InputEvent.MOVE_RIGHT:
+                rightHeld = pressed;
+                updateShiftDirection();
+                break;
+            case InputEvent.SOFT_DROP:
+                // Pressing drops a row right away, holding keeps dropping at the soft drop speed
+                nextSoftDropTime = pressed ? simTime : Double.POSITIVE_INFINITY;
+                softDropBlocked = false;
+                break;
+            case InputEvent.HARD_DROP:
+                if (pressed && isPieceActive()) {
+                    hardDrop();
+                }
+                break;
+            case InputEvent.ROTATE_CW:
+                if (pressed) {
+                    rotatePieceOrBuffer(1);
+                }
+                break;
+            case InputEvent.ROTATE_CCW:
+                if (pressed) {
+                    rotatePieceOrBuffer(-1);
+                }
+                break;
+            case InputEvent.HOLD:
+                if (pressed) {
+                    if (isPieceActive()) {
+                        holdPiece();
                     } else {
-                        newPiece = state.getHeldPiece();
+                        bufferedHold = true;
                     }
-                    state.setHeldPiece(state.getGamePiece());
-                    state.setGamePiece(newPiece);
-                    resetPiecePosition(newPiece);
                 }
-            }
+                break;
+        }
+    }
 
-            state.setCameraControls(new Vector2f(controls.cameraX, controls.cameraY));
+    private void recordInputLatency(double latency) {
+        inputEventCount++;
+        inputLatencyTotal += latency;
+        inputLatencyMax = Math.max(inputLatencyMax, latency);
+    }
 
-            for (int i = 0; i < stepsGame; i++) {
-                runStepGame();
-            }
-            for (int i = 0; i < stepsFall; i++) {
-                runStepFall();
-            }
-        } finally {
-            state.lock.unlock();
+    /**
+     * Pressing a direction moves once right away and starts the DAS timer, holding both directions cancels out
+     */
+    private void updateShiftDirection() {
+        int dir = (leftHeld == rightHeld) ? 0 : (leftHeld ? -1 : 1);
+        if (dir == shiftDir) {
+            return;
         }
+        shiftDir = dir;
+        autoShiftBlocked = false;
+        if (dir == 0) {
+            nextShiftTime = Double.POSITIVE_INFINITY;
+            setCameraPushDirection(GameState.CameraPushDirection.NONE);
+            return;
+        }
+        // Between pieces DAS still charges, the piece just has nothing to move yet
+        if (isPieceActive()) {
+            shiftPiece(dir);
+        }
+        nextShiftTime = simTime + ruleset.getDas() * 0.001;
     }
 
-    public Controls getControls() {
-        return controls;
+    private void runAutoShift(double limit) {
+        double arr = ruleset.getArr() * 0.001;
+        int count = (arr == 0) ? state.getBoardWidth() : (int) ((limit - nextShiftTime) / arr) + 1;
+        int moved = 0;
+        while (moved < count && shiftPiece(shiftDir)) {
+            moved++;
+        }
+        if (moved < count) {
+            // Stop repeating against the wall until the piece moves some other way
+            autoShiftBlocked = true;
+            nextShiftTime = Double.POSITIVE_INFINITY;
+        } else {
+            nextShiftTime += count * arr;
+        }
     }
 
-    public void runStepFall() {
+    private void runSoftDrop(double limit) {
         Tetrimino gamePiece = state.getGamePiece();
-
-        gamePiece.setY(gamePiece.getY() - 1);
-        if (state.isValidTilePos()) {
+        double interval = getSoftDropInterval();
+        int count = (int) Math.min((limit - nextSoftDropTime) / interval + 1, state.getBoardHeight());
+        int rows = Math.min(count, state.getDropDistance(gamePiece.getId(), gamePiece.getX(), gamePiece.getY(), gamePiece.getRotation()));
+        if (rows > 0) {
+            gamePiece.setY(gamePiece.getY() - rows);
             lastMoveIsRotate = false;
-            gamePiece.setY(gamePiece.getY() - 1);
-            state.setPieceOnGround(!state.isValidTilePos());
-            gamePiece.setY(gamePiece.getY() + 1);
+            state.setGameScore(state.getGameScore() + rows);
+            onPieceMoved(false);
         } else {
-            gamePiece.setY(gamePiece.getY() + 1);
-            state.setPieceOnGround(true);
+            updateGround();
+        }
+        if (rows < count) {
+            // Landed, wait for the piece to move off the ground before dropping again
+            softDropBlocked = true;
+            nextSoftDropTime = Double.POSITIVE_INFINITY;
+        } else {
+            nextSoftDropTime += count * interval;
         }
     }
 
-    public void runStepGame() {
-        Tetrimino gamePiece = state.getGamePiece();
-        int dir;
-        int turnDir;
-
-        boolean left = controls.left || controls.leftTap;
-        boolean right = controls.right || controls.rightTap;
-        controls.leftTap = false;
-        controls.rightTap = false;
+    /**
+     * Keeps the ground flag and lock timer in sync with the piece, a piece that's out of move resets locks as soon
+     * as it touches the ground
+     */
+    private void updateGround() {
+        if (state.isPieceBlockedBelow()) {
+            if (!state.isPieceOnGround()) {
+                state.setPieceOnGround(true);
+                lockTime = simTime + ruleset.getLockDelay() * 0.001;
+            }
+            if (moveResetCount >= ruleset.getMoveResetLimit()) {
+                lockTime = simTime;
+            }
+        } else {
+            state.setPieceOnGround(false);
+            lockTime = Double.POSITIVE_INFINITY;
+        }
+    }
 
-        if (!state.isPieceOnGround()) {
-            stepsPieceOnGround = 0;
+    private void onPieceMoved(boolean resetsLock) {
+        if (resetsLock && state.isPieceOnGround() && moveResetCount < ruleset.getMoveResetLimit()) {
+            moveResetCount++;
+            lockTime = simTime + ruleset.getLockDelay() * 0.001;
         }
-        gamePiece.setY(gamePiece.getY() - 1);
-        state.setPieceOnGround(!state.isValidTilePos());
-        gamePiece.setY(gamePiece.getY() + 1);
+        updateGround();
+        if (autoShiftBlocked) {
+            autoShiftBlocked = false;
+            nextShiftTime = simTime + ruleset.getArr() * 0.001;
+        }
+        if (fallBlocked) {
+            fallBlocked = false;
+            lastTimeFall = simTime;
+            fallProgress = 0.0;
+        }
+        if (softDropBlocked) {
+            softDropBlocked = false;
+            nextSoftDropTime = simTime + getSoftDropInterval();
+        }
+    }
 
-        if ((left && right) || (!left && !right)) {
-            dir = 0;
-        } else if (left) {
-            dir = -1;
+    private void rotatePieceOrBuffer(int dir) {
+        if (isPieceActive()) {
+            rotatePiece(dir);
         } else {
-            dir = 1;
+            bufferedRotation = dir;
         }
-        if (dir == 0 || dir != dirLast) {
-            dirLast = dir;
-            dirFramesHeld = 0;
-        } else {
-            dirFramesHeld++;
+    }
+
+    private void rotatePiece(int dir) {
+        if (tryRotate(dir)) {
+            lastMoveIsRotate = true;
+            onPieceMoved(true);
         }
+    }
 
-        if ((controls.turnLeft && controls.turnRight) || (!controls.turnLeft && !controls.turnRight)) {
-            turnDir = 0;
-        } else if (controls.turnLeft) {
-            turnDir = -1;
-        } else {
-            turnDir = 1;
-        }
-        if (turnDir == 0 || turnDir != turnDirLast) {
-            turnDirLast = turnDir;
-        }
-
-        if (dirFramesHeld > 3 || dirFramesHeld == 0) {
-            if (dir == -1) {
-                gamePiece.setX(gamePiece.getX() - 1);
-                if (state.isValidTilePos()) {
-                    lastMoveIsRotate = false;
-                    if (state.isPieceOnGround()) {
-                        gamePiece.setY(gamePiece.getY() - 1);
-                        if (state.isValidTilePos()) {
-                            state.setPieceOnGround(false);
-                        } else if (moveResetCount < MOVE_RESET_LIMIT) {
-                            state.setPieceOnGround(false);
-                            moveResetCount++;
-                        }
-                        gamePiece.setY(gamePiece.getY() + 1);
-                    }
-                    setCameraPushDirection(GameState.CameraPushDirection.NONE);
-                } else {
-                    gamePiece.setX(gamePiece.getX() + 1);
-                    setCameraPushDirection(GameState.CameraPushDirection.LEFT);
-                }
-            } else if (dir == 1) {
-                gamePiece.setX(gamePiece.getX() + 1);
-                if (state.isValidTilePos()) {
-                    lastMoveIsRotate = false;
-                    if (state.isPieceOnGround()) {
-                        gamePiece.setY(gamePiece.getY() - 1);
-                        if (state.isValidTilePos()) {
-                            state.setPieceOnGround(false);
-                        } else if (moveResetCount < MOVE_RESET_LIMIT) {
-                            state.setPieceOnGround(false);
-                            moveResetCount++;
-                        }
-                        gamePiece.setY(gamePiece.getY() + 1);
-                    }
-                    setCameraPushDirection(GameState.CameraPushDirection.NONE);
-                } else {
-                    gamePiece.setX(gamePiece.getX() - 1);
-                    setCameraPushDirection(GameState.CameraPushDirection.RIGHT);
-                }
-            } else {
-                setCameraPushDirection(GameState.CameraPushDirection.NONE);
-            }
+    private void hardDrop() {
+        Tetrimino gamePiece = state.getGamePiece();
+        if (state.getPieceLowestPos() != gamePiece.getY()) {
+            lastMoveIsRotate = false;
         }
+        state.setGameScore(state.getGameScore() + Math.max(gamePiece.getY() - state.getPieceLowestPos(), 0) * 2);
+        gamePiece.setY(state.getPieceLowestPos());
+        clearPiece();
+    }
 
-        if (controls.down) {
-            gamePiece.setY(gamePiece.getY() - 1);
-            if (state.isValidTilePos()) {
-                lastMoveIsRotate = false;
-                state.setGameScore(state.getGameScore() + 1);
-            } else {
-                gamePiece.setY(gamePiece.getY() + 1);
-                if (!state.isPieceOnGround()) {
-                    state.setPieceOnGround(true);
-                    stepsPieceOnGround = 0;
-                }
-            }
+    private void holdPiece() {
+        if (state.isAllowHold()) {
+            Tetrimino gamePiece = state.getGamePiece();
+            state.setAllowHold(false);
+            int heldPiece = state.getHeldPiece();
+            state.setHeldPiece(gamePiece.getId());
+            gamePiece.setId((heldPiece == GameState.NO_PIECE) ? getNewPiece() : heldPiece);
+            resetPiecePosition(gamePiece);
+            state.setPieceOnGround(false);
+            onPieceMoved(false);
+            state.publishHintRequest();
+        }
+    }
+
+    /**
+     * Number of input events the engine has played back
+     */
+    public long getInputEventCount() {
+        return inputEventCount;
+    }
+
+    /**
+     * Average seconds between an input event's timestamp and the engine acting on it
+     */
+    public double getAverageInputLatency() {
+        return (inputEventCount == 0) ? 0.0 : inputLatencyTotal / inputEventCount;
+    }
+
+    public double getMaxInputLatency() {
+        return inputLatencyMax;
+    }
+
+    public GameState getState() {
+        return state;
+    }
+
+    /**
+     * Clock time the engine was created at, its first piece spawned then
+     */
+    public double getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Headless engines nobody draws can skip copying the board into a render snapshot every tick
+     */
+    public void setPublishSnapshots(boolean publishSnapshots) {
+        this.publishSnapshots = publishSnapshots;
+    }
+
+    public InputRecorder getInputRecorder() {
+        return inputRecorder;
+    }
+
+    /**
+     * Gets every tick and played back input event from now on, set it before the first tick to record a whole game
+     */
+    public void setInputRecorder(InputRecorder inputRecorder) {
+        this.inputRecorder = inputRecorder;
+    }
+
+    public GarbageQueue getGarbageQueue() {
+        return garbageQueue;
+    }
+
+    /**
+     * Makes the board take garbage from the queue, lines rise when a piece locks without clearing any
+     */
+    public void setGarbageQueue(GarbageQueue garbageQueue) {
+        this.garbageQueue = garbageQueue;
+    }
+
+    /**
+     * Gets the lines each clear sends once pending garbage is cancelled, called on the engine's thread with the
+     * state's lock held
+     */
+    public void setAttackListener(IntConsumer attackListener) {
+        this.attackListener = attackListener;
+    }
+
+    public Controls getControls() {
+        return controls;
+    }
+
+    public RotationSystem getRotationSystem() {
+        return rotationSystem;
+    }
+
+    public void setRotationSystem(RotationSystem rotationSystem) {
+        this.rotationSystem = rotationSystem;
+    }
+
+    public Ruleset getRuleset() {
+        return ruleset;
+    }
+
+    public void setRuleset(Ruleset ruleset) {
+        this.ruleset = ruleset;
+        updateGameSpeed();
+    }
+
+    private double getNextFallTime() {
+        if (fallBlocked) {
+            return Double.POSITIVE_INFINITY;
         }
+        return lastTimeFall + (1.0 - fallProgress) / state.getGravity();
+    }
 
-        if (state.isPieceOnGround() && (stepsPieceOnGround > 10 || moveResetCount >= MOVE_RESET_LIMIT)) {
-            clearPiece();
+    private double getSoftDropInterval() {
+        return 1.0 / (state.getGravity() * ruleset.getSoftDropFactor());
+    }
+
+    /**
+     * Moves the piece down every row it owes up to the given time at once, capped by the drop distance so the cost
+     * doesn't depend on the gravity or how long the engine stalled
+     */
+    private void runGravity(double limit) {
+        Tetrimino gamePiece = state.getGamePiece();
+        double owed = fallProgress + (limit - lastTimeFall) * state.getGravity();
+        int dropDistance = state.getDropDistance(gamePiece.getId(), gamePiece.getX(), gamePiece.getY(), gamePiece.getRotation());
+        int rows = (int) Math.min(Math.floor(owed), dropDistance);
+        lastTimeFall = limit;
+        fallProgress = Math.max(owed - rows, 0.0);
+        // A whole row is due at the fall time even when rounding leaves owed just short of it
+        if (rows == 0 && dropDistance > 0) {
+            rows = 1;
+            fallProgress = 0.0;
+        }
+        if (rows > 0) {
+            gamePiece.setY(gamePiece.getY() - rows);
+            lastMoveIsRotate = false;
+            onPieceMoved(false);
+        } else {
+            updateGround();
+        }
+        if (rows == dropDistance) {
+            // On the ground, gravity waits until the piece moves off it
+            fallBlocked = true;
+            fallProgress = 0.0;
         }
-        if (state.isPieceOnGround()) {
-            stepsPieceOnGround++;
+    }
+
+    /**
+     * Moves the piece a column left or right, or pushes the camera when it's blocked. Returns if the piece moved
+     */
+    private boolean shiftPiece(int dir) {
+        Tetrimino gamePiece = state.getGamePiece();
+        if (state.canPieceMove(dir, 0)) {
+            gamePiece.setX(gamePiece.getX() + dir);
+            lastMoveIsRotate = false;
+            onPieceMoved(true);
+            setCameraPushDirection(GameState.CameraPushDirection.NONE);
+            return true;
         }
+        setCameraPushDirection((dir < 0) ? GameState.CameraPushDirection.LEFT : GameState.CameraPushDirection.RIGHT);
+        return false;
     }
 
     private void setCameraPushDirection(GameState.CameraPushDirection direction) {
@@ -339,321 +569,214 @@ public class GameEngine implements Runnable {
         }
         state.setLastCameraPushDirection(state.getCameraPushDirection());
         state.setCameraPushDirection(direction);
-        state.setCameraPushTimestamp(GLFW.glfwGetTime());
+        state.setCameraPushTimestamp(simTime);
     }
 
+    /**
+     * Guideline gravity curve from the ruleset, converted from seconds per row to rows per second and capped at 20G
+     */
     private void updateGameSpeed() {
         int level = state.getGameLevel();
-        state.setGameSpeed(Math.pow(0.8 - (level - 1) * 0.007, level - 1));
+        double base = ruleset.getGravityBase() - (level - 1) * ruleset.getGravityDecay();
+        double secondsPerRow = Math.pow(base, level - 1);
+        state.setGravity((base > 0 && secondsPerRow > 1.0 / MAX_GRAVITY) ? 1.0 / secondsPerRow : MAX_GRAVITY);
     }
 
     private void clearPiece() {
-        state.getLineClearMessages().clear();
-        checkTSpins();
-        state.setSolidTiles(state.getDrawnTiles(state.getBoardWidth(), state.getBoardHeight(), true, false));
-        state.setClearRows(findRows());
-        state.setComboStreak(state.getComboStreak() + 1);
-        switch (state.getClearRows().size()) {
-            case 0:
-                state.setComboStreak(-1);
-                break;
-            case 1:
-                state.getLineClearMessages().add(Message.SINGLE);
-                break;
-            case 2:
-                state.getLineClearMessages().add(Message.DOUBLE);
-                break;
-            case 3:
-                state.getLineClearMessages().add(Message.TRIPLE);
-                break;
-            case 4:
-                state.getLineClearMessages().add(Message.TETRIS);
-                break;
-        }
-        int points = 0;
-        if (clearPoints.containsKey(state.getLineClearMessages())) {
-            points = clearPoints.get(state.getLineClearMessages()) * state.getGameLevel();
-        }
-        if (difficultClears.contains(state.getLineClearMessages())) {
+        int tSpin = checkTSpins();
+        state.lockPiece(state.getGamePiece());
+        state.setClearRows(state.getGamePiece().getY(), state.findFullRows(state.getGamePiece()));
+        int lines = state.getClearRowCount();
+        state.setComboStreak(lines == 0 ? -1 : state.getComboStreak() + 1);
+
+        int points = ruleset.getClearPoints(lines, tSpin) * state.getGameLevel();
+        boolean b2b = false;
+        if (ClearResult.isDifficult(lines, tSpin)) {
             if (b2bViable) {
-                points *= 1.5;
-                state.getLineClearMessages().addFirst(Message.B2B);
+                points *= ruleset.getB2bMultiplier();
+                b2b = true;
             }
             b2bViable = true;
-        } else if (state.getClearRows().size() > 0) {
+        } else if (lines > 0) {
             b2bViable = false;
         }
         if (state.getComboStreak() > 0) {
-            state.getLineClearMessages().add(Message.COMBO);
-            points += 50 * state.getGameLevel();
+            points += ruleset.getComboPoints() * state.getGameLevel();
         }
+        state.setLineClearResult(ClearResult.pack(lines, tSpin, b2b, state.getComboStreak()));
         state.setGameScore(state.getGameScore() + points);
-        state.setLineClearMessagesTimestamp(GLFW.glfwGetTime());
+        state.setPiecesPlaced(state.getPiecesPlaced() + 1);
+        if (tSpin == ClearResult.TSPIN_FULL) {
+            state.setTSpinCount(state.getTSpinCount() + 1);
+        } else if (tSpin == ClearResult.TSPIN_MINI) {
+            state.setTSpinMiniCount(state.getTSpinMiniCount() + 1);
+        }
+        state.setLineClearResultTimestamp(simTime);
         state.setAllowHold(true);
-        if (state.getClearRows().size() > 0) {
-            state.setLineClear(true);
-            state.setLineClearStart(GLFW.glfwGetTime());
+        lockTime = Double.POSITIVE_INFINITY;
+        if (garbageQueue != null && !exchangeGarbage(lines)) {
+            gameOver();
+            return;
+        }
+        double lockFlash = ruleset.getLockFlash() * 0.001;
+        if (lockFlash > 0) {
+            state.setPhase(GameState.Phase.LOCK_FLASH, simTime, simTime + lockFlash);
+        } else {
+            startLineClear();
+        }
+    }
+
+    /**
+     * Sends the clear's attack after cancelling pending garbage with it, or raises the pending garbage when nothing
+     * was cleared. Returns false if the garbage topped the player out
+     */
+    private boolean exchangeGarbage(int lines) {
+        if (lines > 0) {
+            int attack = garbageQueue.cancel(ClearResult.getAttack(state.getLineClearResult()));
+            if (attack > 0 && attackListener != null) {
+                attackListener.accept(attack);
+            }
+            return true;
+        }
+        int garbage = garbageQueue.take();
+        return garbage == 0 || state.addGarbage(garbage, garbageQueue.nextHoleColumn(state.getBoardWidth()));
+    }
+
+    /**
+     * Moves to the next phase once the current one's time is up, ending with a new active piece
+     */
+    private void advancePhase() {
+        switch (state.getPhase()) {
+            case LOCK_FLASH:
+                startLineClear();
+                break;
+            case LINE_CLEAR:
+                clearRows();
+                startAre();
+                break;
+            case ARE:
+                spawnPiece();
+                break;
+        }
+    }
+
+    private void startLineClear() {
+        double lineClearDelay = ruleset.getLineClearDelay() * 0.001;
+        if (state.getClearRowCount() == 0) {
+            startAre();
+        } else if (lineClearDelay > 0) {
+            state.setPhase(GameState.Phase.LINE_CLEAR, simTime, simTime + lineClearDelay);
+        } else {
+            clearRows();
+            startAre();
+        }
+    }
+
+    private void startAre() {
+        double are = ruleset.getAre() * 0.001;
+        if (are > 0) {
+            state.setPhase(GameState.Phase.ARE, simTime, simTime + are);
         } else {
-            respawnPiece();
+            spawnPiece();
+        }
+    }
+
+    private void spawnPiece() {
+        state.setPhase(GameState.Phase.ACTIVE, simTime, Double.POSITIVE_INFINITY);
+        respawnPiece();
+        if (state.isGameOver()) {
+            return;
+        }
+        if (bufferedHold) {
+            bufferedHold = false;
+            holdPiece();
+        }
+        if (bufferedRotation != 0) {
+            rotatePiece(bufferedRotation);
+            bufferedRotation = 0;
         }
+        // Timers that came due between pieces start from the spawn, a charged DAS shifts right away
+        nextShiftTime = Math.max(nextShiftTime, simTime);
+        nextSoftDropTime = Math.max(nextSoftDropTime, simTime);
     }
 
     private void respawnPiece() {
-        state.setGamePiece(getNewPiece());
+        state.getGamePiece().setId(getNewPiece());
         resetPiecePosition(state.getGamePiece());
         state.setPieceOnGround(false);
+        lockTime = Double.POSITIVE_INFINITY;
+        lastTimeFall = simTime;
+        fallProgress = 0.0;
+        fallBlocked = false;
         moveResetCount = 0;
         lastMoveIsRotate = false;
-        stepsPieceOnGround = 0;
         if (!state.isValidTilePos()) {
             gameOver();
+            return;
         }
+        onPieceMoved(false);
+        state.publishHintRequest();
     }
 
-    private Tetrimino getNewPiece() {
-        Tetrimino newPiece = state.getNextPieces().removeFirst();
-        state.getNextPieces().addLast(state.getPieceGenerator().nextPiece());
-        return newPiece;
+    private int getNewPiece() {
+        return state.getPieceRandomizer().next();
     }
 
     private void resetPiecePosition(Tetrimino piece) {
-        piece.setPosition((state.getBoardWidth() - state.getGamePiece().getWidth()) / 2, 20 + 2 - state.getGamePiece().getHeight());
+        piece.setPosition(state.getSpawnX(piece.getId()), state.getSpawnY(piece.getId()));
         piece.setRotation(0);
     }
 
-    private Set<Integer> findRows() {
-        Set<Integer> rows = new HashSet<>();
-        Tile[][] tiles = state.getSolidTiles();
-        for (int i = 0; i < state.getBoardHeight(); i++) {
-            boolean rowFull = true;
-            for (int j = 0; j < state.getBoardWidth(); j++) {
-                if (tiles[i][j] == null) {
-                    rowFull = false;
-                    break;
-                }
-            }
-            if (rowFull) {
-                rows.add(i);
-            }
-        }
-        return rows;
-    }
-
-    private void clearRows(Set<Integer> rows) {
-        Tile[][] tiles = state.getSolidTiles();
-        int offset = 0;
-        for (int row : rows) {
-            for (int i = row + offset; i < state.getBoardHeight() - 1; i++) {
-                tiles[i] = tiles[i + 1];
-            }
-            tiles[state.getBoardHeight() - 1] = new Tile[state.getBoardWidth()];
-            offset--;
-        }
-        state.setLinesCleared(state.getLinesCleared() + rows.size());
+    private void clearRows() {
+        state.clearRows(state.getClearRowsBase(), state.getClearRowsMask());
+        state.setLinesCleared(state.getLinesCleared() + state.getClearRowCount());
         if (state.getLinesCleared() / 10 + 1 > state.getGameLevel()) {
             state.setGameLevel(state.getLinesCleared() / 10 + 1);
             updateGameSpeed();
         }
     }
 
-    private boolean tryWallKicks(int turnedDir) {
+    private boolean tryRotate(int turnedDir) {
         Tetrimino gamePiece = state.getGamePiece();
-        if (state.isValidTilePos()) {
-            lastSrsNum = -1;
-            return true;
-        }
-        if (gamePiece.getId() == 0) {
-            if (turnedDir == 1) {
-                switch (gamePiece.getRotation()) {
-                    case 1:
-                        return tryWallKick(-2, 0, 0)
-                                || tryWallKick(1, 0, 1)
-                                || tryWallKick(-2, -1, 2)
-                                || tryWallKick(1, 2, 3);
-                    case 2:
-                        return tryWallKick(-1, 0, 0)
-                                || tryWallKick(2, 0, 1)
-                                || tryWallKick(-1, 2, 2)
-                                || tryWallKick(2, -1, 3);
-                    case 3:
-                        return tryWallKick(2, 0, 0)
-                                || tryWallKick(-1, 0, 1)
-                                || tryWallKick(2, 1, 2)
-                                || tryWallKick(-1, -2, 3);
-                    case 0:
-                        return tryWallKick(1, 0, 0)
-                                || tryWallKick(-2, 0, 1)
-                                || tryWallKick(1, -2, 2)
-                                || tryWallKick(-2, 1, 3);
-                }
-            } else if (turnedDir == -1) {
-                switch (gamePiece.getRotation()) {
-                    case 0:
-                        return tryWallKick(2, 0, 0)
-                                || tryWallKick(-1, 0, 1)
-                                || tryWallKick(2, 1, 2)
-                                || tryWallKick(-1, -2, 3);
-                    case 1:
-                        return tryWallKick(1, 0, 0)
-                                || tryWallKick(-2, 0, 1)
-                                || tryWallKick(1, -2, 2)
-                                || tryWallKick(-2, 1, 3);
-                    case 2:
-                        return tryWallKick(-2, 0, 0)
-                                || tryWallKick(1, 0, 1)
-                                || tryWallKick(-2, -1, 2)
-                                || tryWallKick(1, 2, 3);
-                    case 3:
-                        return tryWallKick(-1, 0, 0)
-                                || tryWallKick(2, 0, 1)
-                                || tryWallKick(-1, 2, 2)
-                                || tryWallKick(2, -1, 3);
-                }
-            }
-        } else {
-            if (turnedDir == 1) {
-                switch (gamePiece.getRotation()) {
-                    case 1:
-                        return tryWallKick(-1, 0, 0)
-                                || tryWallKick(-1, 1, 1)
-                                || tryWallKick(0, -2, 2)
-                                || tryWallKick(-1, -2, 3);
-                    case 2:
-                        return tryWallKick(1, 0, 0)
-                                || tryWallKick(1, -1, 1)
-                                || tryWallKick(0, 2, 2)
-                                || tryWallKick(1, 2, 3);
-                    case 3:
-                        return tryWallKick(1, 0, 0)
-                                || tryWallKick(1, 1, 1)
-                                || tryWallKick(0, -2, 2)
-                                || tryWallKick(1, -2, 3);
-                    case 0:
-                        return tryWallKick(-1, 0, 0)
-                                || tryWallKick(-1, -1, 1)
-                                || tryWallKick(0, 2, 2)
-                                || tryWallKick(-1, 2, 3);
-                }
-            } else if (turnedDir == -1) {
-                switch (gamePiece.getRotation()) {
-                    case 0:
-                        return tryWallKick(1, 0, 0)
-                                || tryWallKick(1, -1, 1)
-                                || tryWallKick(0, 2, 2)
-                                || tryWallKick(1, 2, 3);
-                    case 1:
-                        return tryWallKick(-1, 0, 0)
-                                || tryWallKick(-1, 1, 1)
-                                || tryWallKick(0, -2, 2)
-                                || tryWallKick(-1, -2, 3);
-                    case 2:
-                        return tryWallKick(-1, 0, 0)
-                                || tryWallKick(-1, -1, 1)
-                                || tryWallKick(0, 2, 2)
-                                || tryWallKick(-1, 2, 3);
-                    case 3:
-                        return tryWallKick(1, 0, 0)
-                                || tryWallKick(1, 1, 1)
-                                || tryWallKick(0, -2, 2)
-                                || tryWallKick(1, -2, 3);
-                }
-            }
-        }
-        return false;
-    }
-
-    private boolean tryWallKick(int x, int y, int srsNum) {
-        lastSrsNum = srsNum;
-        Tetrimino gamePiece = state.getGamePiece();
-        gamePiece.setX(gamePiece.getX() + x);
-        gamePiece.setY(gamePiece.getY() + y);
-        if (state.isValidTilePos()) {
-            return true;
-        }
-        gamePiece.setX(gamePiece.getX() - x);
-        gamePiece.setY(gamePiece.getY() - y);
-        return false;
+        int from = gamePiece.getRotation();
+        int to = (from + turnedDir) & 3;
+        int kick = rotationSystem.findKick(state, gamePiece.getId(), gamePiece.getX(), gamePiece.getY(), from, to);
+        if (kick < 0) {
+            return false;
+        }
+        gamePiece.setPosition(gamePiece.getX() + rotationSystem.getKickX(gamePiece.getId(), from, to, kick),
+                gamePiece.getY() + rotationSystem.getKickY(gamePiece.getId(), from, to, kick));
+        gamePiece.setRotation(to);
+        lastKick = kick;
+        return true;
     }
 
-    private void checkTSpins() {
+    /**
+     * Classifies the lock as a T-spin using the 3 corner rule, returns one of the ClearResult.TSPIN_ kinds
+     */
+    private int checkTSpins() {
         if (!lastMoveIsRotate) {
-            return;
+            return ClearResult.TSPIN_NONE;
         }
         Tetrimino gamePiece = state.getGamePiece();
         if (gamePiece.getId() != 5) {
-            return;
+            return ClearResult.TSPIN_NONE;
         }
 
-        boolean[] corners = new boolean[4];
-        Tile[][] tiles = state.getSolidTiles();
         int x = gamePiece.getX();
         int y = gamePiece.getY();
-        corners[0] = checkTileSolidSafe(tiles, x, y);
-        corners[1] = checkTileSolidSafe(tiles, x, y + 2);
-        corners[2] = checkTileSolidSafe(tiles, x + 2, y);
-        corners[3] = checkTileSolidSafe(tiles, x + 2, y + 2);
-        int cornerCount = 0;
-        for (int i = 0; i < corners.length; i++) {
-            if (corners[i]) {
-                cornerCount++;
-            }
-        }
-        if (cornerCount < 3) {
-            return;
-        }
-
-        if (cornerCount == 4) {
-            onTSpin();
-            return;
-        }
-
-        if (lastSrsNum == 3) {
-            onTSpin();
-            return;
-        }
-
-        if (gamePiece.getRotation() == 0 && corners[1] && corners[3]) {
-            onTSpin();
-            return;
-        }
-        if (gamePiece.getRotation() == 1 && corners[2] && corners[3]) {
-            onTSpin();
-            return;
-        }
-        if (gamePiece.getRotation() == 2 && corners[0] && corners[2]) {
-            onTSpin();
-            return;
-        }
-        if (gamePiece.getRotation() == 3 && corners[0] && corners[1]) {
-            onTSpin();
-            return;
-        }
-
-        onMiniTSpin();
-    }
-
-    private boolean checkTileSolidSafe(Tile[][] tiles, int x, int y) {
-        if (y < 0 || y >= tiles.length) {
-            return true;
-        }
-        Tile[] row = tiles[y];
-        if (x < 0 || x >= row.length) {
-            return true;
-        }
-        return row[x] != null;
-    }
-
-    private void onTSpin() {
-        state.getLineClearMessages().add(Message.TSPIN);
-    }
-
-    private void onMiniTSpin() {
-        state.getLineClearMessages().add(Message.MINI);
-        state.getLineClearMessages().add(Message.TSPIN);
+        int corners = (state.isBlocked(x, y) ? 1 : 0)
+                | (state.isBlocked(x, y + 2) ? 2 : 0)
+                | (state.isBlocked(x + 2, y) ? 4 : 0)
+                | (state.isBlocked(x + 2, y + 2) ? 8 : 0);
+        return ClearResult.classifyTSpin(gamePiece.getRotation(), corners, lastKick);
     }
 
     private void gameOver() {
-        System.out.println("Score: " + state.getGameScore());
-        GLFW.glfwSetWindowShouldClose(window.getWindowId(), true);
+        state.setGameOver(true);
+        if (window != null) {
+            System.out.println("Score: " + state.getGameScore());
+            GLFW.glfwSetWindowShouldClose(window.getWindowId(), true);
+        }
     }
 }
\ No newline at end of file
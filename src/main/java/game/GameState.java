@@ -1,15 +1,11 @@
 package game;
 
-import model.Message;
+import model.ClearResult;
 import model.Tetrimino;
 import model.Tile;
 import org.joml.Vector2f;
-import org.lwjgl.glfw.GLFW;
-import render.LineClearMessage;
 
-import java.util.Deque;
-import java.util.LinkedList;
-import java.util.Set;
+import java.util.Arrays;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -21,55 +17,396 @@ import static model.Tile.*;
 public class GameState {
     private static final int GAME_WIDTH = 10;
     private static final int GAME_HEIGHT = 40;
+    private static final int PREVIEW_COUNT = 4;
+    public static final int NO_PIECE = -1;
 
+    private final Clock clock;
     private Mode mode;
     private int bgOption = 1;
 
 
+    private int boardWidth;
+    private int boardHeight;
+    private int fullRowMask;
+    // Occupancy of the board, one bitmask per row where bit x is set when column x is filled
+    private int[] rows;
+    // Colors of the filled cells as Tile ordinal + 1, indexed by y * boardWidth + x, 0 when empty
+    private byte[] tileColors;
+    // Per column, one more than the highest filled row, 0 for an empty column
+    private int[] columnHeights;
+    // Per column, the highest empty cell below the column height, -1 if the column has no holes
+    private int[] columnHoles;
     private Tile[][] solidTiles;
+    private boolean solidTilesDirty;
 
     private Tetrimino gamePiece;
-    private Tetrimino heldPiece;
+    // Id of the held piece, NO_PIECE when nothing is held
+    private int heldPiece;
     private boolean allowHold;
-    private Deque<Tetrimino> nextPieces;
-    private RandomPieceGenerator pieceGenerator;
+    private PieceRandomizer pieceRandomizer;
 
-    private double gameSpeed;
+    // Rows per second the piece falls, 60 is 1G
+    private double gravity;
     private int gameScore;
     private int gameLevel;
     private int linesCleared;
+    private int piecesPlaced;
+    private int tSpinCount;
+    private int tSpinMiniCount;
     private boolean pieceOnGround;
-    private LinkedList<Message> lineClearMessages;
-    private double lineClearMessagesTimestamp;
+    private boolean gameOver;
+    // Packed by model.ClearResult
+    private int lineClearResult;
+    private double lineClearResultTimestamp;
     private int comboStreak;
-    private boolean lineClear;
-    private double lineClearStart;
-    private Set<Integer> clearRows;
+    private Phase phase;
+    private double phaseStart;
+    private double phaseEnd;
+    // Rows being cleared, bit i of the mask is row clearRowsBase + i
+    private int clearRowsBase;
+    private int clearRowsMask;
     private CameraPushDirection cameraPushDirection;
     private CameraPushDirection lastCameraPushDirection;
     private double cameraPushTimestamp;
     private Vector2f cameraControls;
 
     public Lock lock = new ReentrantLock();
+    private final SnapshotExchange snapshotExchange = new SnapshotExchange();
+    private HintExchange hintExchange;
 
     public GameState() {
+        this(new GlfwClock());
+    }
+
+    public GameState(Clock clock) {
+        this(clock, new BagRandomizer(System.nanoTime(), 1));
+    }
+
+    public GameState(Clock clock, PieceRandomizer pieceRandomizer) {
+        this.clock = clock;
+        this.pieceRandomizer = pieceRandomizer;
         setMode(Mode.GAME);
     }
 
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * Where the engine publishes render snapshots, the renderer reads from here instead of locking the state
+     */
+    public SnapshotExchange getSnapshotExchange() {
+        return snapshotExchange;
+    }
+
+    /**
+     * Copies the state into the snapshot back buffer and publishes it, must be called with the lock held
+     */
+    public void publishSnapshot() {
+        snapshotExchange.getBackBuffer().fill(this);
+        snapshotExchange.publish();
+    }
+
+    /**
+     * Where the engine hands positions to the hint searcher, null when hints are off
+     */
+    public HintExchange getHintExchange() {
+        return hintExchange;
+    }
+
+    public void setHintExchange(HintExchange hintExchange) {
+        this.hintExchange = hintExchange;
+    }
+
+    /**
+     * Publishes the position for a hint if hints are on, must be called with the lock held
+     */
+    public void publishHintRequest() {
+        if (hintExchange != null) {
+            hintExchange.publish(this);
+        }
+    }
+
+    /**
+     * Builds a view of the board as tiles for the renderer, the game itself only works with the row bitmasks
+     */
     public Tile[][] getSolidTiles() {
+        if (solidTilesDirty) {
+            Tile[] tileTypes = Tile.values();
+            for (int y = 0; y < boardHeight; y++) {
+                Tile[] row = solidTiles[y];
+                for (int x = 0; x < boardWidth; x++) {
+                    int color = tileColors[y * boardWidth + x];
+                    row[x] = (color == 0) ? null : tileTypes[color - 1];
+                }
+            }
+            solidTilesDirty = false;
+        }
         return solidTiles;
     }
 
     public void setSolidTiles(Tile[][] tiles) {
-        this.solidTiles = tiles;
+        initBoard(tiles.length > 0 ? tiles[0].length : 0, tiles.length);
+        for (int y = 0; y < boardHeight; y++) {
+            for (int x = 0; x < boardWidth; x++) {
+                if (tiles[y][x] != null) {
+                    setTile(x, y, tiles[y][x]);
+                }
+            }
+        }
+    }
+
+    private void initBoard(int width, int height) {
+        if (width > Integer.SIZE) {
+            throw new IllegalArgumentException("Board width can't be larger than " + Integer.SIZE);
+        }
+        boardWidth = width;
+        boardHeight = height;
+        fullRowMask = (int) ((1L << width) - 1);
+        rows = new int[height];
+        tileColors = new byte[width * height];
+        columnHeights = new int[width];
+        columnHoles = new int[width];
+        Arrays.fill(columnHoles, -1);
+        solidTiles = new Tile[height][width];
+        solidTilesDirty = false;
     }
 
     public int getBoardWidth() {
-        return (solidTiles.length > 0) ? solidTiles[0].length : 0;
+        return boardWidth;
     }
 
     public int getBoardHeight() {
-        return solidTiles.length;
+        return boardHeight;
+    }
+
+    /**
+     * Where a piece appears in rotation 0, centered and with its box ending just above the visible 20 rows
+     */
+    public int getSpawnX(int pieceId) {
+        return (boardWidth - Tetrimino.getSize(pieceId)) / 2;
+    }
+
+    public int getSpawnY(int pieceId) {
+        return 20 + 2 - Tetrimino.getSize(pieceId);
+    }
+
+    public int getRow(int y) {
+        return rows[y];
+    }
+
+    public boolean isRowFull(int y) {
+        return rows[y] == fullRowMask;
+    }
+
+    /**
+     * Checks if a cell is filled, anything outside of the board counts as filled
+     */
+    public boolean isBlocked(int x, int y) {
+        if (x < 0 || y < 0 || x >= boardWidth || y >= boardHeight) {
+            return true;
+        }
+        return (rows[y] & (1 << x)) != 0;
+    }
+
+    /**
+     * Color of a cell as Tile ordinal + 1, 0 when empty
+     */
+    public byte getTileColor(int x, int y) {
+        return tileColors[y * boardWidth + x];
+    }
+
+    public Tile getTile(int x, int y) {
+        int color = tileColors[y * boardWidth + x];
+        return (color == 0) ? null : Tile.values()[color - 1];
+    }
+
+    public void setTile(int x, int y, Tile tile) {
+        if (tile == null) {
+            rows[y] &= ~(1 << x);
+            tileColors[y * boardWidth + x] = 0;
+        } else {
+            rows[y] |= 1 << x;
+            tileColors[y * boardWidth + x] = (byte) (tile.ordinal() + 1);
+        }
+        recomputeColumn(x, boardHeight - 1);
+        solidTilesDirty = true;
+    }
+
+    /**
+     * Writes the piece into the board at its current position, cells outside of the board are dropped
+     */
+    public void lockPiece(Tetrimino piece) {
+        byte color = (byte) (piece.getTileType().ordinal() + 1);
+        int x = piece.getX();
+        if (x <= -Integer.SIZE || x >= Integer.SIZE) {
+            return;
+        }
+        for (int row = 0; row < piece.getHeight(); row++) {
+            int boardY = piece.getY() + row;
+            long rowMask = piece.getRowMask(piece.getRotation(), row);
+            long mask = ((x >= 0) ? rowMask << x : rowMask >>> -x) & fullRowMask;
+            if (mask == 0 || boardY < 0 || boardY >= boardHeight) {
+                continue;
+            }
+            rows[boardY] |= (int) mask;
+            for (int boardX = 0; boardX < boardWidth; boardX++) {
+                if ((mask & (1L << boardX)) != 0) {
+                    tileColors[boardY * boardWidth + boardX] = color;
+                }
+            }
+        }
+        updateColumns(piece);
+        solidTilesDirty = true;
+    }
+
+    /**
+     * Updates the column heights and holes for the columns a piece was just locked into
+     */
+    private void updateColumns(Tetrimino piece) {
+        int id = piece.getId();
+        int rotation = piece.getRotation();
+        for (int column = Tetrimino.getMinX(id, rotation); column <= Tetrimino.getMaxX(id, rotation); column++) {
+            int boardX = piece.getX() + column;
+            int bottom = Math.max(piece.getY() + Tetrimino.getColumnBottom(id, rotation, column), 0);
+            int top = Math.min(piece.getY() + Tetrimino.getColumnTop(id, rotation, column), boardHeight - 1);
+            if (boardX < 0 || boardX >= boardWidth || bottom > top) {
+                continue;
+            }
+            int height = columnHeights[boardX];
+            if (bottom < height) {
+                // The piece was tucked into a hole, the column needs a rescan
+                recomputeColumn(boardX, height - 1);
+                continue;
+            }
+            if (bottom > height) {
+                columnHoles[boardX] = bottom - 1;
+            }
+            columnHeights[boardX] = top + 1;
+        }
+    }
+
+    /**
+     * Scans a column down from startY to find its height and highest hole, everything above startY must be empty
+     */
+    private void recomputeColumn(int x, int startY) {
+        int bit = 1 << x;
+        int y = startY;
+        while (y >= 0 && (rows[y] & bit) == 0) {
+            y--;
+        }
+        columnHeights[x] = y + 1;
+        while (y >= 0 && (rows[y] & bit) != 0) {
+            y--;
+        }
+        columnHoles[x] = y;
+    }
+
+    public int getColumnHeight(int x) {
+        return columnHeights[x];
+    }
+
+    public int getColumnHole(int x) {
+        return columnHoles[x];
+    }
+
+    /**
+     * Removes a row and moves every row above it down by one
+     */
+    public void clearRow(int y) {
+        clearRows(y, 1);
+    }
+
+    /**
+     * Removes the rows set in the mask, bit i is row baseY + i, and compacts the rest of the board down in one pass.
+     * Only the rows up to the top of the stack are touched, so the cost doesn't depend on the board height
+     */
+    public void clearRows(int baseY, int rowMask) {
+        if (rowMask == 0) {
+            return;
+        }
+        int clearCount = Integer.bitCount(rowMask);
+        int stackTop = 0;
+        for (int x = 0; x < boardWidth; x++) {
+            stackTop = Math.max(stackTop, columnHeights[x]);
+        }
+        stackTop = Math.max(stackTop, baseY + Integer.SIZE - Integer.numberOfLeadingZeros(rowMask));
+
+        int write = baseY + Integer.numberOfTrailingZeros(rowMask);
+        for (int read = write; read < stackTop; read++) {
+            int offset = read - baseY;
+            if (offset < Integer.SIZE && (rowMask & (1 << offset)) != 0) {
+                continue;
+            }
+            rows[write] = rows[read];
+            System.arraycopy(tileColors, read * boardWidth, tileColors, write * boardWidth, boardWidth);
+            write++;
+        }
+        Arrays.fill(rows, write, stackTop, 0);
+        Arrays.fill(tileColors, write * boardWidth, stackTop * boardWidth, (byte) 0);
+
+        for (int x = 0; x < boardWidth; x++) {
+            int height = columnHeights[x];
+            int topOffset = height - 1 - baseY;
+            if (topOffset >= 0 && topOffset < Integer.SIZE && (rowMask & (1 << topOffset)) != 0) {
+                // The top of the column was cleared, the new top is somewhere below
+                recomputeColumn(x, height - 1 - clearCount);
+            } else {
+                // Every cleared row was full, so all of them are below the column height
+                columnHeights[x] = height - clearCount;
+                int hole = columnHoles[x];
+                if (hole > baseY) {
+                    int holeOffset = hole - baseY;
+                    int clearedBelow = (holeOffset >= Integer.SIZE) ? clearCount : Integer.bitCount(rowMask & ((1 << holeOffset) - 1));
+                    columnHoles[x] = hole - clearedBelow;
+                }
+            }
+        }
+        solidTilesDirty = true;
+    }
+
+    /**
+     * Pushes the board up and fills the bottom rows with garbage, full but for the hole column. Returns false when
+     * filled cells got pushed off the top, which tops the player out
+     */
+    public boolean addGarbage(int count, int holeX) {
+        count = Math.min(count, boardHeight);
+        boolean fits = true;
+        for (int y = boardHeight - count; y < boardHeight; y++) {
+            fits &= rows[y] == 0;
+        }
+        System.arraycopy(rows, 0, rows, count, boardHeight - count);
+        System.arraycopy(tileColors, 0, tileColors, count * boardWidth, (boardHeight - count) * boardWidth);
+        int garbageRow = fullRowMask & ~(1 << holeX);
+        byte color = (byte) (Tile.BLOCK_GARBAGE.ordinal() + 1);
+        for (int y = 0; y < count; y++) {
+            rows[y] = garbageRow;
+            for (int x = 0; x < boardWidth; x++) {
+                tileColors[y * boardWidth + x] = (x == holeX) ? 0 : color;
+            }
+        }
+        for (int x = 0; x < boardWidth; x++) {
+            recomputeColumn(x, Math.min(columnHeights[x] + count, boardHeight) - 1);
+        }
+        solidTilesDirty = true;
+        return fits;
+    }
+
+    /**
+     * Checks only the rows a locked piece covers, returns a mask where bit i is set when row piece.getY() + i is full
+     */
+    public int findFullRows(Tetrimino piece) {
+        int id = piece.getId();
+        int rotation = piece.getRotation();
+        int mask = 0;
+        int maxRow = Tetrimino.getMaxY(id, rotation);
+        for (int row = Tetrimino.getMinY(id, rotation); row <= maxRow; row++) {
+            int boardY = piece.getY() + row;
+            if (boardY >= 0 && boardY < boardHeight && rows[boardY] == fullRowMask) {
+                mask |= 1 << row;
+            }
+        }
+        return mask;
     }
 
     public Mode getMode() {
@@ -83,27 +420,27 @@ public class GameState {
                 gamePiece = new Tetrimino(0);
                 gamePiece.setPosition(0, GAME_HEIGHT - 4 - gamePiece.getHeight());
 
-                heldPiece = null;
+                heldPiece = NO_PIECE;
                 allowHold = true;
 
-                nextPieces = new LinkedList<>();
-                pieceGenerator = new RandomPieceGenerator();
-                for (int i = 0; i < 4; i++) {
-                    nextPieces.add(pieceGenerator.nextPiece());
-                }
-
-                solidTiles = new Tile[GAME_HEIGHT][GAME_WIDTH];
+                initBoard(GAME_WIDTH, GAME_HEIGHT);
 
                 gameScore = 0;
                 gameLevel = 1;
                 linesCleared = 0;
+                piecesPlaced = 0;
+                tSpinCount = 0;
+                tSpinMiniCount = 0;
                 pieceOnGround = false;
-                lineClearMessages = new LinkedList<>();
-                lineClearMessagesTimestamp = GLFW.glfwGetTime();
+                gameOver = false;
+                lineClearResult = ClearResult.NONE;
+                lineClearResultTimestamp = clock.getTime();
                 comboStreak = -1;
-                lineClearStart = 0.0;
-                lineClear = false;
-                clearRows = null;
+                phase = Phase.ACTIVE;
+                phaseStart = clock.getTime();
+                phaseEnd = Double.POSITIVE_INFINITY;
+                clearRowsBase = 0;
+                clearRowsMask = 0;
 
                 cameraPushDirection = CameraPushDirection.NONE;
                 lastCameraPushDirection = CameraPushDirection.NONE;
@@ -130,11 +467,11 @@ public class GameState {
         this.gamePiece = gamePiece;
     }
 
-    public Tetrimino getHeldPiece() {
+    public int getHeldPiece() {
         return heldPiece;
     }
 
-    public void setHeldPiece(Tetrimino heldPiece) {
+    public void setHeldPiece(int heldPiece) {
         this.heldPiece = heldPiece;
     }
 
@@ -146,28 +483,31 @@ public class GameState {
         this.allowHold = allowHold;
     }
 
-    public Deque<Tetrimino> getNextPieces() {
-        return nextPieces;
+    public int getPreviewCount() {
+        return PREVIEW_COUNT;
     }
 
-    public void setNextPieces(Deque<Tetrimino> nextPieces) {
-        this.nextPieces = nextPieces;
+    /**
+     * Id of a piece in the queue, 0 is the piece that spawns next
+     */
+    public int getNextPiece(int index) {
+        return pieceRandomizer.peek(index);
     }
 
-    public RandomPieceGenerator getPieceGenerator() {
-        return pieceGenerator;
+    public PieceRandomizer getPieceRandomizer() {
+        return pieceRandomizer;
     }
 
-    public void setPieceGenerator(RandomPieceGenerator pieceGenerator) {
-        this.pieceGenerator = pieceGenerator;
+    public void setPieceRandomizer(PieceRandomizer pieceRandomizer) {
+        this.pieceRandomizer = pieceRandomizer;
     }
 
-    public double getGameSpeed() {
-        return gameSpeed;
+    public double getGravity() {
+        return gravity;
     }
 
-    public void setGameSpeed(double gameSpeed) {
-        this.gameSpeed = gameSpeed;
+    public void setGravity(double gravity) {
+        this.gravity = gravity;
     }
 
     public int getGameScore() {
@@ -194,6 +534,14 @@ public class GameState {
         this.linesCleared = linesCleared;
     }
 
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    public void setGameOver(boolean gameOver) {
+        this.gameOver = gameOver;
+    }
+
     public boolean isPieceOnGround() {
         return pieceOnGround;
     }
@@ -202,16 +550,44 @@ public class GameState {
         this.pieceOnGround = pieceOnGround;
     }
 
-    public LinkedList<Message> getLineClearMessages() {
-        return lineClearMessages;
+    public int getLineClearResult() {
+        return lineClearResult;
+    }
+
+    public void setLineClearResult(int lineClearResult) {
+        this.lineClearResult = lineClearResult;
     }
 
-    public void setLineClearMessagesTimestamp(double time) {
-        lineClearMessagesTimestamp = time;
+    public void setLineClearResultTimestamp(double time) {
+        lineClearResultTimestamp = time;
     }
 
-    public double getLineClearMessagesTimestamp() {
-        return lineClearMessagesTimestamp;
+    public double getLineClearResultTimestamp() {
+        return lineClearResultTimestamp;
+    }
+
+    public int getPiecesPlaced() {
+        return piecesPlaced;
+    }
+
+    public void setPiecesPlaced(int piecesPlaced) {
+        this.piecesPlaced = piecesPlaced;
+    }
+
+    public int getTSpinCount() {
+        return tSpinCount;
+    }
+
+    public void setTSpinCount(int tSpinCount) {
+        this.tSpinCount = tSpinCount;
+    }
+
+    public int getTSpinMiniCount() {
+        return tSpinMiniCount;
+    }
+
+    public void setTSpinMiniCount(int tSpinMiniCount) {
+        this.tSpinMiniCount = tSpinMiniCount;
     }
 
     public int getComboStreak() {
@@ -222,28 +598,55 @@ public class GameState {
         this.comboStreak = comboStreak;
     }
 
-    public boolean isLineClear() {
-        return lineClear;
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public double getPhaseStart() {
+        return phaseStart;
+    }
+
+    /**
+     * Clock time the current phase is over, infinite while a piece is active
+     */
+    public double getPhaseEnd() {
+        return phaseEnd;
+    }
+
+    public void setPhase(Phase phase, double phaseStart, double phaseEnd) {
+        this.phase = phase;
+        this.phaseStart = phaseStart;
+        this.phaseEnd = phaseEnd;
     }
 
-    public void setLineClear(boolean lineClear) {
-        this.lineClear = lineClear;
+    public boolean isLineClear() {
+        return phase == Phase.LINE_CLEAR;
     }
 
     public double getLineClearStart() {
-        return lineClearStart;
+        return phaseStart;
     }
 
-    public void setLineClearStart(double lineClearStart) {
-        this.lineClearStart = lineClearStart;
+    public int getClearRowsBase() {
+        return clearRowsBase;
     }
 
-    public Set<Integer> getClearRows() {
-        return clearRows;
+    public int getClearRowsMask() {
+        return clearRowsMask;
     }
 
-    public void setClearRows(Set<Integer> clearRows) {
-        this.clearRows = clearRows;
+    public int getClearRowCount() {
+        return Integer.bitCount(clearRowsMask);
+    }
+
+    public boolean isClearRow(int y) {
+        int offset = y - clearRowsBase;
+        return offset >= 0 && offset < Integer.SIZE && (clearRowsMask & (1 << offset)) != 0;
+    }
+
+    public void setClearRows(int baseY, int rowMask) {
+        this.clearRowsBase = baseY;
+        this.clearRowsMask = rowMask;
     }
 
     public CameraPushDirection getCameraPushDirection() {
@@ -280,12 +683,14 @@ public class GameState {
 
     public Tile[][] getDrawnTiles(int width, int height, boolean runSafe, boolean includeExtras) {
         Tile[][] out = new Tile[height][width];
+        Tile[] tileTypes = Tile.values();
         for (int y = 0; y < height; y++) {
             for (int x = 0; x < width; x++) {
-                out[y][x] = solidTiles[y][x];
+                int color = tileColors[y * boardWidth + x];
+                out[y][x] = (color == 0) ? null : tileTypes[color - 1];
             }
         }
-        boolean[][] pieces = gamePiece.getPieces();
+        int rotation = gamePiece.getRotation();
         int pieceLowestY = -1;
         if (includeExtras) {
             pieceLowestY = getPieceLowestPos();
@@ -294,27 +699,7 @@ public class GameState {
             for (int x = 0; x < gamePiece.getWidth(); x++) {
                 int boardX = x + gamePiece.getX();
                 int boardY = y + gamePiece.getY();
-                int pieceX = -1;
-                int pieceY = -1;
-                switch (gamePiece.getRotation()) {
-                    case 0:
-                        pieceX = x;
-                        pieceY = y;
-                        break;
-                    case 1:
-                        pieceX = gamePiece.getWidth() - 1 - y;
-                        pieceY = x;
-                        break;
-                    case 2:
-                        pieceX = gamePiece.getWidth() - 1 - x;
-                        pieceY = gamePiece.getHeight() - 1 - y;
-                        break;
-                    case 3:
-                        pieceX = y;
-                        pieceY = gamePiece.getHeight() - 1 - x;
-                        break;
-                }
-                if (!pieces[pieceY][pieceX]) {
+                if (!gamePiece.isFilled(rotation, x, y)) {
                     continue;
                 }
                 if (includeExtras) {
@@ -344,28 +729,124 @@ public class GameState {
     }
 
     public int getPieceLowestPos() {
-        int yPos = getGamePiece().getY();
-        int pos = yPos;
-        while (getGamePiece().getY() >= -4) {
-            getGamePiece().setY(getGamePiece().getY() - 1);
-            if (!isValidTilePos()) {
-                getGamePiece().setY(yPos);
-                return pos;
+        Tetrimino piece = getGamePiece();
+        return piece.getY() - getDropDistance(piece.getId(), piece.getX(), piece.getY(), piece.getRotation());
+    }
+
+    /**
+     * Finds how many rows a piece can fall from a valid position. Uses the column heights when the piece is above
+     * the surface in every column, which is the usual case, and only steps down the bitboard when it's been tucked
+     * under an overhang
+     */
+    public int getDropDistance(int pieceId, int x, int y, int rotation) {
+        int distance = Integer.MAX_VALUE;
+        int maxX = Tetrimino.getMaxX(pieceId, rotation);
+        for (int column = Tetrimino.getMinX(pieceId, rotation); column <= maxX; column++) {
+            int bottom = y + Tetrimino.getColumnBottom(pieceId, rotation, column);
+            int height = columnHeights[x + column];
+            if (bottom < height) {
+                return getDropDistanceStepped(pieceId, x, y, rotation);
             }
-            pos--;
+            distance = Math.min(distance, bottom - height);
+        }
+        return distance;
+    }
+
+    private int getDropDistanceStepped(int pieceId, int x, int y, int rotation) {
+        int distance = 0;
+        while (isValidTilePos(pieceId, x, y - distance - 1, rotation)) {
+            distance++;
         }
-        getGamePiece().setY(yPos);
-        return yPos;
+        return distance;
     }
 
     public boolean isValidTilePos() {
-        return getDrawnTiles(getBoardWidth(), getBoardHeight(), false, false) != null;
+        return isValidTilePos(gamePiece, gamePiece.getX(), gamePiece.getY(), gamePiece.getRotation());
+    }
+
+    /**
+     * Checks the piece against the row bitmasks as if it were at the given position and rotation
+     */
+    public boolean isValidTilePos(Tetrimino piece, int x, int y, int rotation) {
+        return isValidTilePos(piece.getId(), x, y, rotation);
+    }
+
+    /**
+     * Same as isValidTilePos but takes a state packed by Tetrimino.packState
+     */
+    public boolean isValidPieceState(int pieceState) {
+        return isValidTilePos(Tetrimino.getStateId(pieceState), Tetrimino.getStateX(pieceState),
+                Tetrimino.getStateY(pieceState), Tetrimino.getStateRotation(pieceState));
+    }
+
+    int[] getRows() {
+        return rows;
+    }
+
+    int getFullRowMask() {
+        return fullRowMask;
+    }
+
+    public boolean isValidTilePos(int pieceId, int x, int y, int rotation) {
+        return fits(rows, boardHeight, fullRowMask, pieceId, x, y, rotation);
+    }
+
+    /**
+     * The collision rule for a board of row bit masks, used for the game's board and for the copies bots search
+     */
+    public static boolean fits(int[] rows, int height, int fullRowMask, int pieceId, int x, int y, int rotation) {
+        int maxRow = Tetrimino.getMaxY(pieceId, rotation);
+        for (int row = Tetrimino.getMinY(pieceId, rotation); row <= maxRow; row++) {
+            int boardY = y + row;
+            if (boardY < 0 || boardY >= height) {
+                return false;
+            }
+            long shifted = shiftRowMask(Tetrimino.getRowMask(pieceId, rotation, row), x);
+            if (shifted == -1L || (shifted & ~(long) fullRowMask) != 0 || (rows[boardY] & shifted) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean canPieceMove(int dx, int dy) {
+        return isValidTilePos(gamePiece, gamePiece.getX() + dx, gamePiece.getY() + dy, gamePiece.getRotation());
+    }
+
+    /**
+     * Checks if the game piece would collide with something if it moved down one row
+     */
+    public boolean isPieceBlockedBelow() {
+        return !canPieceMove(0, -1);
+    }
+
+    /**
+     * Moves a piece row mask to board column x, returns -1 if part of the mask would go past the left edge
+     */
+    public static long shiftRowMask(int mask, int x) {
+        if (x >= 0) {
+            return (x >= Integer.SIZE) ? -1L : ((long) mask << x);
+        }
+        if (x <= -Integer.SIZE || (mask & ((1 << -x) - 1)) != 0) {
+            return -1L;
+        }
+        return mask >>> -x;
     }
 
     public enum Mode {
         GAME
     }
 
+    /**
+     * What the board is doing between pieces, every phase but ACTIVE ends at a set time
+     */
+    public enum Phase {
+        ACTIVE,
+        LOCK_FLASH,
+        LINE_CLEAR,
+        ARE,
+    }
+
     public enum CameraPushDirection {
         NONE,
         LEFT,
@@ -0,0 +1,152 @@
+package game;
+
+import org.lwjgl.glfw.GLFWGamepadState;
+
+import static org.lwjgl.glfw.GLFW.*;
+
+/**
+ * Polls every connected gamepad at a fixed rate and turns button edges into input events. GLFW only allows
+ * joystick calls from the main thread, so the main loop calls pollIfDue() between waiting for window events.
+ * Each joystick gets two preallocated state structs that swap roles every poll, nothing is allocated while polling
+ */
+public class GamepadSampler implements AutoCloseable {
+    public static final double DEFAULT_RATE = 1000.0;
+    public static final double MAX_RATE = 1000.0;
+
+    private static final int JOYSTICK_COUNT = GLFW_JOYSTICK_LAST + 1;
+    private static final int[] buttons = {
+            GLFW_GAMEPAD_BUTTON_A,
+            GLFW_GAMEPAD_BUTTON_B,
+            GLFW_GAMEPAD_BUTTON_DPAD_LEFT,
+            GLFW_GAMEPAD_BUTTON_DPAD_RIGHT,
+            GLFW_GAMEPAD_BUTTON_DPAD_UP,
+            GLFW_GAMEPAD_BUTTON_DPAD_DOWN,
+            GLFW_GAMEPAD_BUTTON_Y,
+            GLFW_GAMEPAD_BUTTON_LEFT_BUMPER,
+            GLFW_GAMEPAD_BUTTON_RIGHT_BUMPER,
+    };
+    private static final int[] buttonActions = {
+            InputEvent.ROTATE_CCW,
+            InputEvent.ROTATE_CW,
+            InputEvent.MOVE_LEFT,
+            InputEvent.MOVE_RIGHT,
+            InputEvent.HARD_DROP,
+            InputEvent.SOFT_DROP,
+            InputEvent.HOLD,
+            InputEvent.HOLD,
+            InputEvent.HOLD,
+    };
+
+    private final Controls controls;
+    private final Clock clock;
+    private final GLFWGamepadState.Buffer stateBufferA;
+    private final GLFWGamepadState.Buffer stateBufferB;
+    private GLFWGamepadState[] currentStates;
+    private GLFWGamepadState[] lastStates;
+    private final boolean[] connected;
+    private double pollInterval;
+    private double nextPollTime;
+
+    public GamepadSampler(Controls controls, Clock clock) {
+        this(controls, clock, DEFAULT_RATE);
+    }
+
+    public GamepadSampler(Controls controls, Clock clock, double rate) {
+        this.controls = controls;
+        this.clock = clock;
+        stateBufferA = GLFWGamepadState.calloc(JOYSTICK_COUNT);
+        stateBufferB = GLFWGamepadState.calloc(JOYSTICK_COUNT);
+        currentStates = new GLFWGamepadState[JOYSTICK_COUNT];
+        lastStates = new GLFWGamepadState[JOYSTICK_COUNT];
+        for (int jid = 0; jid < JOYSTICK_COUNT; jid++) {
+            currentStates[jid] = stateBufferA.get(jid);
+            lastStates[jid] = stateBufferB.get(jid);
+        }
+        connected = new boolean[JOYSTICK_COUNT];
+        setRate(rate);
+        nextPollTime = clock.getTime();
+    }
+
+    /**
+     * Sets how many times a second the gamepads are sampled, capped at MAX_RATE
+     */
+    public void setRate(double rate) {
+        if (!(rate > 0)) {
+            throw new IllegalArgumentException("Invalid gamepad sample rate: " + rate);
+        }
+        pollInterval = 1.0 / Math.min(rate, MAX_RATE);
+    }
+
+    public double getRate() {
+        return 1.0 / pollInterval;
+    }
+
+    public double getNextPollTime() {
+        return nextPollTime;
+    }
+
+    /**
+     * Polls if the next sample is due, skipping samples that were missed instead of catching up on them
+     */
+    public void pollIfDue() {
+        double time = clock.getTime();
+        if (time < nextPollTime) {
+            return;
+        }
+        nextPollTime = Math.max(nextPollTime + pollInterval, time);
+        poll();
+    }
+
+    public void poll() {
+        GLFWGamepadState[] swap = lastStates;
+        lastStates = currentStates;
+        currentStates = swap;
+
+        for (int jid = 0; jid < JOYSTICK_COUNT; jid++) {
+            GLFWGamepadState state = currentStates[jid];
+            if (!glfwJoystickIsGamepad(jid) || !glfwGetGamepadState(jid, state)) {
+                if (connected[jid]) {
+                    connected[jid] = false;
+                    releaseAll(lastStates[jid]);
+                }
+                continue;
+            }
+            if (!connected[jid]) {
+                // The first sample after connecting only sets the baseline
+                connected[jid] = true;
+                continue;
+            }
+            GLFWGamepadState lastState = lastStates[jid];
+            for (int i = 0; i < buttons.length; i++) {
+                byte pressed = state.buttons(buttons[i]);
+                if (pressed != lastState.buttons(buttons[i])) {
+                    controls.sendInput(buttonActions[i], pressed == GLFW_PRESS);
+                }
+            }
+            if (state.axes(GLFW_GAMEPAD_AXIS_RIGHT_X) != lastState.axes(GLFW_GAMEPAD_AXIS_RIGHT_X)
+                    || state.axes(GLFW_GAMEPAD_AXIS_RIGHT_Y) != lastState.axes(GLFW_GAMEPAD_AXIS_RIGHT_Y)) {
+                controls.cameraX = state.axes(GLFW_GAMEPAD_AXIS_RIGHT_X);
+                controls.cameraY = -state.axes(GLFW_GAMEPAD_AXIS_RIGHT_Y);
+            }
+        }
+    }
+
+    /**
+     * Lets go of everything a disconnected gamepad was holding so no action stays stuck down
+     */
+    private void releaseAll(GLFWGamepadState lastState) {
+        for (int i = 0; i < buttons.length; i++) {
+            if (lastState.buttons(buttons[i]) == GLFW_PRESS) {
+                controls.sendInput(buttonActions[i], false);
+            }
+        }
+        controls.cameraX = 0.0f;
+        controls.cameraY = 0.0f;
+    }
+
+    @Override
+    public void close() {
+        stateBufferA.free();
+        stateBufferB.free();
+    }
+}
@@ -0,0 +1,66 @@
+package game;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Garbage lines waiting to rise on a board in versus. Any board's engine can add to it without a lock, only the
+ * board's own engine takes lines out or cancels them against what it sends back. The hole column for each batch of
+ * lines comes from the queue's own seeded generator so games can be repeated
+ */
+public class GarbageQueue {
+    private final AtomicInteger pending = new AtomicInteger();
+    private final SplittableRandom random;
+    private long received;
+
+    public GarbageQueue(long seed) {
+        random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Queues lines sent by another board, safe from any thread
+     */
+    public void add(int lines) {
+        pending.addAndGet(lines);
+    }
+
+    /**
+     * Cancels pending lines with an attack and returns what's left of the attack to send on
+     */
+    public int cancel(int attack) {
+        while (true) {
+            int current = pending.get();
+            int cancelled = Math.min(current, attack);
+            if (pending.compareAndSet(current, current - cancelled)) {
+                return attack - cancelled;
+            }
+        }
+    }
+
+    /**
+     * Takes every pending line, for the board's engine when they rise
+     */
+    public int take() {
+        int lines = pending.getAndSet(0);
+        received += lines;
+        return lines;
+    }
+
+    public int getPending() {
+        return pending.get();
+    }
+
+    /**
+     * Lines taken out to rise so far
+     */
+    public long getReceived() {
+        return received;
+    }
+
+    /**
+     * Picks the hole column for the next batch of lines
+     */
+    public int nextHoleColumn(int width) {
+        return random.nextInt(width);
+    }
+}
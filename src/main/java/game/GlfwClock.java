@@ -0,0 +1,13 @@
+package game;
+
+import org.lwjgl.glfw.GLFW;
+
+/**
+ * Uses the GLFW timer, needs GLFW to be initialized
+ */
+public class GlfwClock implements Clock {
+    @Override
+    public double getTime() {
+        return GLFW.glfwGetTime();
+    }
+}
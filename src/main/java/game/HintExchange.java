@@ -0,0 +1,205 @@
+package game;
+
+import model.Tetrimino;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Passes positions from the engine to a hint searcher on its own thread and the searcher's placements on to the
+ * renderer. Nothing in here blocks the engine: it publishes a copy of the position whenever a piece spawns or is
+ * held and carries on, the searcher always picks up the newest one, and a placement for a position the game has
+ * already moved past is thrown away
+ */
+public class HintExchange {
+    private volatile Request request;
+    private volatile Result result;
+    private volatile Thread searcher;
+    // Only written by the engine with the state's lock held
+    private long generation;
+
+    /**
+     * Copies the position of the piece that just came into play, must be called with the state's lock held
+     */
+    public void publish(GameState state) {
+        int[] rows = new int[state.getBoardHeight()];
+        for (int y = 0; y < rows.length; y++) {
+            rows[y] = state.getRow(y);
+        }
+        int[] queue = new int[state.getPreviewCount()];
+        for (int i = 0; i < queue.length; i++) {
+            queue[i] = state.getNextPiece(i);
+        }
+        request = new Request(++generation, System.nanoTime(), state.getBoardWidth(), rows,
+                state.getGamePiece().getId(), state.getHeldPiece(), state.isAllowHold(), queue);
+        LockSupport.unpark(searcher);
+    }
+
+    /**
+     * Waits for a position newer than the given generation, only one searcher thread can wait at a time
+     */
+    public Request awaitRequest(long lastGeneration) throws InterruptedException {
+        searcher = Thread.currentThread();
+        Request current;
+        while ((current = request) == null || current.getGeneration() == lastGeneration) {
+            LockSupport.park(this);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Generation of the newest position, 0 before the first one
+     */
+    public long getGeneration() {
+        Request current = request;
+        return (current == null) ? 0 : current.getGeneration();
+    }
+
+    /**
+     * False once the game has moved on from the position, searchers check this to give up early
+     */
+    public boolean isCurrent(long generation) {
+        return getGeneration() == generation;
+    }
+
+    public void publishResult(Result result) {
+        if (isCurrent(result.getGeneration())) {
+            this.result = result;
+        }
+    }
+
+    /**
+     * The best placement found so far for the newest position, null if there isn't one yet
+     */
+    public Result getResult() {
+        Result current = result;
+        return (current != null && isCurrent(current.getGeneration())) ? current : null;
+    }
+
+    /**
+     * The board as row bitmasks, the piece that came into play, hold and the preview
+     */
+    public static class Request {
+        private final long generation;
+        private final long publishTime;
+        private final int width;
+        private final int[] rows;
+        private final int pieceId;
+        private final int heldPiece;
+        private final boolean allowHold;
+        private final int[] queue;
+
+        Request(long generation, long publishTime, int width, int[] rows, int pieceId, int heldPiece,
+                boolean allowHold, int[] queue) {
+            this.generation = generation;
+            this.publishTime = publishTime;
+            this.width = width;
+            this.rows = rows;
+            this.pieceId = pieceId;
+            this.heldPiece = heldPiece;
+            this.allowHold = allowHold;
+            this.queue = queue;
+        }
+
+        public long getGeneration() {
+            return generation;
+        }
+
+        /**
+         * System.nanoTime when the engine published the position
+         */
+        public long getPublishTime() {
+            return publishTime;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return rows.length;
+        }
+
+        /**
+         * Copy of the rows, bit x of row y set when the cell is filled
+         */
+        public int[] getRows() {
+            return rows.clone();
+        }
+
+        public int getPieceId() {
+            return pieceId;
+        }
+
+        public int getHeldPiece() {
+            return heldPiece;
+        }
+
+        public boolean isAllowHold() {
+            return allowHold;
+        }
+
+        public int getQueueLength() {
+            return queue.length;
+        }
+
+        public int getQueuePiece(int index) {
+            return queue[index];
+        }
+    }
+
+    /**
+     * Where the hinted piece ends up, which may be the held piece, and how many pieces deep the search looked
+     */
+    public static class Result {
+        private final long generation;
+        private final int pieceId;
+        private final int x;
+        private final int y;
+        private final int rotation;
+        private final int depth;
+
+        public Result(long generation, int pieceId, int x, int y, int rotation, int depth) {
+            this.generation = generation;
+            this.pieceId = pieceId;
+            this.x = x;
+            this.y = y;
+            this.rotation = rotation;
+            this.depth = depth;
+        }
+
+        public long getGeneration() {
+            return generation;
+        }
+
+        public int getPieceId() {
+            return pieceId;
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        public int getRotation() {
+            return rotation;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public int getMinoX(int mino) {
+            return x + Tetrimino.getMinoX(pieceId, rotation, mino);
+        }
+
+        public int getMinoY(int mino) {
+            return y + Tetrimino.getMinoY(pieceId, rotation, mino);
+        }
+    }
+}
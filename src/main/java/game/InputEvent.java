@@ -0,0 +1,34 @@
+package game;
+
+/**
+ * Packs an input event into a single int so it can be queued without allocating.
+ * Bits 0-3 hold the action and bit 4 is set for a press, clear for a release
+ */
+public class InputEvent {
+    public static final int MOVE_LEFT = 0;
+    public static final int MOVE_RIGHT = 1;
+    public static final int SOFT_DROP = 2;
+    public static final int HARD_DROP = 3;
+    public static final int ROTATE_CW = 4;
+    public static final int ROTATE_CCW = 5;
+    public static final int HOLD = 6;
+    public static final int ACTION_COUNT = 7;
+
+    private static final int ACTION_MASK = 0xF;
+    private static final int PRESSED_BIT = 1 << 4;
+
+    private InputEvent() {
+    }
+
+    public static int pack(int action, boolean pressed) {
+        return (action & ACTION_MASK) | (pressed ? PRESSED_BIT : 0);
+    }
+
+    public static int getAction(int event) {
+        return event & ACTION_MASK;
+    }
+
+    public static boolean isPressed(int event) {
+        return (event & PRESSED_BIT) != 0;
+    }
+}
@@ -0,0 +1,65 @@
+package game;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded ring buffer of timestamped input events for exactly one producer thread and one consumer thread.
+ * Events and times live in primitive arrays, the two counters are the only shared state
+ */
+public class InputEventQueue {
+    private final int[] events;
+    private final long[] times;
+    private final int mask;
+    // Next slot to write, only advanced by the producer
+    private final AtomicLong tail = new AtomicLong();
+    // Next slot to read, only advanced by the consumer
+    private final AtomicLong head = new AtomicLong();
+
+    public InputEventQueue(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        events = new int[capacity];
+        times = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Adds an event, returns false and drops it if the consumer has fallen a whole buffer behind
+     */
+    public boolean offer(int event, long timeNanos) {
+        long t = tail.get();
+        if (t - head.get() >= events.length) {
+            return false;
+        }
+        int slot = (int) t & mask;
+        events[slot] = event;
+        times[slot] = timeNanos;
+        // The ordered store publishes the slot contents before the new tail
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    public boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+
+    /**
+     * The oldest event, only valid while the queue isn't empty
+     */
+    public int peekEvent() {
+        return events[(int) head.get() & mask];
+    }
+
+    public long peekTime() {
+        return times[(int) head.get() & mask];
+    }
+
+    public void remove() {
+        head.lazySet(head.get() + 1);
+    }
+
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+}
@@ -0,0 +1,11 @@
+package game;
+
+/**
+ * Gets told about every tick and every input event the engine plays back, in order and on the engine thread with
+ * the state locked. A tick's time and the events after it are enough to run the same game again
+ */
+public interface InputRecorder {
+    void onTick(double time);
+
+    void onInput(int event, long timeNanos);
+}
@@ -0,0 +1,35 @@
+package game;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Virtual clock that only moves when told to, lets games be simulated faster than real time. The time is kept as
+ * double bits in an AtomicLong so worker threads can read it while another thread advances it
+ */
+public class ManualClock implements Clock {
+    private final AtomicLong timeBits = new AtomicLong();
+
+    public ManualClock() {
+        this(0.0);
+    }
+
+    public ManualClock(double time) {
+        setTime(time);
+    }
+
+    @Override
+    public double getTime() {
+        return Double.longBitsToDouble(timeBits.get());
+    }
+
+    public void setTime(double time) {
+        timeBits.set(Double.doubleToLongBits(time));
+    }
+
+    public void advance(double seconds) {
+        long current;
+        do {
+            current = timeBits.get();
+        } while (!timeBits.compareAndSet(current, Double.doubleToLongBits(Double.longBitsToDouble(current) + seconds)));
+    }
+}
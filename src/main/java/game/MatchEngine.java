@@ -0,0 +1,150 @@
+package game;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Runs a versus match between any number of boards, from local versus to bot leagues, on a small fixed pool of
+ * worker threads instead of a thread per board. Boards are split between the workers up front and only ever ticked
+ * by their own worker, an EngineGroup. The only thing boards share is garbage: an attack is added to the target's
+ * lock free GarbageQueue, so no lock is held across boards while the match runs. A board attacks the next board
+ * after it that's still playing
+ */
+public class MatchEngine {
+    private final GameEngine[] engines;
+    private final GarbageQueue[] garbageQueues;
+    // Per board, 0 while it's playing and the place it finished in once it's out
+    private final AtomicIntegerArray places;
+    private final AtomicInteger playing;
+    // Only written by the board's worker
+    private final long[] linesSent;
+    private final EngineGroup[] workers;
+    private Thread[] threads;
+
+    /**
+     * The engines should be headless and run on the given clock, the seed picks the garbage hole columns
+     */
+    public MatchEngine(Clock clock, int workerCount, long seed, GameEngine... engines) {
+        if (workerCount < 1 || engines.length == 0) {
+            throw new IllegalArgumentException("Invalid match of " + engines.length + " boards on " + workerCount + " workers");
+        }
+        this.engines = engines.clone();
+        garbageQueues = new GarbageQueue[engines.length];
+        places = new AtomicIntegerArray(engines.length);
+        playing = new AtomicInteger(engines.length);
+        linesSent = new long[engines.length];
+        SplittableRandom seeds = new SplittableRandom(seed);
+        for (int i = 0; i < engines.length; i++) {
+            int board = i;
+            garbageQueues[i] = new GarbageQueue(seeds.nextLong());
+            engines[i].setGarbageQueue(garbageQueues[i]);
+            engines[i].setAttackListener(lines -> sendAttack(board, lines));
+        }
+        // Board i goes to worker i % count, as its board i / count
+        int count = Math.min(workerCount, engines.length);
+        workers = new EngineGroup[count];
+        for (int i = 0; i < count; i++) {
+            int worker = i;
+            GameEngine[] group = new GameEngine[(engines.length - i + count - 1) / count];
+            for (int j = 0; j < group.length; j++) {
+                group[j] = engines[i + j * count];
+            }
+            workers[i] = new EngineGroup(clock, group);
+            workers[i].setGameOverListener(index -> places.set(worker + index * count, playing.getAndDecrement()));
+        }
+    }
+
+    /**
+     * Has the board played by the driver, stepped on the board's worker. Must be set before the match starts
+     */
+    public void setDriver(int board, BoardDriver driver) {
+        workers[board % workers.length].setDriver(board / workers.length, driver);
+    }
+
+    public void start() {
+        threads = new Thread[workers.length];
+        for (int i = 0; i < workers.length; i++) {
+            threads[i] = new Thread(workers[i], "Match worker " + i);
+            threads[i].start();
+        }
+    }
+
+    /**
+     * Stops the workers and waits for them, boards still playing are left where they are
+     */
+    public void stop() throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    /**
+     * True once at most one board is left, or the only board is out in a match of one
+     */
+    public boolean isFinished() {
+        return playing.get() <= ((engines.length > 1) ? 1 : 0);
+    }
+
+    /**
+     * The board that won, -1 while the match is still on
+     */
+    public int getWinner() {
+        if (engines.length == 1 || !isFinished()) {
+            return -1;
+        }
+        for (int i = 0; i < engines.length; i++) {
+            if (places.get(i) <= 1) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int getBoardCount() {
+        return engines.length;
+    }
+
+    public int getWorkerCount() {
+        return workers.length;
+    }
+
+    public GameEngine getEngine(int board) {
+        return engines[board];
+    }
+
+    public GarbageQueue getGarbageQueue(int board) {
+        return garbageQueues[board];
+    }
+
+    /**
+     * Place the board finished in, 0 while it's still playing
+     */
+    public int getPlace(int board) {
+        return places.get(board);
+    }
+
+    /**
+     * Garbage lines the board has sent after cancelling, only up to date once the match is stopped
+     */
+    public long getLinesSent(int board) {
+        return linesSent[board];
+    }
+
+    /**
+     * Called by the attacking board's engine on its worker
+     */
+    private void sendAttack(int board, int lines) {
+        linesSent[board] += lines;
+        for (int i = 1; i < engines.length; i++) {
+            int target = (board + i) % engines.length;
+            if (places.get(target) == 0) {
+                garbageQueues[target].add(lines);
+                return;
+            }
+        }
+    }
+}
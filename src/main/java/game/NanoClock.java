@@ -0,0 +1,17 @@
+package game;
+
+/**
+ * Real time clock that doesn't need GLFW, counts from when it was created
+ */
+public class NanoClock implements Clock {
+    private final long startNanos;
+
+    public NanoClock() {
+        startNanos = System.nanoTime();
+    }
+
+    @Override
+    public double getTime() {
+        return (System.nanoTime() - startNanos) / 1e9;
+    }
+}
@@ -0,0 +1,38 @@
+package game;
+
+/**
+ * Deals out piece ids. Implementations are seeded so the same seed always gives the same sequence
+ */
+public interface PieceRandomizer {
+    /**
+     * Removes and returns the next piece id
+     */
+    int next();
+
+    /**
+     * Looks at a piece without removing it, 0 is the piece next() would return
+     */
+    int peek(int ahead);
+
+    long getSeed();
+
+    String getName();
+
+    /**
+     * Creates a randomizer from the name returned by getName()
+     */
+    static PieceRandomizer create(String name, long seed) {
+        switch (name) {
+            case BagRandomizer.NAME_7_BAG:
+                return new BagRandomizer(seed, 1);
+            case BagRandomizer.NAME_14_BAG:
+                return new BagRandomizer(seed, 2);
+            case TgmRandomizer.NAME:
+                return new TgmRandomizer(seed);
+            case PureRandomizer.NAME:
+                return new PureRandomizer(seed);
+            default:
+                throw new IllegalArgumentException("Unknown piece randomizer: " + name);
+        }
+    }
+}
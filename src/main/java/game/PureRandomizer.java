@@ -0,0 +1,24 @@
+package game;
+
+import model.Tetrimino;
+
+/**
+ * Every piece is picked independently with equal odds
+ */
+public class PureRandomizer extends QueuedPieceRandomizer {
+    public static final String NAME = "random";
+
+    public PureRandomizer(long seed) {
+        super(seed);
+    }
+
+    @Override
+    protected int generate() {
+        return random.nextInt(Tetrimino.PIECE_COUNT);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+}
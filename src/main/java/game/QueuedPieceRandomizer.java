@@ -0,0 +1,64 @@
+package game;
+
+import java.util.SplittableRandom;
+
+/**
+ * Keeps generated pieces in an int ring buffer so pieces far ahead can be peeked at without allocating
+ */
+public abstract class QueuedPieceRandomizer implements PieceRandomizer {
+    protected final SplittableRandom random;
+    private final long seed;
+    private int[] queue;
+    private int head;
+    private int size;
+
+    protected QueuedPieceRandomizer(long seed) {
+        this.seed = seed;
+        this.random = new SplittableRandom(seed);
+        this.queue = new int[16];
+    }
+
+    /**
+     * Generates the piece that comes after every piece generated so far
+     */
+    protected abstract int generate();
+
+    @Override
+    public int next() {
+        fill(1);
+        int piece = queue[head];
+        head = (head + 1) & (queue.length - 1);
+        size--;
+        return piece;
+    }
+
+    @Override
+    public int peek(int ahead) {
+        fill(ahead + 1);
+        return queue[(head + ahead) & (queue.length - 1)];
+    }
+
+    @Override
+    public long getSeed() {
+        return seed;
+    }
+
+    private void fill(int count) {
+        while (size < count) {
+            if (size == queue.length) {
+                grow();
+            }
+            queue[(head + size) & (queue.length - 1)] = generate();
+            size++;
+        }
+    }
+
+    private void grow() {
+        int[] newQueue = new int[queue.length * 2];
+        for (int i = 0; i < size; i++) {
+            newQueue[i] = queue[(head + i) & (queue.length - 1)];
+        }
+        queue = newQueue;
+        head = 0;
+    }
+}
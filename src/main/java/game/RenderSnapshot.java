@@ -0,0 +1,222 @@
+package game;
+
+import model.Tetrimino;
+import model.Tile;
+
+/**
+ * Copy of everything the renderer draws, filled by the engine after each tick so the renderer never has to touch
+ * GameState or its lock. Instances are recycled through SnapshotExchange
+ */
+public class RenderSnapshot {
+    private static final int VISIBLE_HEIGHT = 20;
+    private static final byte TILE_GHOST = (byte) (Tile.BLOCK_GHOST.ordinal() + 1);
+    private static final Tile[] tileTypes = Tile.values();
+
+    private GameState.Mode mode;
+    private int bgOption;
+    private int width;
+    private int height;
+    // Drawn tiles including the piece and ghost, Tile ordinal + 1 indexed by y * width + x, 0 when empty
+    private byte[] tiles = new byte[0];
+    // Cells of the active piece per row, bit x set when the piece covers column x
+    private int[] pieceRows = new int[0];
+    private boolean pieceActive;
+    private boolean pieceOnGround;
+    private HintExchange hintExchange;
+    private long hintGeneration;
+    private int heldPiece = GameState.NO_PIECE;
+    private int[] nextPieces = new int[0];
+    private int gameScore;
+    private int gameLevel;
+    private boolean lineClear;
+    private double lineClearStart;
+    private int clearRowsBase;
+    private int clearRowsMask;
+    private int lineClearResult;
+    private double lineClearResultTimestamp;
+    private GameState.CameraPushDirection cameraPushDirection = GameState.CameraPushDirection.NONE;
+    private GameState.CameraPushDirection lastCameraPushDirection = GameState.CameraPushDirection.NONE;
+    private double cameraPushTimestamp;
+    private float cameraX;
+    private float cameraY;
+
+    /**
+     * Copies the visible part of the state, must be called with the state's lock held
+     */
+    public void fill(GameState state) {
+        mode = state.getMode();
+        bgOption = state.getBgOption();
+        width = state.getBoardWidth();
+        height = Math.min(VISIBLE_HEIGHT, state.getBoardHeight());
+        if (tiles.length != width * height) {
+            tiles = new byte[width * height];
+            pieceRows = new int[height];
+        }
+        if (nextPieces.length != state.getPreviewCount()) {
+            nextPieces = new int[state.getPreviewCount()];
+        }
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                tiles[y * width + x] = state.getTileColor(x, y);
+            }
+            pieceRows[y] = 0;
+        }
+
+        pieceActive = state.getPhase() == GameState.Phase.ACTIVE;
+        Tetrimino piece = state.getGamePiece();
+        int id = piece.getId();
+        int rotation = piece.getRotation();
+        byte pieceColor = (byte) (piece.getTileType().ordinal() + 1);
+        int ghostY = state.getPieceLowestPos();
+        for (int mino = 0; mino < Tetrimino.MINO_COUNT && pieceActive; mino++) {
+            int x = piece.getX() + Tetrimino.getMinoX(id, rotation, mino);
+            int y = ghostY + Tetrimino.getMinoY(id, rotation, mino);
+            if (isVisible(x, y) && tiles[y * width + x] == 0) {
+                tiles[y * width + x] = TILE_GHOST;
+            }
+        }
+        for (int mino = 0; mino < Tetrimino.MINO_COUNT && pieceActive; mino++) {
+            int x = piece.getX() + Tetrimino.getMinoX(id, rotation, mino);
+            int y = piece.getY() + Tetrimino.getMinoY(id, rotation, mino);
+            if (isVisible(x, y) && (tiles[y * width + x] == 0 || tiles[y * width + x] == TILE_GHOST)) {
+                tiles[y * width + x] = pieceColor;
+                pieceRows[y] |= 1 << x;
+            }
+        }
+
+        pieceOnGround = state.isPieceOnGround();
+        hintExchange = state.getHintExchange();
+        hintGeneration = (hintExchange == null) ? 0 : hintExchange.getGeneration();
+        heldPiece = state.getHeldPiece();
+        for (int i = 0; i < nextPieces.length; i++) {
+            nextPieces[i] = state.getNextPiece(i);
+        }
+        gameScore = state.getGameScore();
+        gameLevel = state.getGameLevel();
+        lineClear = state.isLineClear();
+        lineClearStart = state.getLineClearStart();
+        clearRowsBase = state.getClearRowsBase();
+        clearRowsMask = state.getClearRowsMask();
+        lineClearResult = state.getLineClearResult();
+        lineClearResultTimestamp = state.getLineClearResultTimestamp();
+        cameraPushDirection = state.getCameraPushDirection();
+        lastCameraPushDirection = state.getLastCameraPushDirection();
+        cameraPushTimestamp = state.getCameraPushTimestamp();
+        cameraX = state.getCameraControls().x;
+        cameraY = state.getCameraControls().y;
+    }
+
+    private boolean isVisible(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+
+    public GameState.Mode getMode() {
+        return mode;
+    }
+
+    public int getBgOption() {
+        return bgOption;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public Tile getTile(int x, int y) {
+        int color = tiles[y * width + x];
+        return (color == 0) ? null : tileTypes[color - 1];
+    }
+
+    public boolean isPieceCell(int x, int y) {
+        return (pieceRows[y] & (1 << x)) != 0;
+    }
+
+    /**
+     * False between pieces, while the lock flash, line clear or spawn delay runs
+     */
+    public boolean isPieceActive() {
+        return pieceActive;
+    }
+
+    public boolean isPieceOnGround() {
+        return pieceOnGround;
+    }
+
+    /**
+     * The hint for this snapshot's piece, read from the exchange when asked for so it shows up as soon as the
+     * searcher has it instead of on the engine's next tick. Null while hints are off or still being worked out
+     */
+    public HintExchange.Result getHint() {
+        if (hintExchange == null || !pieceActive) {
+            return null;
+        }
+        HintExchange.Result hint = hintExchange.getResult();
+        return (hint != null && hint.getGeneration() == hintGeneration) ? hint : null;
+    }
+
+    public int getHeldPiece() {
+        return heldPiece;
+    }
+
+    public int getPreviewCount() {
+        return nextPieces.length;
+    }
+
+    public int getNextPiece(int index) {
+        return nextPieces[index];
+    }
+
+    public int getGameScore() {
+        return gameScore;
+    }
+
+    public int getGameLevel() {
+        return gameLevel;
+    }
+
+    public boolean isLineClear() {
+        return lineClear;
+    }
+
+    public double getLineClearStart() {
+        return lineClearStart;
+    }
+
+    public boolean isClearRow(int y) {
+        int offset = y - clearRowsBase;
+        return offset >= 0 && offset < Integer.SIZE && (clearRowsMask & (1 << offset)) != 0;
+    }
+
+    public int getLineClearResult() {
+        return lineClearResult;
+    }
+
+    public double getLineClearResultTimestamp() {
+        return lineClearResultTimestamp;
+    }
+
+    public GameState.CameraPushDirection getCameraPushDirection() {
+        return cameraPushDirection;
+    }
+
+    public GameState.CameraPushDirection getLastCameraPushDirection() {
+        return lastCameraPushDirection;
+    }
+
+    public double getCameraPushTimestamp() {
+        return cameraPushTimestamp;
+    }
+
+    public float getCameraX() {
+        return cameraX;
+    }
+
+    public float getCameraY() {
+        return cameraY;
+    }
+}
@@ -0,0 +1,100 @@
+package game;
+
+/**
+ * Decides where a piece goes when it's rotated into something. Kick offsets are stored in flat tables indexed by
+ * piece class, from rotation and to rotation, the first offset of every entry is the unkicked rotation
+ */
+public abstract class RotationSystem {
+    public static final int CLASS_JLSTZ = 0;
+    public static final int CLASS_I = 1;
+    public static final int CLASS_O = 2;
+    public static final int MAX_KICKS = 5;
+    private static final int CLASS_COUNT = 3;
+
+    private final int[] kickCounts = new int[CLASS_COUNT * 16];
+    private final int[] kickOffsets = new int[CLASS_COUNT * 16 * MAX_KICKS * 2];
+
+    protected RotationSystem() {
+        // Every rotation at least tries the unkicked position
+        for (int i = 0; i < kickCounts.length; i++) {
+            kickCounts[i] = 1;
+        }
+    }
+
+    public abstract String getName();
+
+    /**
+     * Creates a rotation system from the name returned by getName()
+     */
+    public static RotationSystem create(String name) {
+        switch (name) {
+            case "SRS":
+                return new SrsRotationSystem();
+            case "SRS+":
+                return new SrsPlusRotationSystem();
+            case "ARS":
+                return new ArsRotationSystem();
+            default:
+                throw new IllegalArgumentException("Unknown rotation system: " + name);
+        }
+    }
+
+    /**
+     * Sets the kicks tried when rotating from one rotation to another, offsets are x, y pairs with y going up
+     */
+    protected void setKicks(int pieceClass, int from, int to, int... offsets) {
+        if (offsets.length % 2 != 0 || offsets.length > MAX_KICKS * 2) {
+            throw new IllegalArgumentException("Invalid kick table for " + from + "->" + to);
+        }
+        int entry = pieceClass * 16 + from * 4 + to;
+        kickCounts[entry] = offsets.length / 2;
+        System.arraycopy(offsets, 0, kickOffsets, entry * MAX_KICKS * 2, offsets.length);
+    }
+
+    public static int getPieceClass(int pieceId) {
+        switch (pieceId) {
+            case 0:
+                return CLASS_I;
+            case 3:
+                return CLASS_O;
+            default:
+                return CLASS_JLSTZ;
+        }
+    }
+
+    public int getKickCount(int pieceId, int from, int to) {
+        return kickCounts[getPieceClass(pieceId) * 16 + from * 4 + to];
+    }
+
+    public int getKickX(int pieceId, int from, int to, int kick) {
+        return kickOffsets[((getPieceClass(pieceId) * 16 + from * 4 + to) * MAX_KICKS + kick) * 2];
+    }
+
+    public int getKickY(int pieceId, int from, int to, int kick) {
+        return kickOffsets[((getPieceClass(pieceId) * 16 + from * 4 + to) * MAX_KICKS + kick) * 2 + 1];
+    }
+
+    /**
+     * Finds the first kick that fits on the board, returns its index or -1 if the piece can't rotate
+     */
+    public int findKick(GameState state, int pieceId, int x, int y, int from, int to) {
+        return findKick(state.getRows(), state.getBoardHeight(), state.getFullRowMask(), pieceId, x, y, from, to);
+    }
+
+    /**
+     * Same as findKick against a board of row bit masks
+     */
+    public int findKick(int[] rows, int height, int fullRowMask, int pieceId, int x, int y, int from, int to) {
+        int entry = getPieceClass(pieceId) * 16 + from * 4 + to;
+        int count = kickCounts[entry];
+        int offsets = entry * MAX_KICKS * 2;
+        for (int kick = 0; kick < count; kick++) {
+            int kickX = kickOffsets[offsets + kick * 2];
+            int kickY = kickOffsets[offsets + kick * 2 + 1];
+            if (GameState.fits(rows, height, fullRowMask, pieceId, x + kickX, y + kickY, to)) {
+                return kick;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,218 @@
+package game;
+
+import model.ClearResult;
+
+/**
+ * Handling and balance settings for a game. Times are in milliseconds, the soft drop factor multiplies the gravity
+ * speed. Scoring and the gravity curve live here too so they can be tuned without touching the engine
+ */
+public class Ruleset {
+    public static final double DEFAULT_DAS = 200.0;
+    public static final double DEFAULT_ARR = 50.0;
+    public static final double DEFAULT_SOFT_DROP_FACTOR = 20.0;
+    public static final double DEFAULT_LOCK_DELAY = 500.0;
+    public static final int DEFAULT_MOVE_RESET_LIMIT = 15;
+    public static final double DEFAULT_LOCK_FLASH = 0.0;
+    public static final double DEFAULT_LINE_CLEAR_DELAY = 1000.0;
+    public static final double DEFAULT_ARE = 0.0;
+    public static final double DEFAULT_GRAVITY_BASE = 0.8;
+    public static final double DEFAULT_GRAVITY_DECAY = 0.007;
+    public static final int DEFAULT_COMBO_POINTS = 50;
+    public static final double DEFAULT_B2B_MULTIPLIER = 1.5;
+    private static final int CLEAR_KINDS = 3 * 5;
+
+    private double das;
+    private double arr;
+    private double softDropFactor;
+    private double lockDelay;
+    private int moveResetLimit;
+    private double lockFlash;
+    private double lineClearDelay;
+    private double are;
+    private double gravityBase;
+    private double gravityDecay;
+    private int comboPoints;
+    private double b2bMultiplier;
+    // Indexed by T-spin kind * 5 + lines like ClearResult
+    private final int[] clearPoints = new int[CLEAR_KINDS];
+
+    public Ruleset() {
+        this(DEFAULT_DAS, DEFAULT_ARR, DEFAULT_SOFT_DROP_FACTOR, DEFAULT_LOCK_DELAY, DEFAULT_MOVE_RESET_LIMIT);
+    }
+
+    public Ruleset(double das, double arr, double softDropFactor, double lockDelay, int moveResetLimit) {
+        setDas(das);
+        setArr(arr);
+        setSoftDropFactor(softDropFactor);
+        setLockDelay(lockDelay);
+        setMoveResetLimit(moveResetLimit);
+        lockFlash = DEFAULT_LOCK_FLASH;
+        lineClearDelay = DEFAULT_LINE_CLEAR_DELAY;
+        are = DEFAULT_ARE;
+        gravityBase = DEFAULT_GRAVITY_BASE;
+        gravityDecay = DEFAULT_GRAVITY_DECAY;
+        comboPoints = DEFAULT_COMBO_POINTS;
+        b2bMultiplier = DEFAULT_B2B_MULTIPLIER;
+        for (int tSpin = 0; tSpin < 3; tSpin++) {
+            for (int lines = 0; lines < 5; lines++) {
+                clearPoints[tSpin * 5 + lines] = ClearResult.getBasePoints(lines, tSpin);
+            }
+        }
+    }
+
+    public Ruleset(Ruleset other) {
+        this(other.das, other.arr, other.softDropFactor, other.lockDelay, other.moveResetLimit);
+        lockFlash = other.lockFlash;
+        lineClearDelay = other.lineClearDelay;
+        are = other.are;
+        gravityBase = other.gravityBase;
+        gravityDecay = other.gravityDecay;
+        comboPoints = other.comboPoints;
+        b2bMultiplier = other.b2bMultiplier;
+        System.arraycopy(other.clearPoints, 0, clearPoints, 0, CLEAR_KINDS);
+    }
+
+    /**
+     * Delayed auto shift, how long a direction is held before it starts repeating
+     */
+    public double getDas() {
+        return das;
+    }
+
+    public void setDas(double das) {
+        this.das = checkTime("DAS", das);
+    }
+
+    /**
+     * Auto repeat rate, the time between repeated moves. 0 moves the piece straight to the wall
+     */
+    public double getArr() {
+        return arr;
+    }
+
+    public void setArr(double arr) {
+        this.arr = checkTime("ARR", arr);
+    }
+
+    public double getSoftDropFactor() {
+        return softDropFactor;
+    }
+
+    public void setSoftDropFactor(double softDropFactor) {
+        if (!(softDropFactor > 0)) {
+            throw new IllegalArgumentException("Invalid soft drop factor: " + softDropFactor);
+        }
+        this.softDropFactor = softDropFactor;
+    }
+
+    /**
+     * How long a piece can rest on the ground before it locks
+     */
+    public double getLockDelay() {
+        return lockDelay;
+    }
+
+    public void setLockDelay(double lockDelay) {
+        this.lockDelay = checkTime("Lock delay", lockDelay);
+    }
+
+    /**
+     * How many moves or rotations on the ground reset the lock delay before the piece locks right away
+     */
+    public int getMoveResetLimit() {
+        return moveResetLimit;
+    }
+
+    public void setMoveResetLimit(int moveResetLimit) {
+        if (moveResetLimit < 0) {
+            throw new IllegalArgumentException("Invalid move reset limit: " + moveResetLimit);
+        }
+        this.moveResetLimit = moveResetLimit;
+    }
+
+    /**
+     * How long a locked piece flashes before its lines clear or the next piece comes
+     */
+    public double getLockFlash() {
+        return lockFlash;
+    }
+
+    public void setLockFlash(double lockFlash) {
+        this.lockFlash = checkTime("Lock flash", lockFlash);
+    }
+
+    public double getLineClearDelay() {
+        return lineClearDelay;
+    }
+
+    public void setLineClearDelay(double lineClearDelay) {
+        this.lineClearDelay = checkTime("Line clear delay", lineClearDelay);
+    }
+
+    /**
+     * Spawn delay between a piece locking (or its lines clearing) and the next piece appearing
+     */
+    public double getAre() {
+        return are;
+    }
+
+    public void setAre(double are) {
+        this.are = checkTime("ARE", are);
+    }
+
+    /**
+     * Seconds per row at a level are (base - (level - 1) * decay) ^ (level - 1)
+     */
+    public double getGravityBase() {
+        return gravityBase;
+    }
+
+    public void setGravityBase(double gravityBase) {
+        this.gravityBase = gravityBase;
+    }
+
+    public double getGravityDecay() {
+        return gravityDecay;
+    }
+
+    public void setGravityDecay(double gravityDecay) {
+        this.gravityDecay = gravityDecay;
+    }
+
+    /**
+     * Points per level for every clear in a combo after the first
+     */
+    public int getComboPoints() {
+        return comboPoints;
+    }
+
+    public void setComboPoints(int comboPoints) {
+        this.comboPoints = comboPoints;
+    }
+
+    public double getB2bMultiplier() {
+        return b2bMultiplier;
+    }
+
+    public void setB2bMultiplier(double b2bMultiplier) {
+        this.b2bMultiplier = b2bMultiplier;
+    }
+
+    /**
+     * Points per level for clearing some lines with one of the ClearResult.TSPIN_ kinds
+     */
+    public int getClearPoints(int lines, int tSpin) {
+        return clearPoints[tSpin * 5 + lines];
+    }
+
+    public void setClearPoints(int lines, int tSpin, int points) {
+        clearPoints[tSpin * 5 + lines] = points;
+    }
+
+    private static double checkTime(String name, double millis) {
+        if (!(millis >= 0) || Double.isInfinite(millis)) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + millis);
+        }
+        return millis;
+    }
+}
@@ -0,0 +1,41 @@
+package game;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Triple buffer of render snapshots. The engine fills the back buffer and publishes it, the renderer takes the
+ * newest published one, and neither side ever waits on the other or allocates
+ */
+public class SnapshotExchange {
+    private static final int FRESH = 4;
+    private static final int INDEX_MASK = 3;
+
+    private final RenderSnapshot[] buffers = {new RenderSnapshot(), new RenderSnapshot(), new RenderSnapshot()};
+    // Index of the buffer waiting between the two threads, FRESH is set when it hasn't been taken yet
+    private final AtomicInteger middle = new AtomicInteger(1);
+    // Only touched by the engine thread
+    private int back = 0;
+    // Only touched by the render thread
+    private int front = 2;
+
+    /**
+     * The snapshot the engine should fill before calling publish()
+     */
+    public RenderSnapshot getBackBuffer() {
+        return buffers[back];
+    }
+
+    public void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Gets the newest published snapshot, it stays valid until the next call
+     */
+    public RenderSnapshot acquireLatest() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & INDEX_MASK;
+        }
+        return buffers[front];
+    }
+}
@@ -0,0 +1,26 @@
+package game;
+
+/**
+ * SRS with the symmetric I piece kicks from SRS+
+ */
+public class SrsPlusRotationSystem extends SrsRotationSystem {
+    private static final int[][] I_KICKS = {
+            {0, 1, 0, 0, 1, 0, -2, 0, -2, -1, 1, 2},
+            {1, 0, 0, 0, -1, 0, 2, 0, -1, -2, 2, 1},
+            {1, 2, 0, 0, -1, 0, 2, 0, -1, 2, 2, -1},
+            {2, 1, 0, 0, -2, 0, 1, 0, -2, 1, 1, -1},
+            {2, 3, 0, 0, 2, 0, -1, 0, 2, 1, -1, -1},
+            {3, 2, 0, 0, 1, 0, -2, 0, 1, -2, -2, 1},
+            {3, 0, 0, 0, 1, 0, -2, 0, 1, 2, -2, -1},
+            {0, 3, 0, 0, -1, 0, 2, 0, 2, -1, -1, 2},
+    };
+
+    public SrsPlusRotationSystem() {
+        super(I_KICKS);
+    }
+
+    @Override
+    public String getName() {
+        return "SRS+";
+    }
+}
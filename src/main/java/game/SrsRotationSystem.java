@@ -0,0 +1,48 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * The Super Rotation System used by guideline games
+ */
+public class SrsRotationSystem extends RotationSystem {
+    // I piece kicks, each row is the rotation from and to and then the offsets to try
+    private static final int[][] I_KICKS = {
+            {0, 1, 0, 0, -2, 0, 1, 0, -2, -1, 1, 2},
+            {1, 0, 0, 0, 2, 0, -1, 0, 2, 1, -1, -2},
+            {1, 2, 0, 0, -1, 0, 2, 0, -1, 2, 2, -1},
+            {2, 1, 0, 0, 1, 0, -2, 0, 1, -2, -2, 1},
+            {2, 3, 0, 0, 2, 0, -1, 0, 2, 1, -1, -2},
+            {3, 2, 0, 0, -2, 0, 1, 0, -2, -1, 1, 2},
+            {3, 0, 0, 0, 1, 0, -2, 0, 1, -2, -2, 1},
+            {0, 3, 0, 0, -1, 0, 2, 0, -1, 2, 2, -1},
+    };
+
+    public SrsRotationSystem() {
+        this(I_KICKS);
+    }
+
+    /**
+     * For SRS variants that only change the I piece kicks, rows laid out like I_KICKS. The table is passed in rather
+     * than set by an overridden method so nothing of the subclass runs before it's constructed
+     */
+    protected SrsRotationSystem(int[][] iKicks) {
+        setKicks(CLASS_JLSTZ, 0, 1, 0, 0, -1, 0, -1, 1, 0, -2, -1, -2);
+        setKicks(CLASS_JLSTZ, 1, 0, 0, 0, 1, 0, 1, -1, 0, 2, 1, 2);
+        setKicks(CLASS_JLSTZ, 1, 2, 0, 0, 1, 0, 1, -1, 0, 2, 1, 2);
+        setKicks(CLASS_JLSTZ, 2, 1, 0, 0, -1, 0, -1, 1, 0, -2, -1, -2);
+        setKicks(CLASS_JLSTZ, 2, 3, 0, 0, 1, 0, 1, 1, 0, -2, 1, -2);
+        setKicks(CLASS_JLSTZ, 3, 2, 0, 0, -1, 0, -1, -1, 0, 2, -1, 2);
+        setKicks(CLASS_JLSTZ, 3, 0, 0, 0, -1, 0, -1, -1, 0, 2, -1, 2);
+        setKicks(CLASS_JLSTZ, 0, 3, 0, 0, 1, 0, 1, 1, 0, -2, 1, -2);
+
+        for (int[] kicks : iKicks) {
+            setKicks(CLASS_I, kicks[0], kicks[1], Arrays.copyOfRange(kicks, 2, kicks.length));
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "SRS";
+    }
+}
@@ -0,0 +1,55 @@
+package game;
+
+import model.Tetrimino;
+
+/**
+ * TGM2 style randomizer, rerolls up to 6 times to avoid the last 4 pieces dealt. The first piece is never S, Z or O
+ */
+public class TgmRandomizer extends QueuedPieceRandomizer {
+    public static final String NAME = "tgm";
+
+    private static final int ROLLS = 6;
+    private static final int PIECE_S = 4;
+    private static final int PIECE_Z = 6;
+    private static final int[] FIRST_PIECES = {0, 1, 2, 5};
+
+    private final int[] history = {PIECE_Z, PIECE_S, PIECE_Z, PIECE_S};
+    private int historyIndex;
+    private boolean first;
+
+    public TgmRandomizer(long seed) {
+        super(seed);
+        first = true;
+    }
+
+    @Override
+    protected int generate() {
+        int piece;
+        if (first) {
+            first = false;
+            piece = FIRST_PIECES[random.nextInt(FIRST_PIECES.length)];
+        } else {
+            piece = random.nextInt(Tetrimino.PIECE_COUNT);
+            for (int roll = 1; roll < ROLLS && isInHistory(piece); roll++) {
+                piece = random.nextInt(Tetrimino.PIECE_COUNT);
+            }
+        }
+        history[historyIndex] = piece;
+        historyIndex = (historyIndex + 1) % history.length;
+        return piece;
+    }
+
+    private boolean isInHistory(int piece) {
+        for (int i = 0; i < history.length; i++) {
+            if (history[i] == piece) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+}
@@ -0,0 +1,110 @@
+package model;
+
+/**
+ * Packs the result of locking a piece into a single int so it can be scored and drawn without building lists.
+ * Bits 0-2 hold the lines cleared, bits 3-4 the T-spin kind, bit 5 back to back and bits 8-15 the combo count
+ */
+public class ClearResult {
+    public static final int NONE = 0;
+
+    public static final int TSPIN_NONE = 0;
+    public static final int TSPIN_MINI = 1;
+    public static final int TSPIN_FULL = 2;
+
+    private static final int LINES_MASK = 0x7;
+    private static final int TSPIN_SHIFT = 3;
+    private static final int TSPIN_MASK = 0x3 << TSPIN_SHIFT;
+    private static final int B2B_BIT = 1 << 5;
+    private static final int COMBO_SHIFT = 8;
+    private static final int COMBO_MASK = 0xFF << COMBO_SHIFT;
+    // Corners in front of the flat side of a T in each rotation, as classifyTSpin corner bits
+    private static final int[] frontCorners = {0xA, 0xC, 0x5, 0x3};
+    // Index of the last SRS kick, which always makes a full T-spin
+    private static final int LAST_KICK = 4;
+
+    // Indexed by T-spin kind * 5 + lines
+    private static final int[] basePoints = {
+            0, 100, 300, 500, 800,
+            100, 200, 400, 0, 0,
+            400, 800, 1200, 1600, 0,
+    };
+    // Garbage lines sent, indexed the same way
+    private static final int[] attackLines = {
+            0, 0, 1, 2, 4,
+            0, 0, 1, 0, 0,
+            0, 2, 4, 6, 0,
+    };
+    // Extra lines sent by combo count, the last entry goes for longer combos too
+    private static final int[] comboAttack = {0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 4, 5};
+    private static final boolean[] difficult = {
+            false, false, false, false, true,
+            false, true, true, false, false,
+            false, true, true, true, false,
+    };
+
+    private ClearResult() {
+    }
+
+    public static int pack(int lines, int tSpin, boolean b2b, int combo) {
+        return (lines & LINES_MASK) | (tSpin << TSPIN_SHIFT) | (b2b ? B2B_BIT : 0) | (Math.min(Math.max(combo, 0), 0xFF) << COMBO_SHIFT);
+    }
+
+    public static int getLines(int result) {
+        return result & LINES_MASK;
+    }
+
+    public static int getTSpin(int result) {
+        return (result & TSPIN_MASK) >>> TSPIN_SHIFT;
+    }
+
+    public static boolean isB2B(int result) {
+        return (result & B2B_BIT) != 0;
+    }
+
+    public static int getCombo(int result) {
+        return (result & COMBO_MASK) >>> COMBO_SHIFT;
+    }
+
+    /**
+     * Points for the clear before the level, back to back and combo bonuses are applied
+     */
+    public static int getBasePoints(int lines, int tSpin) {
+        return basePoints[tSpin * 5 + lines];
+    }
+
+    /**
+     * Garbage lines a clear sends in versus, with the back to back and combo bonuses
+     */
+    public static int getAttack(int result) {
+        int lines = getLines(result);
+        if (lines == 0) {
+            return 0;
+        }
+        int attack = attackLines[getTSpin(result) * 5 + lines] + (isB2B(result) ? 1 : 0);
+        return attack + comboAttack[Math.min(getCombo(result), comboAttack.length - 1)];
+    }
+
+    /**
+     * Classifies a T piece that was rotated into place with the 3 corner rule, returns one of the TSPIN_ kinds.
+     * Corner bits 0-3 are set when the cells at (x, y), (x, y + 2), (x + 2, y) and (x + 2, y + 2) of the piece's box
+     * are blocked, kick is the index of the kick the rotation used
+     */
+    public static int classifyTSpin(int rotation, int corners, int kick) {
+        int cornerCount = Integer.bitCount(corners);
+        if (cornerCount < 3) {
+            return TSPIN_NONE;
+        }
+        if (cornerCount == 4 || kick == LAST_KICK) {
+            return TSPIN_FULL;
+        }
+        int front = frontCorners[rotation];
+        return ((corners & front) == front) ? TSPIN_FULL : TSPIN_MINI;
+    }
+
+    /**
+     * Whether the clear keeps or earns a back to back bonus
+     */
+    public static boolean isDifficult(int lines, int tSpin) {
+        return difficult[tSpin * 5 + lines];
+    }
+}
@@ -44,6 +44,69 @@ public class Tetrimino {
     };
     private static final Tile[] tColors = {BLOCK_CYAN, BLOCK_BLUE, BLOCK_ORANGE, BLOCK_YELLOW, BLOCK_GREEN, BLOCK_PURPLE, BLOCK_RED};
 
+    public static final int PIECE_COUNT = 7;
+    public static final int MINO_COUNT = 4;
+    // Largest bounding box side, every table below is padded to this size
+    public static final int MAX_SIZE = 4;
+
+    // Tables indexed by orientation, which is id * 4 + rotation
+    private static final int[] sizes = new int[PIECE_COUNT];
+    private static final int[] rowMasks = new int[PIECE_COUNT * 4 * MAX_SIZE];
+    private static final int[] minoX = new int[PIECE_COUNT * 4 * MINO_COUNT];
+    private static final int[] minoY = new int[PIECE_COUNT * 4 * MINO_COUNT];
+    private static final int[] columnBottoms = new int[PIECE_COUNT * 4 * MAX_SIZE];
+    private static final int[] columnTops = new int[PIECE_COUNT * 4 * MAX_SIZE];
+    // minX, minY, maxX, maxY of the filled cells
+    private static final int[] bounds = new int[PIECE_COUNT * 4 * 4];
+
+    // Packed state layout: x and y as 12 bit signed values, then rotation and id
+    private static final int COORD_BITS = 12;
+    private static final int COORD_MASK = (1 << COORD_BITS) - 1;
+    private static final int ROTATION_SHIFT = COORD_BITS * 2;
+    private static final int ID_SHIFT = ROTATION_SHIFT + 2;
+
+    static {
+        for (int id = 0; id < PIECE_COUNT; id++) {
+            int size = pieces[id].length;
+            sizes[id] = size;
+            for (int rotation = 0; rotation < 4; rotation++) {
+                int orientation = id * 4 + rotation;
+                int mino = 0;
+                int minX = MAX_SIZE;
+                int minY = MAX_SIZE;
+                int maxX = -1;
+                int maxY = -1;
+                for (int x = 0; x < MAX_SIZE; x++) {
+                    columnBottoms[orientation * MAX_SIZE + x] = -1;
+                    columnTops[orientation * MAX_SIZE + x] = -1;
+                }
+                for (int y = 0; y < size; y++) {
+                    for (int x = 0; x < size; x++) {
+                        if (!isFilledInGrid(id, rotation, x, y)) {
+                            continue;
+                        }
+                        rowMasks[orientation * MAX_SIZE + y] |= 1 << x;
+                        minoX[orientation * MINO_COUNT + mino] = x;
+                        minoY[orientation * MINO_COUNT + mino] = y;
+                        mino++;
+                        if (columnBottoms[orientation * MAX_SIZE + x] == -1) {
+                            columnBottoms[orientation * MAX_SIZE + x] = y;
+                        }
+                        columnTops[orientation * MAX_SIZE + x] = y;
+                        minX = Math.min(minX, x);
+                        minY = Math.min(minY, y);
+                        maxX = Math.max(maxX, x);
+                        maxY = Math.max(maxY, y);
+                    }
+                }
+                bounds[orientation * 4] = minX;
+                bounds[orientation * 4 + 1] = minY;
+                bounds[orientation * 4 + 2] = maxX;
+                bounds[orientation * 4 + 3] = maxY;
+            }
+        }
+    }
+
     private int id;
     private int x;
     private int y;
@@ -98,14 +161,140 @@ public class Tetrimino {
     }
 
     public int getWidth() {
-        return pieces[id][0].length;
+        return sizes[id];
     }
 
     public int getHeight() {
-        return pieces[id].length;
+        return sizes[id];
     }
 
     public boolean[][] getPieces() {
         return pieces[id];
     }
-}
\ No newline at end of file
+
+    /**
+     * Checks a cell of the piece after rotation, x and y are relative to the bottom left of the piece's bounding box
+     */
+    public boolean isFilled(int rotation, int x, int y) {
+        return (getRowMask(id, rotation, y) & (1 << x)) != 0;
+    }
+
+    /**
+     * Gets one row of the rotated piece as a bitmask, bit x is set when column x of the bounding box is filled
+     */
+    public int getRowMask(int rotation, int row) {
+        return getRowMask(id, rotation, row);
+    }
+
+    /**
+     * Packs the id, position and rotation into a single int that can be stored and compared without allocating
+     */
+    public int getState() {
+        return packState(id, x, y, rotation);
+    }
+
+    public void setState(int state) {
+        id = getStateId(state);
+        x = getStateX(state);
+        y = getStateY(state);
+        rotation = getStateRotation(state);
+    }
+
+    public static int getSize(int id) {
+        return sizes[id];
+    }
+
+    public static Tile getTileType(int id) {
+        return tColors[id];
+    }
+
+    public static int getRowMask(int id, int rotation, int row) {
+        if (row < 0 || row >= MAX_SIZE) {
+            return 0;
+        }
+        return rowMasks[(id * 4 + rotation) * MAX_SIZE + row];
+    }
+
+    public static int getMinoX(int id, int rotation, int mino) {
+        return minoX[(id * 4 + rotation) * MINO_COUNT + mino];
+    }
+
+    public static int getMinoY(int id, int rotation, int mino) {
+        return minoY[(id * 4 + rotation) * MINO_COUNT + mino];
+    }
+
+    /**
+     * Lowest filled row of a column of the rotated piece, -1 if the column is empty
+     */
+    public static int getColumnBottom(int id, int rotation, int column) {
+        return columnBottoms[(id * 4 + rotation) * MAX_SIZE + column];
+    }
+
+    /**
+     * Highest filled row of a column of the rotated piece, -1 if the column is empty
+     */
+    public static int getColumnTop(int id, int rotation, int column) {
+        return columnTops[(id * 4 + rotation) * MAX_SIZE + column];
+    }
+
+    public static int getMinX(int id, int rotation) {
+        return bounds[(id * 4 + rotation) * 4];
+    }
+
+    public static int getMinY(int id, int rotation) {
+        return bounds[(id * 4 + rotation) * 4 + 1];
+    }
+
+    public static int getMaxX(int id, int rotation) {
+        return bounds[(id * 4 + rotation) * 4 + 2];
+    }
+
+    public static int getMaxY(int id, int rotation) {
+        return bounds[(id * 4 + rotation) * 4 + 3];
+    }
+
+    public static int packState(int id, int x, int y, int rotation) {
+        return (id << ID_SHIFT) | ((rotation & 3) << ROTATION_SHIFT) | ((y & COORD_MASK) << COORD_BITS) | (x & COORD_MASK);
+    }
+
+    public static int getStateId(int state) {
+        return state >>> ID_SHIFT;
+    }
+
+    public static int getStateX(int state) {
+        return (state << (Integer.SIZE - COORD_BITS)) >> (Integer.SIZE - COORD_BITS);
+    }
+
+    public static int getStateY(int state) {
+        return (state << (Integer.SIZE - COORD_BITS * 2)) >> (Integer.SIZE - COORD_BITS);
+    }
+
+    public static int getStateRotation(int state) {
+        return (state >>> ROTATION_SHIFT) & 3;
+    }
+
+    /**
+     * Moves a packed state by an offset, the offsets must keep x and y within the 12 bit range
+     */
+    public static int moveState(int state, int dx, int dy) {
+        return packState(getStateId(state), getStateX(state) + dx, getStateY(state) + dy, getStateRotation(state));
+    }
+
+    public static int rotateState(int state, int rotation) {
+        return (state & ~(3 << ROTATION_SHIFT)) | ((rotation & 3) << ROTATION_SHIFT);
+    }
+
+    private static boolean isFilledInGrid(int id, int rotation, int x, int y) {
+        int size = pieces[id].length;
+        switch (rotation) {
+            case 1:
+                return pieces[id][x][size - 1 - y];
+            case 2:
+                return pieces[id][size - 1 - y][size - 1 - x];
+            case 3:
+                return pieces[id][size - 1 - x][y];
+            default:
+                return pieces[id][y][x];
+        }
+    }
+}
@@ -9,6 +9,8 @@ public enum Tile {
     BLOCK_BLUE,
     BLOCK_ORANGE,
     BLOCK_GHOST,
+    BLOCK_HINT,
+    BLOCK_GARBAGE,
     WALL_V,
     WALL_H,
     WALL_J,
@@ -1,11 +1,12 @@
 package render;
 
 import game.GameState;
+import game.HintExchange;
+import game.RenderSnapshot;
 
-import model.Message;
+import model.ClearResult;
 import model.Tetrimino;
 import model.Tile;
-import org.joml.Vector2f;
 import org.joml.Vector3f;
 import org.lwjgl.glfw.GLFW;
 import render2D.BGRenderer;
@@ -137,88 +138,88 @@ public class GameRenderer {
             framesPerSecond = 0;
         }
 
-        state.lock.lock();
-        try {
-            double time = GLFW.glfwGetTime();
+        // Reads only the latest snapshot published by the engine so a frame never waits on a game tick
+        RenderSnapshot snapshot = state.getSnapshotExchange().acquireLatest();
 
-            glClearColor(1.0f, 1.0f, 1.0f, 0.0f);
-            glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
+        glClearColor(1.0f, 1.0f, 1.0f, 0.0f);
+        glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
 
-            if (window.isResized()) {
-                glViewport(0, 0, window.getWidth(), window.getHeight());
-                window.setResized(false);
-            }
+        if (window.isResized()) {
+            glViewport(0, 0, window.getWidth(), window.getHeight());
+            window.setResized(false);
+        }
 
-            if (state.getMode() == GameState.Mode.GAME) {
-                setCameraPos();
+        if (snapshot.getMode() == GameState.Mode.GAME) {
+            setCameraPos(snapshot);
 
-                shaderProgram3D.bind();
+            shaderProgram3D.bind();
 
-                if (state.getBgOption() == 1) {
-                    bgRenderer.render(window);
-                    gameScene.getAmbientLightColor().set(new Vector3f(0.3f, 0.15f, 1.0f));
-                    gameScene.getLightSource().setColor(new Vector3f(1.4f, 1.2f, 1.6f));
-                }
+            if (snapshot.getBgOption() == 1) {
+                bgRenderer.render(window);
+                gameScene.getAmbientLightColor().set(new Vector3f(0.3f, 0.15f, 1.0f));
+                gameScene.getLightSource().setColor(new Vector3f(1.4f, 1.2f, 1.6f));
+            }
 
-                gameScoreDisplay.renderCount(state.getGameScore());
-                gameLevelDisplay.renderCount(state.getGameLevel());
+            gameScoreDisplay.renderCount(snapshot.getGameScore());
+            gameLevelDisplay.renderCount(snapshot.getGameLevel());
 
-                holdText.render(gameScene, holdTextT);
-                nextText.render(gameScene, nextTextT);
-                drawTetrimino(state.getHeldPiece(), new Vector3f(-2.25f, 2.0f, 0.0f));
-                Vector3f nextPiecesPos = new Vector3f(2.25f, 2.0f, 0.0f);
-                for (Tetrimino piece : state.getNextPieces()) {
-                    drawTetrimino(piece, nextPiecesPos);
-                    nextPiecesPos.y -= 0.8f;
-                }
+            holdText.render(gameScene, holdTextT);
+            nextText.render(gameScene, nextTextT);
+            drawTetrimino(snapshot.getHeldPiece(), new Vector3f(-2.25f, 2.0f, 0.0f));
+            Vector3f nextPiecesPos = new Vector3f(2.25f, 2.0f, 0.0f);
+            for (int i = 0; i < snapshot.getPreviewCount(); i++) {
+                drawTetrimino(snapshot.getNextPiece(i), nextPiecesPos);
+                nextPiecesPos.y -= 0.8f;
+            }
 
-                drawTileBox(tetrisBoard, 0, 0, 11, 21);
-                Tile[][] tiles = state.getDrawnTiles(10, 20, true, true);
-                Tile[][] tilesSolid = state.getSolidTiles();
-                for (int y = 0; y < 20; y++) {
-                    if (state.isLineClear() && state.getClearRows().contains(y)) {
-                        gameScene.setShaderProgram(dissolveShader);
-                        float deltaTime = (float) (GLFW.glfwGetTime() - state.getLineClearStart());
-                        dissolveShader.setUniformFloat("uDeltaTime", (float) (Math.sqrt(3) * Math.pow(deltaTime, 0.5)));
-                        dissolveShader.bindTexture("textureDissolve", 2, ResourcesCache.getInstance().getDissolve());
-                    } else {
+            drawTileBox(tetrisBoard, 0, 0, 11, 21);
+            for (int y = 0; y < snapshot.getHeight(); y++) {
+                if (snapshot.isLineClear() && snapshot.isClearRow(y)) {
+                    gameScene.setShaderProgram(dissolveShader);
+                    float deltaTime = (float) (GLFW.glfwGetTime() - snapshot.getLineClearStart());
+                    dissolveShader.setUniformFloat("uDeltaTime", (float) (Math.sqrt(3) * Math.pow(deltaTime, 0.5)));
+                    dissolveShader.bindTexture("textureDissolve", 2, ResourcesCache.getInstance().getDissolve());
+                } else {
+                    gameScene.setShaderProgram(shaderProgram3D);
+                }
+                for (int x = 0; x < snapshot.getWidth(); x++) {
+                    if (snapshot.isPieceOnGround() && snapshot.isPieceCell(x, y)) {
+                        gameScene.setShaderProgram(pulseShader);
+                        tetrisBoard.render(snapshot.getTile(x, y), x + 1, y + 1);
                         gameScene.setShaderProgram(shaderProgram3D);
-                    }
-                    for (int x = 0; x < 10; x++) {
-                        if (state.isPieceOnGround() && tilesSolid[y][x] == null && tiles[y][x] != null && tiles[y][x] != Tile.BLOCK_GHOST) {
-                            gameScene.setShaderProgram(pulseShader);
-                            tetrisBoard.render(tiles[y][x], x + 1, y + 1);
-                            gameScene.setShaderProgram(shaderProgram3D);
-                        } else {
-                            tetrisBoard.render(tiles[y][x], x + 1, y + 1);
-                        }
+                    } else {
+                        tetrisBoard.render(snapshot.getTile(x, y), x + 1, y + 1);
                     }
                 }
-                gameScene.setShaderProgram(shaderProgram3D);
-
-                if (state.getLineClearMessages().size() > 0) {
-                    lineClearMessage.setMessages(state.getLineClearMessages());
-                    lineClearMessage.setTimeStart(state.getLineClearMessagesTimestamp());
-                    lineClearMessage.setComboAmount(state.getComboStreak());
+            }
+            gameScene.setShaderProgram(shaderProgram3D);
+            HintExchange.Result hint = snapshot.getHint();
+            for (int mino = 0; hint != null && mino < Tetrimino.MINO_COUNT; mino++) {
+                int x = hint.getMinoX(mino);
+                int y = hint.getMinoY(mino);
+                if (x >= 0 && y >= 0 && x < snapshot.getWidth() && y < snapshot.getHeight() && snapshot.getTile(x, y) == null) {
+                    tetrisBoard.render(Tile.BLOCK_HINT, x + 1, y + 1);
                 }
-                lineClearMessage.render();
             }
-        } finally {
-            state.lock.unlock();
+
+            if (snapshot.getLineClearResult() != ClearResult.NONE) {
+                lineClearMessage.setResult(snapshot.getLineClearResult());
+                lineClearMessage.setTimeStart(snapshot.getLineClearResultTimestamp());
+            }
+            lineClearMessage.render();
         }
     }
 
-    private void setCameraPos() {
-        Vector3f pos1 = getCameraPushPos(state.getLastCameraPushDirection());
-        Vector3f pos2 = getCameraPushPos(state.getCameraPushDirection());
-        double delta = (GLFW.glfwGetTime() - state.getCameraPushTimestamp());
+    private void setCameraPos(RenderSnapshot snapshot) {
+        Vector3f pos1 = getCameraPushPos(snapshot.getLastCameraPushDirection());
+        Vector3f pos2 = getCameraPushPos(snapshot.getCameraPushDirection());
+        double delta = (GLFW.glfwGetTime() - snapshot.getCameraPushTimestamp());
         double biasPos = Math.max(0, Math.min(1, delta / 0.2));
 
         double bias = biasPos < 0.5 ? 2 * biasPos * biasPos : 1 - Math.pow(-2 * biasPos + 2, 2) / 2;
         Vector3f pos3 = pos1.mul((float) (1 - biasPos)).add(pos2.mul((float) biasPos));
-        Vector2f cameraControls = state.getCameraControls();
-        pos3.x += cameraControls.x * 2.5f;
-        pos3.y += cameraControls.y * 2.5f;
+        pos3.x += snapshot.getCameraX() * 2.5f;
+        pos3.y += snapshot.getCameraY() * 2.5f;
         gameScene.getCamera().setPosition(pos3);
     }
 
@@ -256,19 +257,20 @@ public class GameRenderer {
         tileDrawer.render(Tile.WALL_J, x1, y1);
     }
 
-    private void drawTetrimino(Tetrimino tetrimino, Vector3f position) throws Exception {
-        if (tetrimino == null) {
+    private void drawTetrimino(int pieceId, Vector3f position) throws Exception {
+        if (pieceId == GameState.NO_PIECE) {
             return;
         }
 
         TileDrawer drawer;
         int offsetX = 0;
         int offsetY = 0;
-        if (tetrimino.getWidth() == 4) {
+        int size = Tetrimino.getSize(pieceId);
+        if (size == 4) {
             drawer = pieceDrawer4x4;
-        } else if (tetrimino.getWidth() == 3) {
+        } else if (size == 3) {
             drawer = pieceDrawer3x3;
-        } else if (tetrimino.getWidth() == 2) {
+        } else if (size == 2) {
             offsetX = 1;
             offsetY = 1;
             drawer = pieceDrawer4x4;
@@ -278,10 +280,10 @@ public class GameRenderer {
 
         drawer.getOrigin().set(position);
 
-        for (int iy = 0; iy < tetrimino.getHeight(); iy++) {
-            for (int ix = 0; ix < tetrimino.getWidth(); ix++) {
-                if (tetrimino.getPieces()[iy][ix]) {
-                    drawer.render(tetrimino.getTileType(), ix + offsetX, iy + offsetY);
+        for (int iy = 0; iy < size; iy++) {
+            for (int ix = 0; ix < size; ix++) {
+                if ((Tetrimino.getRowMask(pieceId, 0, iy) & (1 << ix)) != 0) {
+                    drawer.render(Tetrimino.getTileType(pieceId), ix + offsetX, iy + offsetY);
                 }
             }
         }
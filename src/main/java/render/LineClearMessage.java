@@ -1,48 +1,42 @@
 package render;
 
+import model.ClearResult;
 import model.Message;
 import model.Tile;
 import org.joml.Vector3f;
 import org.lwjgl.glfw.GLFW;
 
-import java.util.LinkedList;
-
 public class LineClearMessage {
-    private LinkedList<Message> messages;
+    private int result;
     Scene gameScene;
     private double timeStart;
     private float x;
     private float y;
     private ModelTransform transform;
-    private int comboAmount;
     private ScoreDisplay countDisplay;
 
     public LineClearMessage(Scene gameScene, float x, float y) throws Exception {
         this.gameScene = gameScene;
         this.x = x;
         this.y = y;
-        this.comboAmount = -1;
+        this.result = ClearResult.NONE;
         transform = new ModelTransform();
         transform.setScale(0.3f);
         countDisplay = new ScoreDisplay(gameScene, new Vector3f(0.0f, 0.0f, 0.0f), 0.15f, Tile.LABEL_X, 1, 2);
         timeStart = GLFW.glfwGetTime();
     }
 
-    public void setMessages(LinkedList<Message> messages) {
-        this.messages = new LinkedList<>(messages);
+    public void setResult(int result) {
+        this.result = result;
     }
 
     public void setTimeStart(double timeStart) {
         this.timeStart = timeStart;
     }
 
-    public void setComboAmount(int comboAmount) {
-        this.comboAmount = comboAmount;
-    }
-
     public void render() throws Exception {
         double delta = GLFW.glfwGetTime() - timeStart;
-        if (messages == null || messages.size() == 0 || (delta > 3)) {
+        if (result == ClearResult.NONE || (delta > 3)) {
             return;
         }
 
@@ -60,44 +54,69 @@ public class LineClearMessage {
         transform.setScale(scale);
         countDisplay.setTileSize(scale / 2);
 
-        Model[] modelMessages = ResourcesCache.getInstance().getMessageModels();
         float yPos = y;
-        for (Message message : messages) {
-            Model model = null;
-            switch (message) {
-                case TSPIN:
-                    model = modelMessages[7];
-                    break;
-                case SINGLE:
-                    model = modelMessages[6];
-                    break;
-                case DOUBLE:
-                    model = modelMessages[5];
-                    break;
-                case TRIPLE:
-                    model = modelMessages[4];
-                    break;
-                case TETRIS:
-                    model = modelMessages[3];
-                    break;
-                case B2B:
-                    model = modelMessages[2];
-                    break;
-                case COMBO:
-                    model = modelMessages[1];
-                    break;
-                case MINI:
-                    model = modelMessages[0];
-                    break;
-            }
-            transform.setPosition(new Vector3f(x, yPos, 0.0f));
-            yPos -= scale;
-            model.render(gameScene, transform);
+        if (ClearResult.isB2B(result)) {
+            yPos = renderMessage(Message.B2B, yPos, scale);
         }
-
+        if (ClearResult.getTSpin(result) == ClearResult.TSPIN_MINI) {
+            yPos = renderMessage(Message.MINI, yPos, scale);
+        }
+        if (ClearResult.getTSpin(result) != ClearResult.TSPIN_NONE) {
+            yPos = renderMessage(Message.TSPIN, yPos, scale);
+        }
+        switch (ClearResult.getLines(result)) {
+            case 1:
+                yPos = renderMessage(Message.SINGLE, yPos, scale);
+                break;
+            case 2:
+                yPos = renderMessage(Message.DOUBLE, yPos, scale);
+                break;
+            case 3:
+                yPos = renderMessage(Message.TRIPLE, yPos, scale);
+                break;
+            case 4:
+                yPos = renderMessage(Message.TETRIS, yPos, scale);
+                break;
+        }
+        int comboAmount = ClearResult.getCombo(result);
         if (comboAmount > 0) {
-            countDisplay.getOrigin().set(new Vector3f(x, yPos, 0.0f));
+            yPos = renderMessage(Message.COMBO, yPos, scale);
+            countDisplay.getOrigin().set(x, yPos, 0.0f);
             countDisplay.renderCount(comboAmount);
         }
     }
+
+    private float renderMessage(Message message, float yPos, float scale) throws Exception {
+        Model[] modelMessages = ResourcesCache.getInstance().getMessageModels();
+        Model model = null;
+        switch (message) {
+            case TSPIN:
+                model = modelMessages[7];
+                break;
+            case SINGLE:
+                model = modelMessages[6];
+                break;
+            case DOUBLE:
+                model = modelMessages[5];
+                break;
+            case TRIPLE:
+                model = modelMessages[4];
+                break;
+            case TETRIS:
+                model = modelMessages[3];
+                break;
+            case B2B:
+                model = modelMessages[2];
+                break;
+            case COMBO:
+                model = modelMessages[1];
+                break;
+            case MINI:
+                model = modelMessages[0];
+                break;
+        }
+        transform.getPosition().set(x, yPos, 0.0f);
+        model.render(gameScene, transform);
+        return yPos - scale;
+    }
 }
@@ -1,5 +1,7 @@
 package render;
 
+import org.joml.Vector4f;
+
 import java.util.HashMap;
 import java.util.Map;
 
@@ -11,6 +13,8 @@ public class ResourcesCache {
 
     private final Model tetrisBlock;
     private final Model ghostBlock;
+    private final Material ghostBlockMaterial;
+    private final Vector4f ghostBlockColor;
     private final Material tetrisBlockMaterial;
     private final Model wallV;
     private final Model wallH;
@@ -28,6 +32,9 @@ public class ResourcesCache {
         tetrisBlock = new Model("tetrisBlock.obj");
         tetrisBlockMaterial = tetrisBlock.getMeshes()[0].getMaterial();
         ghostBlock = new Model("ghostBlock.obj");
+        ghostBlockMaterial = ghostBlock.getMeshes()[0].getMaterial();
+        // Hints are drawn with the ghost model in another color, this is the one to put back for ghosts
+        ghostBlockColor = new Vector4f(ghostBlockMaterial.getDiffuseColor());
         wallV = new Model("pipeEdge.obj");
         wallV.getMeshes()[0].getMaterial().setReflectMap(metalReflect);
         wallH = new Model("pipeEdgeH.obj");
@@ -76,6 +83,14 @@ public class ResourcesCache {
         return ghostBlock;
     }
 
+    public Material getGhostBlockMaterial() {
+        return ghostBlockMaterial;
+    }
+
+    public Vector4f getGhostBlockColor() {
+        return ghostBlockColor;
+    }
+
     public Material getTetrisBlockMaterial() {
         return tetrisBlockMaterial;
     }
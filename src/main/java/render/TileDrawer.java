@@ -17,6 +17,8 @@ public class TileDrawer {
     private static final Vector4f COLOR_RED = new Vector4f(1.0f, 0.0f, 0.0f, 1.0f);
     private static final Vector4f COLOR_BLUE = new Vector4f(0.0f, 0.3f, 1.0f, 1.0f);
     private static final Vector4f COLOR_ORANGE = new Vector4f(1.0f, 0.5f, 0.0f, 1.0f);
+    private static final Vector4f COLOR_GARBAGE = new Vector4f(0.5f, 0.5f, 0.5f, 1.0f);
+    private static final Vector4f COLOR_HINT = new Vector4f(1.0f, 0.2f, 0.8f, 1.0f);
 
     private final Scene gameScene;
     private final Vector3f origin;
@@ -87,8 +89,17 @@ public class TileDrawer {
                 model = rs.getTetrisBlock();
                 rs.getTetrisBlockMaterial().setDiffuseColor(COLOR_ORANGE);
                 break;
+            case BLOCK_GARBAGE:
+                model = rs.getTetrisBlock();
+                rs.getTetrisBlockMaterial().setDiffuseColor(COLOR_GARBAGE);
+                break;
             case BLOCK_GHOST:
                 model = rs.getGhostBlock();
+                rs.getGhostBlockMaterial().setDiffuseColor(rs.getGhostBlockColor());
+                break;
+            case BLOCK_HINT:
+                model = rs.getGhostBlock();
+                rs.getGhostBlockMaterial().setDiffuseColor(COLOR_HINT);
                 break;
             case WALL_V:
                 model = rs.getWallV();
@@ -0,0 +1,106 @@
+package replay;
+
+import game.Ruleset;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Layout of a replay file. The header holds the randomizer, rotation system, ruleset and the engine's start time,
+ * the body is a stream of records each starting with a tag byte, and an end tag is followed by the final score,
+ * lines and level. Tick times are stored as zigzag varint deltas of the raw double bits so they come back exactly,
+ * event times as zigzag varint deltas in nanoseconds
+ */
+public class ReplayFormat {
+    public static final int MAGIC = 0x54525031; // "TRP1"
+    public static final int VERSION = 1;
+
+    public static final int TAG_TICK = 0;
+    // Input events are stored as TAG_EVENT + the packed InputEvent
+    public static final int TAG_EVENT = 1;
+    public static final int TAG_END = 0xFF;
+
+    // Tag plus the longest varint
+    public static final int MAX_RECORD_SIZE = 1 + 10;
+    public static final int MAX_FOOTER_SIZE = 1 + 3 * 10;
+
+    private ReplayFormat() {
+    }
+
+    public static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    public static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint in replay");
+    }
+
+    public static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    public static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static void putRuleset(ByteBuffer buffer, Ruleset ruleset) {
+        buffer.putDouble(ruleset.getDas());
+        buffer.putDouble(ruleset.getArr());
+        buffer.putDouble(ruleset.getSoftDropFactor());
+        buffer.putDouble(ruleset.getLockDelay());
+        buffer.putInt(ruleset.getMoveResetLimit());
+        buffer.putDouble(ruleset.getLockFlash());
+        buffer.putDouble(ruleset.getLineClearDelay());
+        buffer.putDouble(ruleset.getAre());
+        buffer.putDouble(ruleset.getGravityBase());
+        buffer.putDouble(ruleset.getGravityDecay());
+        buffer.putInt(ruleset.getComboPoints());
+        buffer.putDouble(ruleset.getB2bMultiplier());
+        for (int tSpin = 0; tSpin < 3; tSpin++) {
+            for (int lines = 0; lines < 5; lines++) {
+                buffer.putInt(ruleset.getClearPoints(lines, tSpin));
+            }
+        }
+    }
+
+    public static Ruleset getRuleset(ByteBuffer buffer) {
+        Ruleset ruleset = new Ruleset(buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getInt());
+        ruleset.setLockFlash(buffer.getDouble());
+        ruleset.setLineClearDelay(buffer.getDouble());
+        ruleset.setAre(buffer.getDouble());
+        ruleset.setGravityBase(buffer.getDouble());
+        ruleset.setGravityDecay(buffer.getDouble());
+        ruleset.setComboPoints(buffer.getInt());
+        ruleset.setB2bMultiplier(buffer.getDouble());
+        for (int tSpin = 0; tSpin < 3; tSpin++) {
+            for (int lines = 0; lines < 5; lines++) {
+                ruleset.setClearPoints(lines, tSpin, buffer.getInt());
+            }
+        }
+        return ruleset;
+    }
+}
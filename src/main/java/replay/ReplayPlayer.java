@@ -0,0 +1,78 @@
+package replay;
+
+import game.GameEngine;
+import game.GameState;
+import game.InputEventQueue;
+import game.ManualClock;
+import game.PieceRandomizer;
+import game.RotationSystem;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Re-simulates a replay headless on a virtual clock, as fast as the engine can go
+ */
+public class ReplayPlayer {
+    private ReplayPlayer() {
+    }
+
+    public static ReplayResult play(ReplayReader reader) throws IOException {
+        return play(reader, null);
+    }
+
+    /**
+     * Plays the replay and shows the listener the state after the tick each piece spawns in, for analysing
+     * positions. The listener can read the state but mustn't change it
+     */
+    public static ReplayResult play(ReplayReader reader, Consumer<GameState> pieceListener) throws IOException {
+        ManualClock clock = new ManualClock(reader.getStartTime());
+        GameState state = new GameState(clock, PieceRandomizer.create(reader.getRandomizerName(), reader.getSeed()));
+        GameEngine engine = new GameEngine(state);
+        engine.setPublishSnapshots(false);
+        engine.setRuleset(reader.getRuleset());
+        engine.setRotationSystem(RotationSystem.create(reader.getRotationSystemName()));
+        InputEventQueue inputQueue = engine.getControls().getInputQueue();
+
+        ByteBuffer body = reader.getBody();
+        long tickBits = Double.doubleToLongBits(reader.getStartTime());
+        long eventTime = (long) (reader.getStartTime() * 1e9);
+        boolean tickPending = false;
+        long ticks = 0;
+        int lastPiece = -1;
+        try {
+            while (true) {
+                int tag = body.get() & 0xFF;
+                if (tag == ReplayFormat.TAG_TICK || tag == ReplayFormat.TAG_END) {
+                    // The events recorded after a tick were played back during it, so they're queued before it runs
+                    if (tickPending) {
+                        clock.setTime(Double.longBitsToDouble(tickBits));
+                        engine.tick();
+                        ticks++;
+                    }
+                    if (pieceListener != null && state.getPhase() == GameState.Phase.ACTIVE && !state.isGameOver()
+                            && state.getPiecesPlaced() != lastPiece) {
+                        lastPiece = state.getPiecesPlaced();
+                        pieceListener.accept(state);
+                    }
+                    if (tag == ReplayFormat.TAG_END) {
+                        break;
+                    }
+                    tickBits += ReplayFormat.unzigzag(ReplayFormat.getVarLong(body));
+                    tickPending = true;
+                } else {
+                    eventTime += ReplayFormat.unzigzag(ReplayFormat.getVarLong(body));
+                    if (!inputQueue.offer(tag - ReplayFormat.TAG_EVENT, eventTime)) {
+                        throw new IOException("Too many events in one tick: " + reader.getPath());
+                    }
+                }
+            }
+            return new ReplayResult((int) ReplayFormat.getVarLong(body), (int) ReplayFormat.getVarLong(body),
+                    (int) ReplayFormat.getVarLong(body), state.getGameScore(), state.getLinesCleared(), state.getGameLevel(), ticks);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Corrupt or unfinished replay: " + reader.getPath(), e);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package replay;
+
+import game.Ruleset;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a replay file through a read only memory mapping, the header is parsed up front and the body is left in
+ * the mapping for ReplayPlayer to decode
+ */
+public class ReplayReader {
+    private final Path path;
+    private final long seed;
+    private final String randomizerName;
+    private final String rotationSystemName;
+    private final Ruleset ruleset;
+    private final double startTime;
+    private final ByteBuffer body;
+
+    public ReplayReader(Path path) throws IOException {
+        this.path = path;
+        MappedByteBuffer mapping;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            if (mapping.getInt() != ReplayFormat.MAGIC) {
+                throw new IOException("Not a replay file: " + path);
+            }
+            int version = mapping.get();
+            if (version != ReplayFormat.VERSION) {
+                throw new IOException("Unsupported replay version " + version + ": " + path);
+            }
+            seed = mapping.getLong();
+            randomizerName = ReplayFormat.getString(mapping);
+            rotationSystemName = ReplayFormat.getString(mapping);
+            ruleset = ReplayFormat.getRuleset(mapping);
+            startTime = mapping.getDouble();
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt replay header: " + path, e);
+        }
+        body = mapping.slice();
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public String getRandomizerName() {
+        return randomizerName;
+    }
+
+    public String getRotationSystemName() {
+        return rotationSystemName;
+    }
+
+    public Ruleset getRuleset() {
+        return new Ruleset(ruleset);
+    }
+
+    public double getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * A fresh view of the tick and event records, positioned at the first one
+     */
+    public ByteBuffer getBody() {
+        return body.duplicate();
+    }
+}
@@ -0,0 +1,62 @@
+package replay;
+
+/**
+ * Final numbers a replay file claims next to the ones re-simulating it gave
+ */
+public class ReplayResult {
+    private final int recordedScore;
+    private final int recordedLines;
+    private final int recordedLevel;
+    private final int score;
+    private final int lines;
+    private final int level;
+    private final long ticks;
+
+    public ReplayResult(int recordedScore, int recordedLines, int recordedLevel, int score, int lines, int level, long ticks) {
+        this.recordedScore = recordedScore;
+        this.recordedLines = recordedLines;
+        this.recordedLevel = recordedLevel;
+        this.score = score;
+        this.lines = lines;
+        this.level = level;
+        this.ticks = ticks;
+    }
+
+    public boolean matches() {
+        return recordedScore == score && recordedLines == lines && recordedLevel == level;
+    }
+
+    public int getRecordedScore() {
+        return recordedScore;
+    }
+
+    public int getRecordedLines() {
+        return recordedLines;
+    }
+
+    public int getRecordedLevel() {
+        return recordedLevel;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getLines() {
+        return lines;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    @Override
+    public String toString() {
+        return "score " + recordedScore + "/" + score + ", lines " + recordedLines + "/" + lines
+                + ", level " + recordedLevel + "/" + level;
+    }
+}
@@ -0,0 +1,131 @@
+package replay;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Re-simulates every replay in a directory and reports the ones whose final score, lines or level don't match.
+ * Usage: ReplayVerifier directory [threads]
+ */
+public class ReplayVerifier {
+    private static final String REPLAY_GLOB = "*.rpl";
+    // Replays per task once the list has been split down, small enough to keep every core busy at the end
+    private static final int BATCH_SIZE = 4;
+
+    private final List<Path> paths;
+    private final ReplayResult[] results;
+    private final String[] errors;
+
+    public ReplayVerifier(List<Path> paths) {
+        this.paths = paths;
+        results = new ReplayResult[paths.size()];
+        errors = new String[paths.size()];
+    }
+
+    /**
+     * Verifies all replays on the pool, the pool's work stealing balances replays of very different lengths
+     */
+    public void verify(ForkJoinPool pool) {
+        pool.invoke(new VerifyTask(0, paths.size()));
+    }
+
+    private void verify(int index) {
+        try {
+            results[index] = ReplayPlayer.play(new ReplayReader(paths.get(index)));
+        } catch (IOException | RuntimeException e) {
+            errors[index] = e.getMessage();
+        }
+    }
+
+    public ReplayResult getResult(int index) {
+        return results[index];
+    }
+
+    /**
+     * Why a replay couldn't be played, null if it could
+     */
+    public String getError(int index) {
+        return errors[index];
+    }
+
+    private class VerifyTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        VerifyTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_SIZE) {
+                for (int i = from; i < to; i++) {
+                    verify(i);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new VerifyTask(from, mid), new VerifyTask(mid, to));
+        }
+    }
+
+    public static List<Path> findReplays(Path dir) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, REPLAY_GLOB)) {
+            for (Path path : stream) {
+                paths.add(path);
+            }
+        }
+        Collections.sort(paths);
+        return paths;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: ReplayVerifier <replay directory> [threads]");
+            System.exit(2);
+        }
+        int threads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        List<Path> paths = findReplays(Paths.get(args[0]));
+        ReplayVerifier verifier = new ReplayVerifier(paths);
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        verifier.verify(pool);
+        double seconds = (System.nanoTime() - start) * 1e-9;
+        pool.shutdown();
+
+        int mismatches = 0;
+        int failures = 0;
+        long ticks = 0;
+        for (int i = 0; i < paths.size(); i++) {
+            ReplayResult result = verifier.getResult(i);
+            if (result == null) {
+                failures++;
+                System.out.println("FAILED   " + paths.get(i).getFileName() + ": " + verifier.getError(i));
+                continue;
+            }
+            ticks += result.getTicks();
+            if (!result.matches()) {
+                mismatches++;
+                System.out.println("MISMATCH " + paths.get(i).getFileName() + ": " + result + " (recorded/simulated)");
+            }
+        }
+        System.out.println(paths.size() + " replays, " + mismatches + " mismatched, " + failures + " failed on " + threads + " threads");
+        System.out.printf("%.2f s, %.1f replays/s, %.0f ticks/s%n", seconds, paths.size() / seconds, ticks / seconds);
+        if (mismatches > 0 || failures > 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package replay;
+
+import game.GameEngine;
+import game.GameState;
+import game.InputRecorder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Records a game to a replay file. Records are encoded straight into a preallocated direct buffer on the engine
+ * thread, full buffers are written out by a background thread while the engine fills the other one, so recording
+ * costs the tick a few byte puts
+ */
+public class ReplayWriter implements InputRecorder, AutoCloseable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final GameEngine engine;
+    private final FileChannel channel;
+    private final ExecutorService flusher;
+    private ByteBuffer buffer;
+    private ByteBuffer spare;
+    private Future<?> pendingFlush;
+    private IOException error;
+    private long lastTickBits;
+    private long lastEventTime;
+    private boolean closed;
+
+    /**
+     * Starts recording the engine's game, must be created before the engine's first tick
+     */
+    public ReplayWriter(Path path, GameEngine engine) throws IOException {
+        this.engine = engine;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        flusher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Replay writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        spare = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        GameState state = engine.getState();
+        state.lock.lock();
+        try {
+            buffer.putInt(ReplayFormat.MAGIC);
+            buffer.put((byte) ReplayFormat.VERSION);
+            buffer.putLong(state.getPieceRandomizer().getSeed());
+            ReplayFormat.putString(buffer, state.getPieceRandomizer().getName());
+            ReplayFormat.putString(buffer, engine.getRotationSystem().getName());
+            ReplayFormat.putRuleset(buffer, engine.getRuleset());
+            buffer.putDouble(engine.getStartTime());
+            lastTickBits = Double.doubleToLongBits(engine.getStartTime());
+            lastEventTime = (long) (engine.getStartTime() * 1e9);
+            engine.setInputRecorder(this);
+        } finally {
+            state.lock.unlock();
+        }
+    }
+
+    @Override
+    public void onTick(double time) {
+        if (!reserve(ReplayFormat.MAX_RECORD_SIZE)) {
+            return;
+        }
+        long bits = Double.doubleToLongBits(time);
+        buffer.put((byte) ReplayFormat.TAG_TICK);
+        ReplayFormat.putVarLong(buffer, ReplayFormat.zigzag(bits - lastTickBits));
+        lastTickBits = bits;
+    }
+
+    @Override
+    public void onInput(int event, long timeNanos) {
+        if (!reserve(ReplayFormat.MAX_RECORD_SIZE)) {
+            return;
+        }
+        buffer.put((byte) (ReplayFormat.TAG_EVENT + event));
+        ReplayFormat.putVarLong(buffer, ReplayFormat.zigzag(timeNanos - lastEventTime));
+        lastEventTime = timeNanos;
+    }
+
+    /**
+     * Makes room for a record, swapping buffers when the current one is full. Returns false once writing failed,
+     * the error is thrown from close() instead of from the engine thread
+     */
+    private boolean reserve(int size) {
+        if (error != null) {
+            return false;
+        }
+        if (buffer.remaining() >= size) {
+            return true;
+        }
+        try {
+            awaitFlush();
+        } catch (IOException e) {
+            error = e;
+            return false;
+        }
+        ByteBuffer full = buffer;
+        buffer = spare;
+        spare = full;
+        full.flip();
+        pendingFlush = flusher.submit(() -> {
+            while (full.hasRemaining()) {
+                channel.write(full);
+            }
+            full.clear();
+            return null;
+        });
+        return true;
+    }
+
+    private void awaitFlush() throws IOException {
+        if (pendingFlush == null) {
+            return;
+        }
+        try {
+            pendingFlush.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing replay", e);
+        } catch (ExecutionException e) {
+            throw (e.getCause() instanceof IOException) ? (IOException) e.getCause() : new IOException(e.getCause());
+        } finally {
+            pendingFlush = null;
+        }
+    }
+
+    /**
+     * Stops recording and writes the final score, lines and level
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        GameState state = engine.getState();
+        state.lock.lock();
+        try {
+            if (engine.getInputRecorder() == this) {
+                engine.setInputRecorder(null);
+            }
+            if (reserve(ReplayFormat.MAX_FOOTER_SIZE)) {
+                buffer.put((byte) ReplayFormat.TAG_END);
+                ReplayFormat.putVarLong(buffer, state.getGameScore());
+                ReplayFormat.putVarLong(buffer, state.getLinesCleared());
+                ReplayFormat.putVarLong(buffer, state.getGameLevel());
+            }
+        } finally {
+            state.lock.unlock();
+        }
+        try {
+            awaitFlush();
+            if (error != null) {
+                throw error;
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } finally {
+            flusher.shutdown();
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package sim;
+
+import bot.BotDriver;
+import bot.BotPolicy;
+import bot.OpeningBook;
+import bot.OpeningBookPolicy;
+import game.BagRandomizer;
+import game.GameEngine;
+import game.GameState;
+import game.ManualClock;
+import game.Ruleset;
+import game.RotationSystem;
+
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Plays many complete games headless on virtual clocks, for balancing the ruleset. Every game gets its own state,
+ * engine and seeded randomizer, and every worker thread its own policy and stats, so the only thing the threads share
+ * is the counter they take game numbers from
+ * Usage: BatchSimulator [games] [threads] [max pieces] [seed]
+ * The bot is picked with -Dtetris.bot=greedy, beam or pc, greedy by default, and plays the opening from a book
+ * built by OpeningBookBuilder when one is given with -Dtetris.book
+ * The rotation system is picked with -Dtetris.rotationSystem=SRS, SRS+ or ARS, SRS by default
+ * Ruleset values can be set with -Dtetris.moveResetLimit, -Dtetris.gravityBase, -Dtetris.gravityDecay,
+ * -Dtetris.comboPoints, -Dtetris.b2bMultiplier and -Dtetris.clearPoints, a comma separated list of points for
+ * 0 to 4 lines, then 0 to 4 lines with a mini T-spin, then 0 to 4 lines with a T-spin
+ */
+public class BatchSimulator {
+    // Seconds between bot inputs, one tap a frame at 60 Hz
+    private static final double STEP_TIME = 1.0 / 60.0;
+    // Ends a game that stopped placing pieces, only a broken policy gets here
+    private static final double MAX_PIECE_TIME = 30.0;
+
+    private final int games;
+    private final int maxPieces;
+    private final long seed;
+    private final Ruleset ruleset;
+    private final RotationSystem rotationSystem;
+    private final Supplier<BotPolicy> policyFactory;
+    private final AtomicInteger nextGame = new AtomicInteger();
+
+    /**
+     * The policies have to be made for the same rotation system the games are played with
+     */
+    public BatchSimulator(int games, int maxPieces, long seed, Ruleset ruleset, RotationSystem rotationSystem,
+                          Supplier<BotPolicy> policyFactory) {
+        this.games = games;
+        this.maxPieces = maxPieces;
+        this.seed = seed;
+        this.ruleset = ruleset;
+        this.rotationSystem = rotationSystem;
+        this.policyFactory = policyFactory;
+    }
+
+    /**
+     * Plays all the games on the given number of threads and returns the merged stats
+     */
+    public SimulationStats run(int threads) throws InterruptedException {
+        nextGame.set(0);
+        SimulationStats[] workerStats = new SimulationStats[threads];
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            SimulationStats stats = new SimulationStats();
+            workerStats[i] = stats;
+            workers[i] = new Thread(() -> work(stats), "Simulator " + i);
+            workers[i].start();
+        }
+        SimulationStats total = new SimulationStats();
+        for (int i = 0; i < threads; i++) {
+            workers[i].join();
+            total.merge(workerStats[i]);
+        }
+        return total;
+    }
+
+    private void work(SimulationStats stats) {
+        BotPolicy policy = policyFactory.get();
+        int game;
+        while ((game = nextGame.getAndIncrement()) < games) {
+            playGame(game, policy, stats);
+        }
+    }
+
+    private void playGame(int game, BotPolicy policy, SimulationStats stats) {
+        ManualClock clock = new ManualClock();
+        GameState state = new GameState(clock, new BagRandomizer(seed + game, 1));
+        GameEngine engine = new GameEngine(state);
+        engine.setPublishSnapshots(false);
+        engine.setRuleset(new Ruleset(ruleset));
+        engine.setRotationSystem(rotationSystem);
+        BotDriver driver = new BotDriver(policy, engine.getControls());
+
+        long ticks = 0;
+        int lastPieces = 0;
+        double lastPieceTime = 0.0;
+        while (!state.isGameOver() && state.getPiecesPlaced() < maxPieces) {
+            clock.advance(STEP_TIME);
+            driver.step(state);
+            engine.tick();
+            ticks++;
+            if (state.getPiecesPlaced() != lastPieces) {
+                lastPieces = state.getPiecesPlaced();
+                lastPieceTime = clock.getTime();
+            } else if (clock.getTime() - lastPieceTime > MAX_PIECE_TIME) {
+                break;
+            }
+        }
+        stats.addGame(state, clock.getTime() - engine.getStartTime(), ticks);
+    }
+
+    /**
+     * Default ruleset with any overrides from system properties
+     */
+    public static Ruleset getRulesetFromProperties() {
+        Ruleset ruleset = new Ruleset();
+        ruleset.setMoveResetLimit(Integer.getInteger("tetris.moveResetLimit", ruleset.getMoveResetLimit()));
+        ruleset.setGravityBase(getDoubleProperty("tetris.gravityBase", ruleset.getGravityBase()));
+        ruleset.setGravityDecay(getDoubleProperty("tetris.gravityDecay", ruleset.getGravityDecay()));
+        ruleset.setComboPoints(Integer.getInteger("tetris.comboPoints", ruleset.getComboPoints()));
+        ruleset.setB2bMultiplier(getDoubleProperty("tetris.b2bMultiplier", ruleset.getB2bMultiplier()));
+        String clearPoints = System.getProperty("tetris.clearPoints");
+        if (clearPoints != null) {
+            String[] values = clearPoints.split(",");
+            for (int i = 0; i < values.length; i++) {
+                ruleset.setClearPoints(i % 5, i / 5, Integer.parseInt(values[i].trim()));
+            }
+        }
+        return ruleset;
+    }
+
+    /**
+     * Rotation system named by -Dtetris.rotationSystem, SRS by default
+     */
+    public static RotationSystem getRotationSystemFromProperties() {
+        return RotationSystem.create(System.getProperty("tetris.rotationSystem", "SRS"));
+    }
+
+    private static double getDoubleProperty(String name, double defaultValue) {
+        String value = System.getProperty(name);
+        return (value == null) ? defaultValue : Double.parseDouble(value);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int games = (args.length > 0) ? Integer.parseInt(args[0]) : 1000;
+        int threads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int maxPieces = (args.length > 2) ? Integer.parseInt(args[2]) : 1000;
+        long seed = (args.length > 3) ? Long.parseLong(args[3]) : 0L;
+
+        String bot = System.getProperty("tetris.bot", "greedy");
+        String bookPath = System.getProperty("tetris.book");
+        OpeningBook book = (bookPath == null) ? null : new OpeningBook(Paths.get(bookPath));
+        RotationSystem rotationSystem = getRotationSystemFromProperties();
+        // Games already run one per thread, so the bots search on their own thread. The book's mapping is shared
+        BatchSimulator simulator = new BatchSimulator(games, maxPieces, seed, getRulesetFromProperties(), rotationSystem,
+                () -> {
+                    BotPolicy policy = BotPolicy.create(bot, false, rotationSystem);
+                    return (book == null) ? policy : new OpeningBookPolicy(book, policy, rotationSystem);
+                });
+        long start = System.nanoTime();
+        SimulationStats stats = simulator.run(threads);
+        double seconds = (System.nanoTime() - start) * 1e-9;
+
+        stats.print(System.out);
+        System.out.printf("%.2f s on %d threads, %.1f games/s, %.0f ticks/s%n", seconds, threads,
+                stats.getGames() / seconds, stats.getTicks() / seconds);
+    }
+}
@@ -0,0 +1,78 @@
+package sim;
+
+/**
+ * Fixed width buckets for a non-negative value, anything past the last bucket is counted in it. Not thread safe,
+ * each thread fills its own and they're merged at the end
+ */
+public class Histogram {
+    private final long bucketWidth;
+    private final long[] counts;
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    public Histogram(long bucketWidth, int buckets) {
+        this.bucketWidth = bucketWidth;
+        counts = new long[buckets];
+    }
+
+    public void add(long value) {
+        int bucket = (int) Math.min(Math.max(value, 0) / bucketWidth, counts.length - 1);
+        counts[bucket]++;
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds another histogram's values, it has to have the same buckets
+     */
+    public void merge(Histogram other) {
+        if (other.bucketWidth != bucketWidth || other.counts.length != counts.length) {
+            throw new IllegalArgumentException("Histogram buckets don't match");
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return (count == 0) ? 0.0 : (double) sum / count;
+    }
+
+    public long getMin() {
+        return (count == 0) ? 0 : min;
+    }
+
+    public long getMax() {
+        return (count == 0) ? 0 : max;
+    }
+
+    /**
+     * Upper end of the bucket the percentile falls in, capped to the largest value seen
+     */
+    public long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile / 100.0 * count);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) {
+                return Math.min((i + 1) * bucketWidth - 1, max);
+            }
+        }
+        return max;
+    }
+}
@@ -0,0 +1,85 @@
+package sim;
+
+import bot.BotDriver;
+import bot.BotPolicy;
+import game.BagRandomizer;
+import game.GameEngine;
+import game.GameState;
+import game.MatchEngine;
+import game.NanoClock;
+import game.RotationSystem;
+import game.Ruleset;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Plays a bot league match in real time, every board against the others with garbage, all on a few MatchEngine
+ * workers. Boards get the same piece sequence so the bots are compared on the same pieces
+ * Usage: MatchSimulator [boards] [threads] [max seconds] [seed] [tap rate]
+ * The bot is picked with -Dtetris.bot=greedy, beam or pc, greedy by default. Every board has its own policy, which
+ * is most of a board's memory for the searching bots. Ruleset values are set the same way as for BatchSimulator
+ */
+public class MatchSimulator {
+    private static final long POLL_MILLIS = 10;
+    private static final int SHOWN_PLACES = 10;
+
+    public static void main(String[] args) throws Exception {
+        int boards = (args.length > 0) ? Integer.parseInt(args[0]) : 100;
+        int threads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        double maxSeconds = (args.length > 2) ? Double.parseDouble(args[2]) : 60.0;
+        long seed = (args.length > 3) ? Long.parseLong(args[3]) : 0L;
+        double tapRate = (args.length > 4) ? Double.parseDouble(args[4]) : BotDriver.DEFAULT_TAP_RATE;
+        String bot = System.getProperty("tetris.bot", "greedy");
+        Ruleset ruleset = BatchSimulator.getRulesetFromProperties();
+        RotationSystem rotationSystem = BatchSimulator.getRotationSystemFromProperties();
+
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long usedBefore = runtime.totalMemory() - runtime.freeMemory();
+        NanoClock clock = new NanoClock();
+        GameEngine[] engines = new GameEngine[boards];
+        BotDriver[] drivers = new BotDriver[boards];
+        for (int i = 0; i < boards; i++) {
+            engines[i] = new GameEngine(new GameState(clock, new BagRandomizer(seed, 1)));
+            engines[i].setPublishSnapshots(false);
+            engines[i].setRuleset(new Ruleset(ruleset));
+            engines[i].setRotationSystem(rotationSystem);
+            drivers[i] = new BotDriver(BotPolicy.create(bot, false, rotationSystem), engines[i].getControls());
+            drivers[i].setTapRate(tapRate);
+        }
+        MatchEngine match = new MatchEngine(clock, threads, seed, engines);
+        for (int i = 0; i < boards; i++) {
+            match.setDriver(i, drivers[i]);
+        }
+        System.gc();
+        long usedAfter = runtime.totalMemory() - runtime.freeMemory();
+
+        double start = clock.getTime();
+        match.start();
+        while (!match.isFinished() && clock.getTime() - start < maxSeconds) {
+            Thread.sleep(POLL_MILLIS);
+        }
+        match.stop();
+        double seconds = clock.getTime() - start;
+
+        // Boards still playing rank ahead of the ones that are out, then by garbage sent
+        Integer[] order = new Integer[boards];
+        for (int i = 0; i < boards; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.<Integer>comparingInt(match::getPlace)
+                .thenComparingLong(i -> -match.getLinesSent(i)));
+        for (int rank = 0; rank < Math.min(SHOWN_PLACES, boards); rank++) {
+            int board = order[rank];
+            GameState state = engines[board].getState();
+            System.out.printf("%3d. board %d: %s, %d pieces, %d lines cleared, %d sent, %d received%n", rank + 1, board,
+                    (match.getPlace(board) == 0) ? "playing" : "out in place " + match.getPlace(board),
+                    state.getPiecesPlaced(), state.getLinesCleared(), match.getLinesSent(board),
+                    match.getGarbageQueue(board).getReceived());
+        }
+        System.out.printf("%s after %.1f s, %d boards on %d workers, about %.1f KB per board%n",
+                match.isFinished() ? "Board " + match.getWinner() + " won" : "No winner", seconds, boards,
+                match.getWorkerCount(), (usedAfter - usedBefore) / 1024.0 / boards);
+    }
+}
@@ -0,0 +1,135 @@
+package sim;
+
+import bot.PerfectClearSolver;
+import bot.TranspositionTable;
+import replay.ReplayPlayer;
+import replay.ReplayReader;
+import replay.ReplayVerifier;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Replays every game in a directory and checks each piece for a perfect clear the player could have seen, with the
+ * current piece, the hold and the preview. Replays are spread over the pool and every solve shares one table, so
+ * boards already found to be dead aren't searched again.
+ * Usage: PerfectClearAnalyzer directory [threads] [max lines]
+ */
+public class PerfectClearAnalyzer {
+    private static final int TABLE_MEGABYTES = 64;
+
+    private final List<Path> paths;
+    private final int maxLines;
+    private final TranspositionTable table = new TranspositionTable(TABLE_MEGABYTES);
+    private final int[] positions;
+    private final int[] solvable;
+    private final String[] errors;
+
+    public PerfectClearAnalyzer(List<Path> paths, int maxLines) {
+        this.paths = paths;
+        this.maxLines = maxLines;
+        positions = new int[paths.size()];
+        solvable = new int[paths.size()];
+        errors = new String[paths.size()];
+    }
+
+    public void analyze(ForkJoinPool pool) {
+        pool.invoke(new AnalyzeTask(0, paths.size()));
+    }
+
+    private void analyze(int index) {
+        PerfectClearSolver solver = new PerfectClearSolver(null, table);
+        try {
+            ReplayPlayer.play(new ReplayReader(paths.get(index)), state -> {
+                positions[index]++;
+                if (solver.solve(state, state.getPreviewCount(), maxLines) != null) {
+                    solvable[index]++;
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            errors[index] = e.getMessage();
+        }
+    }
+
+    /**
+     * Pieces the replay was analysed at
+     */
+    public int getPositions(int index) {
+        return positions[index];
+    }
+
+    /**
+     * Pieces a perfect clear could be started from
+     */
+    public int getSolvable(int index) {
+        return solvable[index];
+    }
+
+    /**
+     * Why a replay couldn't be played, null if it could
+     */
+    public String getError(int index) {
+        return errors[index];
+    }
+
+    private class AnalyzeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        AnalyzeTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                for (int i = from; i < to; i++) {
+                    analyze(i);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new AnalyzeTask(from, mid), new AnalyzeTask(mid, to));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1 || args.length > 3) {
+            System.err.println("Usage: PerfectClearAnalyzer <replay directory> [threads] [max lines]");
+            System.exit(2);
+        }
+        int threads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int maxLines = (args.length > 2) ? Integer.parseInt(args[2]) : PerfectClearSolver.DEFAULT_MAX_LINES;
+        List<Path> paths = ReplayVerifier.findReplays(Paths.get(args[0]));
+        PerfectClearAnalyzer analyzer = new PerfectClearAnalyzer(paths, maxLines);
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        analyzer.analyze(pool);
+        double seconds = (System.nanoTime() - start) * 1e-9;
+        pool.shutdown();
+
+        int positions = 0;
+        int solvable = 0;
+        for (int i = 0; i < paths.size(); i++) {
+            if (analyzer.getError(i) != null) {
+                System.out.println("FAILED " + paths.get(i).getFileName() + ": " + analyzer.getError(i));
+                continue;
+            }
+            positions += analyzer.getPositions(i);
+            solvable += analyzer.getSolvable(i);
+            System.out.println(paths.get(i).getFileName() + ": " + analyzer.getSolvable(i) + " of "
+                    + analyzer.getPositions(i) + " pieces had a perfect clear");
+        }
+        System.out.println(solvable + " of " + positions + " pieces had a perfect clear in " + paths.size()
+                + " replays on " + threads + " threads");
+        System.out.printf("%.2f s, %.0f positions/s%n", seconds, positions / seconds);
+    }
+}
@@ -0,0 +1,113 @@
+package sim;
+
+import game.GameState;
+
+import java.io.PrintStream;
+
+/**
+ * Distributions over finished simulated games. Each worker thread owns one, so recording is plain field writes, and
+ * the workers' stats are merged once they're done
+ */
+public class SimulationStats {
+    private final Histogram score = new Histogram(1000, 10000);
+    private final Histogram lines = new Histogram(1, 10000);
+    private final Histogram level = new Histogram(1, 1000);
+    private final Histogram tSpins = new Histogram(1, 1000);
+    private final Histogram tSpinMinis = new Histogram(1, 1000);
+    private final Histogram pieces = new Histogram(1, 100000);
+    private final Histogram seconds = new Histogram(1, 100000);
+    private long games;
+    private long toppedOut;
+    private long ticks;
+
+    /**
+     * Records a game once it's over or has been cut off
+     */
+    public void addGame(GameState state, double duration, long gameTicks) {
+        games++;
+        if (state.isGameOver()) {
+            toppedOut++;
+        }
+        ticks += gameTicks;
+        score.add(state.getGameScore());
+        lines.add(state.getLinesCleared());
+        level.add(state.getGameLevel());
+        tSpins.add(state.getTSpinCount());
+        tSpinMinis.add(state.getTSpinMiniCount());
+        pieces.add(state.getPiecesPlaced());
+        seconds.add((long) duration);
+    }
+
+    public void merge(SimulationStats other) {
+        score.merge(other.score);
+        lines.merge(other.lines);
+        level.merge(other.level);
+        tSpins.merge(other.tSpins);
+        tSpinMinis.merge(other.tSpinMinis);
+        pieces.merge(other.pieces);
+        seconds.merge(other.seconds);
+        games += other.games;
+        toppedOut += other.toppedOut;
+        ticks += other.ticks;
+    }
+
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * Games that ended in a top out instead of reaching the piece limit
+     */
+    public long getToppedOut() {
+        return toppedOut;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public Histogram getScore() {
+        return score;
+    }
+
+    public Histogram getLines() {
+        return lines;
+    }
+
+    public Histogram getLevel() {
+        return level;
+    }
+
+    public Histogram getTSpins() {
+        return tSpins;
+    }
+
+    public Histogram getTSpinMinis() {
+        return tSpinMinis;
+    }
+
+    public Histogram getPieces() {
+        return pieces;
+    }
+
+    public Histogram getSeconds() {
+        return seconds;
+    }
+
+    public void print(PrintStream out) {
+        out.println(games + " games, " + toppedOut + " topped out");
+        out.printf("%-12s %10s %10s %10s %10s %10s %10s%n", "", "mean", "min", "p10", "p50", "p90", "max");
+        printRow(out, "score", score);
+        printRow(out, "lines", lines);
+        printRow(out, "level", level);
+        printRow(out, "t-spins", tSpins);
+        printRow(out, "mini t-spins", tSpinMinis);
+        printRow(out, "pieces", pieces);
+        printRow(out, "seconds", seconds);
+    }
+
+    private static void printRow(PrintStream out, String name, Histogram histogram) {
+        out.printf("%-12s %10.1f %10d %10d %10d %10d %10d%n", name, histogram.getMean(), histogram.getMin(),
+                histogram.getPercentile(10), histogram.getPercentile(50), histogram.getPercentile(90), histogram.getMax());
+    }
+}
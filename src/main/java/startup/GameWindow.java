@@ -3,8 +3,15 @@ package startup;
 import audio.SoundBuffer;
 import audio.SoundManager;
 import audio.SoundSource;
+import bot.BotDriver;
+import bot.BotPolicy;
+import bot.HintSearcher;
+import bot.OpeningBook;
+import bot.OpeningBookPolicy;
 import game.GameEngine;
 import game.GameState;
+import game.GamepadSampler;
+import game.HintExchange;
 import org.lwjgl.glfw.Callbacks;
 import org.lwjgl.glfw.GLFW;
 import org.lwjgl.glfw.GLFWVidMode;
@@ -12,8 +19,14 @@ import org.lwjgl.opengl.GL;
 import org.lwjgl.opengl.GLCapabilities;
 import org.lwjgl.opengl.GLUtil;
 import render.GameRenderer;
+import replay.ReplayWriter;
 
 import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.lwjgl.glfw.GLFW.*;
 import static org.lwjgl.system.MemoryUtil.NULL;
@@ -23,11 +36,17 @@ public class GameWindow implements AutoCloseable {
     private GameState gameState;
     private GameRenderer gameRenderer;
     private GameEngine gameEngine;
+    private GamepadSampler gamepadSampler;
+    private BotDriver botDriver;
+    private HintSearcher hintSearcher;
+    private ReplayWriter replayWriter;
     private SoundManager soundManager;
-    private int width;
-    private int height;
-    private boolean resized;
+    private GLCapabilities caps;
+    private volatile int width;
+    private volatile int height;
+    private volatile boolean resized;
     private boolean fullscreen;
+    private volatile Exception renderError;
 
     private int windowedX;
     private int windowedY;
@@ -69,7 +88,7 @@ public class GameWindow implements AutoCloseable {
         GLFW.glfwSwapInterval(1);
         GLFW.glfwShowWindow(window);
 
-        GLCapabilities caps = GL.createCapabilities();
+        caps = GL.createCapabilities();
         if (!caps.GL_ARB_shader_objects) {
             throw new AssertionError("This game requires the ARB_shader_objects extension.");
         }
@@ -82,8 +101,36 @@ public class GameWindow implements AutoCloseable {
         GLUtil.setupDebugMessageCallback();
 
         gameState = new GameState();
+        // Hints for where to put each piece are shown with -Dtetris.hints=true, the exchange has to be there before
+        // the engine spawns its first piece
+        if (Boolean.getBoolean("tetris.hints")) {
+            gameState.setHintExchange(new HintExchange());
+        }
         gameRenderer = new GameRenderer(gameState, this);
         gameEngine = new GameEngine(gameState, gameRenderer.getGameScene(), this);
+        if (gameState.getHintExchange() != null) {
+            hintSearcher = new HintSearcher(gameState.getHintExchange(), gameEngine.getRotationSystem());
+        }
+        gamepadSampler = new GamepadSampler(gameEngine.getControls(), gameState.getClock());
+
+        // Games are recorded when a replay directory is given with -Dtetris.replayDir=...
+        String replayDir = System.getProperty("tetris.replayDir");
+        if (replayDir != null) {
+            Path dir = Paths.get(replayDir);
+            Files.createDirectories(dir);
+            replayWriter = new ReplayWriter(dir.resolve("replay-" + System.currentTimeMillis() + ".rpl"), gameEngine);
+        }
+        // A bot plays instead of the keyboard when one is picked with -Dtetris.bot=greedy, beam or pc
+        String bot = System.getProperty("tetris.bot");
+        if (bot != null) {
+            BotPolicy policy = BotPolicy.create(bot, true, gameEngine.getRotationSystem());
+            // The first pieces come from an opening book when one is given with -Dtetris.book=...
+            String book = System.getProperty("tetris.book");
+            if (book != null) {
+                policy = new OpeningBookPolicy(new OpeningBook(Paths.get(book)), policy, gameEngine.getRotationSystem());
+            }
+            botDriver = new BotDriver(policy, gameEngine.getControls());
+        }
         soundManager = new SoundManager(gameRenderer.getGameScene().getCamera());
         soundManager.init();
 
@@ -113,27 +160,80 @@ public class GameWindow implements AutoCloseable {
         return window;
     }
 
+    /**
+     * Rendering runs on its own thread with the GL context, the main thread only handles window events and samples
+     * gamepads since GLFW requires both to happen here
+     */
     public void run() throws Exception {
-        Thread engineThread = new Thread(gameEngine);
+        Thread engineThread = new Thread(gameEngine, "Engine");
         engineThread.start();
+        GLFW.glfwMakeContextCurrent(NULL);
+        Thread renderThread = new Thread(this::renderLoop, "Render");
+        renderThread.start();
+        Thread hintThread = null;
+        if (hintSearcher != null) {
+            hintThread = new Thread(hintSearcher, "Hints");
+            hintThread.setDaemon(true);
+            hintThread.start();
+        }
+        // The bot's searches run on their own thread so the main thread keeps up with window events meanwhile
+        ExecutorService botExecutor = null;
+        if (botDriver != null) {
+            botExecutor = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "Bot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            botDriver.setSearchExecutor(botExecutor);
+        }
+
         while (!GLFW.glfwWindowShouldClose(window)) {
             if (gameEngine.getControls().fullscreenToggle) {
                 gameEngine.getControls().fullscreenToggle = false;
                 setFullscreen(!isFullscreen());
             }
-            try {
-                gameRenderer.render();
-            } catch (Exception ex) {
-                engineThread.interrupt();
-                throw ex;
+            double nextWake = gamepadSampler.getNextPollTime();
+            if (botDriver != null) {
+                nextWake = Math.min(nextWake, botDriver.getNextStepTime());
+            }
+            double wait = nextWake - gameState.getClock().getTime();
+            if (wait > 0) {
+                GLFW.glfwWaitEventsTimeout(wait);
+            } else {
+                GLFW.glfwPollEvents();
+            }
+            gamepadSampler.pollIfDue();
+            if (botDriver != null) {
+                botDriver.stepIfDue(gameState);
             }
-            // gameEngine.run();
-
-            GLFW.glfwSwapBuffers(window);
-            GLFW.glfwPollEvents();
+        }
+        if (botExecutor != null) {
+            botExecutor.shutdownNow();
         }
         engineThread.interrupt();
+        engineThread.join();
+        renderThread.join();
+        if (hintThread != null) {
+            hintThread.interrupt();
+            hintThread.join();
+            // How well the hints kept up is printed on exit with -Dtetris.hints.stats=true
+            if (Boolean.getBoolean("tetris.hints.stats")) {
+                System.out.printf("Hints: %d given, %d cancelled, %.2f pieces deep, "
+                                + "first %.2f ms (max %.2f), deepest %.2f ms (max %.2f)%n",
+                        hintSearcher.getHintCount(), hintSearcher.getCancelledCount(), hintSearcher.getAverageDepth(),
+                        hintSearcher.getAverageFirstLatency() * 1e3, hintSearcher.getMaxFirstLatency() * 1e3,
+                        hintSearcher.getAverageFinalLatency() * 1e3, hintSearcher.getMaxFinalLatency() * 1e3);
+            }
+        }
+        if (replayWriter != null) {
+            replayWriter.close();
+        }
+        GLFW.glfwMakeContextCurrent(window);
+        gamepadSampler.close();
 
+        if (renderError != null) {
+            throw renderError;
+        }
         try {
             this.close();
         } catch (Exception e) {
@@ -141,6 +241,23 @@ public class GameWindow implements AutoCloseable {
         }
     }
 
+    private void renderLoop() {
+        GLFW.glfwMakeContextCurrent(window);
+        GL.setCapabilities(caps);
+        try {
+            while (!GLFW.glfwWindowShouldClose(window)) {
+                gameRenderer.render();
+                GLFW.glfwSwapBuffers(window);
+            }
+        } catch (Exception ex) {
+            renderError = ex;
+            GLFW.glfwSetWindowShouldClose(window, true);
+            GLFW.glfwPostEmptyEvent();
+        } finally {
+            GLFW.glfwMakeContextCurrent(NULL);
+        }
+    }
+
     public void setFullscreen(boolean makeFullscreen) {
         fullscreen = makeFullscreen;
         long monitor = glfwGetPrimaryMonitor();
@@ -0,0 +1,87 @@
+package bot;
+
+import game.BagRandomizer;
+import game.GameEngine;
+import game.GameState;
+import game.ManualClock;
+import game.SrsRotationSystem;
+import model.ClearResult;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Plays random placements from the move generator through the engine, favouring spins, and checks every piece ends
+ * up where the generator said and scores the spin it predicted
+ */
+public class MoveGeneratorTest {
+    private static final int GAMES = 40;
+    private static final int MAX_PIECES = 150;
+    private static final double STEP_TIME = 1.0 / 60.0;
+
+    @Test
+    public void engineAgreesWithGeneratedPaths() {
+        Random random = new Random(3);
+        MoveGenerator generator = new MoveGenerator(new SrsRotationSystem());
+        int checked = 0;
+        int spins = 0;
+        for (int game = 0; game < GAMES; game++) {
+            ManualClock clock = new ManualClock();
+            GameState state = new GameState(clock, new BagRandomizer(game, 1));
+            GameEngine engine = new GameEngine(state);
+            engine.setPublishSnapshots(false);
+            int height = state.getBoardHeight();
+            int fullRowMask = BoardOps.getFullRowMask(state.getBoardWidth());
+            int[] expected = new int[height];
+            int[] rows = new int[height];
+            int[] predictedSpin = {-1};
+
+            BotDriver driver = new BotDriver(position -> {
+                // The board the last placement should have left, once its lines are gone
+                if (predictedSpin[0] >= 0) {
+                    BoardOps.copyRows(position, rows);
+                    assertArrayEquals("Board after piece " + position.getPiecesPlaced(), expected, rows);
+                }
+                int count = generator.generate(position);
+                if (count == 0) {
+                    return null;
+                }
+                int pick = random.nextInt(count);
+                for (int i = 0; i < count; i++) {
+                    if (generator.getSpin(i) != ClearResult.TSPIN_NONE && random.nextBoolean()) {
+                        pick = i;
+                    }
+                }
+                BoardOps.copyRows(position, expected);
+                BoardOps.place(expected, height, fullRowMask, position.getGamePiece().getId(), generator.getX(pick),
+                        generator.getY(pick), generator.getRotation(pick));
+                predictedSpin[0] = generator.getSpin(pick);
+                int[] path = new int[generator.getPathLength(pick)];
+                generator.getPath(pick, path);
+                return new Placement(false, generator.getRotation(pick), generator.getX(pick), path);
+            }, engine.getControls());
+
+            int lastPieces = 0;
+            while (!state.isGameOver() && state.getPiecesPlaced() < MAX_PIECES) {
+                clock.advance(STEP_TIME);
+                driver.step(state);
+                engine.tick();
+                if (state.getPiecesPlaced() != lastPieces) {
+                    lastPieces = state.getPiecesPlaced();
+                    assertEquals("Spin of piece " + lastPieces, predictedSpin[0],
+                            ClearResult.getTSpin(state.getLineClearResult()));
+                    checked++;
+                    if (predictedSpin[0] != ClearResult.TSPIN_NONE) {
+                        spins++;
+                    }
+                }
+            }
+        }
+        assertTrue("Too few pieces checked: " + checked, checked > GAMES * 10);
+        assertTrue("No spins were tried", spins > 0);
+    }
+}
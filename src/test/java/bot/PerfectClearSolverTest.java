@@ -0,0 +1,111 @@
+package bot;
+
+import game.BagRandomizer;
+import game.GameState;
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Solves known perfect clear setups and checks each solution by placing it: every piece has to be the one the queue
+ * and hold give at that step, fit where it goes and rest there, and the board has to end up empty
+ */
+public class PerfectClearSolverTest {
+    private static final int WIDTH = 10;
+    private static final int HEIGHT = 40;
+    private static final int FULL_ROW = BoardOps.getFullRowMask(WIDTH);
+    private static final int I = 0;
+    private static final int O = 3;
+    private static final int S = 4;
+    private static final int Z = 6;
+
+    @Test
+    public void iClearsOneLineWithAFourWideGap() {
+        int[] rows = new int[HEIGHT];
+        rows[0] = FULL_ROW & ~0xF;
+        assertClears(new PerfectClearSolver(), rows, I, new int[0], 1);
+    }
+
+    @Test
+    public void twoOsFillAFourByTwoGap() {
+        int[] rows = new int[HEIGHT];
+        rows[0] = FULL_ROW & ~0xF;
+        rows[1] = FULL_ROW & ~0xF;
+        assertClears(new PerfectClearSolver(), rows, O, new int[]{O}, 2);
+    }
+
+    @Test
+    public void holdTakesTheNextPieceWhenTheCurrentOneDoesNotFit() {
+        int[] rows = new int[HEIGHT];
+        rows[0] = FULL_ROW & ~0xF;
+        PerfectClearSolution solution = assertClears(new PerfectClearSolver(), rows, S, new int[]{I}, 1);
+        assertTrue(solution.isHold(0));
+    }
+
+    @Test
+    public void noSolutionWhenThePiecesCannotFillTheGap() {
+        int[] rows = new int[HEIGHT];
+        rows[0] = FULL_ROW & ~0xF;
+        assertNull(new PerfectClearSolver().solve(rows, WIDTH, HEIGHT, S, GameState.NO_PIECE, true, new int[]{Z}, 1, 1));
+    }
+
+    @Test
+    public void firstBagsClearAnEmptyBoard() {
+        PerfectClearSolver serial = new PerfectClearSolver();
+        PerfectClearSolver parallel = new PerfectClearSolver(ForkJoinPool.commonPool(),
+                new TranspositionTable(PerfectClearSolver.DEFAULT_TABLE_MEGABYTES));
+        for (int seed = 0; seed < 10; seed++) {
+            BagRandomizer randomizer = new BagRandomizer(seed, 1);
+            int current = randomizer.next();
+            int[] queue = new int[10];
+            for (int i = 0; i < queue.length; i++) {
+                queue[i] = randomizer.next();
+            }
+            assertClears(serial, new int[HEIGHT], current, queue, PerfectClearSolver.DEFAULT_MAX_LINES);
+            assertClears(parallel, new int[HEIGHT], current, queue, PerfectClearSolver.DEFAULT_MAX_LINES);
+        }
+    }
+
+    private static PerfectClearSolution assertClears(PerfectClearSolver solver, int[] rows, int current, int[] queue,
+                                                     int maxLines) {
+        PerfectClearSolution solution = solver.solve(rows.clone(), WIDTH, HEIGHT, current, GameState.NO_PIECE, true,
+                queue, queue.length, maxLines);
+        assertNotNull("No solution found", solution);
+
+        int[] board = rows.clone();
+        int[] pieces = new int[queue.length + 1];
+        pieces[0] = current;
+        System.arraycopy(queue, 0, pieces, 1, queue.length);
+        int next = 0;
+        int hold = GameState.NO_PIECE;
+        for (int step = 0; step < solution.getLength(); step++) {
+            int piece;
+            if (!solution.isHold(step)) {
+                piece = pieces[next++];
+            } else if (hold == GameState.NO_PIECE) {
+                hold = pieces[next];
+                piece = pieces[next + 1];
+                next += 2;
+            } else {
+                piece = hold;
+                hold = pieces[next++];
+            }
+            assertEquals("Piece at step " + step, piece, solution.getPiece(step));
+            int x = solution.getX(step);
+            int y = solution.getY(step);
+            int rotation = solution.getRotation(step);
+            assertTrue("Step " + step + " doesn't fit", BoardOps.fits(board, HEIGHT, FULL_ROW, piece, x, y, rotation));
+            assertEquals("Step " + step + " isn't resting", y, BoardOps.dropY(board, HEIGHT, FULL_ROW, piece, x, y, rotation));
+            BoardOps.place(board, HEIGHT, FULL_ROW, piece, x, y, rotation);
+        }
+        for (int y = 0; y < HEIGHT; y++) {
+            assertEquals("Row " + y + " is left", 0, board[y]);
+        }
+        return solution;
+    }
+}
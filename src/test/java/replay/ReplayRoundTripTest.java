@@ -0,0 +1,63 @@
+package replay;
+
+import game.BagRandomizer;
+import game.GameEngine;
+import game.GameState;
+import game.InputEvent;
+import game.ManualClock;
+import game.Ruleset;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Records games of random input with random rulesets and checks re-simulating the replay ends on the same numbers
+ */
+public class ReplayRoundTripTest {
+    private static final int GAMES = 40;
+    private static final int MAX_TICKS = 3000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replaysReproduceTheGame() throws Exception {
+        Random random = new Random(5);
+        for (int game = 0; game < GAMES; game++) {
+            ManualClock clock = new ManualClock(3.0 + random.nextDouble());
+            GameState state = new GameState(clock, new BagRandomizer(random.nextLong(), 1));
+            GameEngine engine = new GameEngine(state);
+            engine.setPublishSnapshots(false);
+            Ruleset ruleset = new Ruleset(random.nextInt(200), (random.nextInt(3) == 0) ? 0 : random.nextInt(60),
+                    1 + random.nextInt(40), 100 + random.nextInt(500), 15);
+            ruleset.setAre(random.nextInt(3) * 50);
+            ruleset.setLockFlash(random.nextInt(2) * 30);
+            ruleset.setLineClearDelay(random.nextInt(3) * 200);
+            engine.setRuleset(ruleset);
+
+            Path path = folder.getRoot().toPath().resolve("game" + game + ".rpl");
+            ReplayWriter writer = new ReplayWriter(path, engine);
+            for (int tick = 0; tick < MAX_TICKS && !state.isGameOver(); tick++) {
+                int events = random.nextInt(3);
+                for (int i = 0; i < events; i++) {
+                    clock.advance(random.nextDouble() * 0.01);
+                    engine.getControls().sendInput(random.nextInt(InputEvent.ACTION_COUNT), random.nextBoolean());
+                }
+                clock.advance(random.nextDouble() * 0.05);
+                engine.tick();
+            }
+            writer.close();
+
+            ReplayResult result = ReplayPlayer.play(new ReplayReader(path));
+            assertTrue("Replay " + game + " didn't match its recorded result", result.matches());
+            assertEquals("Replay " + game + " score", state.getGameScore(), result.getScore());
+            assertEquals("Replay " + game + " lines", state.getLinesCleared(), result.getLines());
+        }
+    }
+}